@@ -1,5 +1,6 @@
 package br.com.project.service;
 
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
@@ -22,12 +23,33 @@ public class DataReader {
      * @throws IOException Se houver erro na leitura do arquivo.
      */
     public static <T> T readJson(Class<T> classReturn, String fileName) throws IOException {
+        return mapper().readValue(dataFile(fileName), classReturn);
+    }
+
+    /**
+     * Lê um arquivo JSON com um array de objetos da classe T um elemento de cada vez, sem carregar o array inteiro
+     * na memória. Junto com {@code ExternalSorter}, permite carregar conjuntos de dados maiores que o heap.
+     * O iterador deve ser fechado depois do uso.
+     *
+     * @param elementClass Classe dos elementos do array.
+     * @param <T> Tipo genérico dos elementos.
+     * @param fileName nome do arquivo de dados.
+     * @return Iterador sobre os elementos do array.
+     * @throws IOException Se houver erro na abertura do arquivo.
+     */
+    public static <T> MappingIterator<T> iterateJson(Class<T> elementClass, String fileName) throws IOException {
+        return mapper().readerFor(elementClass).readValues(dataFile(fileName));
+    }
+
+    private static File dataFile(String fileName) {
         String currentDir = Paths.get("").toAbsolutePath().toString();
         System.err.println(currentDir);
-        File filePath = new File(currentDir + "/benchmark-core/src/main/java/br/com/project/data/" + fileName);
+        return new File(currentDir + "/benchmark-core/src/main/java/br/com/project/data/" + fileName);
+    }
 
+    private static ObjectMapper mapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.registerModule(new JavaTimeModule());
-        return mapper.readValue(filePath, classReturn);
+        return mapper;
     }
 }
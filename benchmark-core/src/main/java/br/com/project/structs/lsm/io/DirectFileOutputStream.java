@@ -0,0 +1,109 @@
+package br.com.project.structs.lsm.io;
+
+import com.sun.nio.file.ExtendedOpenOption;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fluxo de escrita que não passa pelo cache de páginas do sistema operacional, usado nas tabelas grandes
+ * da compactação para que elas não expulsem do cache os dados lidos pelas buscas.
+ * O arquivo é aberto com {@link ExtendedOpenOption#DIRECT} e escrito em blocos inteiros a partir de um buffer
+ * alinhado; o último bloco é completado e o arquivo é truncado no tamanho real ao fechar.
+ * Se o sistema de arquivos não aceitar a opção, o arquivo é escrito normalmente pelo canal, com os mesmos buffers
+ * grandes, e os dados são enviados ao disco ao fechar, para que as páginas sujas não se acumulem no cache.
+ */
+final class DirectFileOutputStream extends OutputStream {
+
+    static final int DEFAULT_BLOCK_SIZE = 4096;
+    // blocos por escrita: 1 MB com blocos de 4 KB
+    private static final int BUFFER_BLOCKS = 256;
+
+    private final FileChannel channel;
+    private final boolean direct;
+    private final int blockSize;
+    private final ByteBuffer buffer;
+
+    DirectFileOutputStream(String filename) throws IOException {
+        Path path = Path.of(filename);
+        FileChannel directChannel = openDirect(path);
+
+        direct = directChannel != null;
+        channel = direct ? directChannel : FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        blockSize = blockSize(path);
+        buffer = ByteBuffer.allocateDirect(blockSize * (BUFFER_BLOCKS + 1)).alignedSlice(blockSize);
+    }
+
+    /**
+     * Indica se o arquivo foi aberto sem o cache de páginas.
+     */
+    boolean isDirect() {
+        return direct;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer.put((byte) b);
+        if (!buffer.hasRemaining())
+            writeBuffer();
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
+            if (!buffer.hasRemaining())
+                writeBuffer();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            long size = channel.position() + buffer.position();
+            // com O_DIRECT, a última escrita também precisa ser de blocos inteiros
+            if (direct && buffer.position() % blockSize != 0)
+                buffer.position(Math.min(buffer.capacity(), (buffer.position() / blockSize + 1) * blockSize));
+            writeBuffer();
+            if (direct)
+                channel.truncate(size);
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static FileChannel openDirect(Path path) {
+        try {
+            return FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, ExtendedOpenOption.DIRECT);
+        } catch (UnsupportedOperationException | IOException e) {
+            return null;
+        }
+    }
+
+    private static int blockSize(Path path) {
+        try {
+            long size = Files.getFileStore(path).getBlockSize();
+            return size > 0 && size <= 64 * 1024 && Long.bitCount(size) == 1 ? (int) size : DEFAULT_BLOCK_SIZE;
+        } catch (UnsupportedOperationException | IOException e) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package br.com.project.structs.lsm.io;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.types.ByteArrayWrapper;
+
+import java.util.Arrays;
+
+/**
+ * Buffers reutilizáveis para a chave e o valor de um item lido por {@link ExtendedInputStream#readEntry(EntryBuffer)}.
+ * Os arrays crescem conforme necessário e só os primeiros {@code getKeyLength()} e {@code getValueLength()}
+ * bytes são válidos; o conteúdo é sobrescrito na próxima leitura.
+ * Os itens são ordenados pela chave, na ordem de {@code ByteArrayWrapper}.
+ */
+public class EntryBuffer implements Comparable<EntryBuffer> {
+
+    private byte[] key = new byte[64];
+    private byte[] value = new byte[256];
+    int keyLength;
+    int valueLength;
+
+    public EntryBuffer() {
+    }
+
+    private EntryBuffer(byte[] key, byte[] value) {
+        this.key = key;
+        this.value = value;
+        this.keyLength = key.length;
+        this.valueLength = value.length;
+    }
+
+    /**
+     * Cria um buffer com a chave e o valor do par, sem copiá-los.
+     */
+    public static EntryBuffer of(ByteArrayPair pair) {
+        return new EntryBuffer(pair.key(), pair.value());
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public int getKeyLength() {
+        return keyLength;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public int getValueLength() {
+        return valueLength;
+    }
+
+    /**
+     * Retorna o tamanho do item, como {@link ByteArrayPair#size()}.
+     */
+    public int size() {
+        return keyLength + valueLength;
+    }
+
+    /**
+     * Compara a chave do item com a chave informada, na ordem de {@code ByteArrayWrapper}.
+     *
+     * @param other a chave comparada.
+     * @return negativo, zero ou positivo se a chave do item for menor, igual ou maior.
+     */
+    public int compareKey(byte[] other) {
+        return ByteArrayWrapper.compare(key, keyLength, other, other.length);
+    }
+
+    @Override
+    public int compareTo(EntryBuffer other) {
+        return ByteArrayWrapper.compare(key, keyLength, other.key, other.keyLength);
+    }
+
+    /**
+     * Copia o item para um novo par, que pode ser guardado pelo chamador.
+     */
+    public ByteArrayPair toPair() {
+        return new ByteArrayPair(Arrays.copyOf(key, keyLength), Arrays.copyOf(value, valueLength));
+    }
+
+    byte[] ensureKeyCapacity(int length) {
+        if (key.length < length)
+            key = new byte[Math.max(length, key.length * 2)];
+        return key;
+    }
+
+    byte[] ensureValueCapacity(int length) {
+        if (value.length < length)
+            value = new byte[Math.max(length, value.length * 2)];
+        return value;
+    }
+}
@@ -1,19 +1,34 @@
 package br.com.project.structs.lsm.io;
 
 import br.com.project.structs.lsm.types.ByteArrayPair;
-import it.unimi.dsi.fastutil.io.FastBufferedInputStream;
 
-import java.io.FileInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
 
 /**
- * Esta classe utiliza um FastBufferedInputStream como base e adiciona
- * métodos utilitários a ele, principalmente para a leitura de inteiros e longs
- * codificados em bytes.
+ * Fluxo de leitura de arquivos com buffer próprio e métodos utilitários, principalmente para a leitura de inteiros
+ * e longs codificados em bytes. Os inteiros V-Byte são decodificados e as chaves comparadas diretamente no buffer,
+ * e os itens podem ser lidos em buffers fornecidos pelo chamador ({@link #readEntry(EntryBuffer)}),
+ * de forma que percorrer um arquivo não precisa criar objetos por item.
  */
 public class ExtendedInputStream {
 
-    private final FastBufferedInputStream fis;
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final FileChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    // posição no arquivo do primeiro byte do buffer; o fluxo está em bufferStart + pos
+    private long bufferStart;
+    private int pos;
+    private int limit;
+    // bytes lidos do arquivo desde a abertura, incluindo releituras
+    private long bytesRead;
 
     /**
      * Inicializa um fluxo de entrada em um arquivo.
@@ -21,12 +36,23 @@ public class ExtendedInputStream {
      * @param filename o nome do arquivo.
      */
     public ExtendedInputStream(String filename) {
+        this(filename, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Inicializa um fluxo de entrada em um arquivo.
+     *
+     * @param filename   o nome do arquivo.
+     * @param bufferSize o tamanho do buffer de leitura, em bytes.
+     */
+    public ExtendedInputStream(String filename, int bufferSize) {
         try {
-            fis = new FastBufferedInputStream(new FileInputStream(filename));
-            fis.position(0);
-        } catch (Exception e) {
+            channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        buffer = new byte[bufferSize];
+        byteBuffer = ByteBuffer.wrap(buffer);
     }
 
     /**
@@ -51,18 +77,19 @@ public class ExtendedInputStream {
      */
     public long readVByteLong() {
         long result = 0;
-        int b;
         int shift = 0;
         while (true) {
-            b = readByteInt();
-            result |= (((long) b & 0x7F) << shift);
+            if (pos == limit)
+                require();
 
-            if ((b & 0x80) == 0x80)
-                break;
+            byte b = buffer[pos++];
+            result |= ((long) b & 0x7F) << shift;
+
+            if ((b & 0x80) != 0)
+                return result - 1;
 
             shift += 7;
         }
-        return result - 1;
     }
 
     /**
@@ -71,29 +98,81 @@ public class ExtendedInputStream {
      * @return o próximo long no fluxo.
      */
     public long readLong() {
+        long result = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            if (pos == limit)
+                require();
+            result = (result << 8) | (buffer[pos++] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * Lê 4 bytes que representam um inteiro.
+     *
+     * @return o próximo inteiro no fluxo.
+     */
+    public int readInt() {
+        int result = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            if (pos == limit)
+                require();
+            result = (result << 8) | (buffer[pos++] & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * Calcula o CRC32C de um trecho do arquivo, lido pelo buffer do fluxo. O fluxo fica posicionado no fim do trecho.
+     *
+     * @param offset o início do trecho.
+     * @param length o tamanho do trecho, em bytes.
+     * @return o checksum do trecho.
+     */
+    public int checksum(long offset, long length) {
+        CRC32C crc = new CRC32C();
+        seek(offset);
+        while (length > 0) {
+            if (pos == limit)
+                require();
+
+            int n = (int) Math.min(length, limit - pos);
+            crc.update(buffer, pos, n);
+            pos += n;
+            length -= n;
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Verifica o CRC32C gravado nos últimos 4 bytes de um arquivo por {@link ExtendedOutputStream#writeChecksum()}.
+     *
+     * @param filename o nome do arquivo.
+     * @return verdadeiro se o checksum confere com o conteúdo.
+     */
+    public static boolean verifyChecksum(String filename) {
+        ExtendedInputStream is = new ExtendedInputStream(filename);
         try {
-            long result = 0;
-            for (byte b : fis.readNBytes(8)) {
-                result <<= 8;
-                result |= (b & 0xFF);
-            }
-            return result;
+            long size = is.channel.size();
+            if (size < Integer.BYTES)
+                return false;
+            return is.checksum(0, size - Integer.BYTES) == is.readInt();
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            is.close();
         }
     }
 
     /**
      * Lê um único byte como um inteiro.
      *
-     * @return o próximo inteiro de 8 bits no fluxo.
+     * @return o próximo inteiro de 8 bits no fluxo, ou -1 no fim do arquivo.
      */
     public int readByteInt() {
-        try {
-            return fis.read();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        if (pos == limit && !fill())
+            return -1;
+        return buffer[pos++] & 0xFF;
     }
 
     /**
@@ -103,69 +182,177 @@ public class ExtendedInputStream {
      * @return um array contendo os próximos N bytes.
      */
     public byte[] readNBytes(int n) {
-        try {
-            return fis.readNBytes(n);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        byte[] res = new byte[n];
+        readFully(res, 0, n);
+        return res;
+    }
+
+    /**
+     * Lê exatamente {@code length} bytes para um array fornecido pelo chamador.
+     *
+     * @param dst    o array de destino.
+     * @param offset a posição inicial no destino.
+     * @param length o número de bytes a serem lidos.
+     */
+    public void readFully(byte[] dst, int offset, int length) {
+        while (length > 0) {
+            if (pos == limit)
+                require();
+
+            int n = Math.min(length, limit - pos);
+            System.arraycopy(buffer, pos, dst, offset, n);
+            pos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Compara a chave com os próximos {@code key.length} bytes do fluxo, sem copiá-los, na ordem
+     * de {@code ByteArrayWrapper} para chaves de mesmo tamanho (bytes com sinal). Os bytes são consumidos.
+     *
+     * @param key a chave.
+     * @return negativo, zero ou positivo se a chave for menor, igual ou maior que os bytes lidos.
+     */
+    public int compareNext(byte[] key) {
+        int cmp = 0;
+        int i = 0;
+        while (i < key.length) {
+            if (pos == limit)
+                require();
+
+            int n = Math.min(key.length - i, limit - pos);
+            for (int j = 0; cmp == 0 && j < n; j++) {
+                byte a = key[i + j];
+                byte b = buffer[pos + j];
+                if (a != b)
+                    cmp = a < b ? -1 : 1;
+            }
+            pos += n;
+            i += n;
         }
+        return cmp;
     }
 
     /**
      * Lê um ByteArrayPair do fluxo.
      * Cada array é codificado como tamanho, seguido do conteúdo.
      *
-     * @return o próximo item no fluxo.
+     * @return o próximo item no fluxo, ou null no fim do arquivo.
      */
     public ByteArrayPair readBytePair() {
-        try {
-            int keyLength = readVByteInt();
-            int valueLength = readVByteInt();
-
-            return new ByteArrayPair(
-                    readNBytes(keyLength),
-                    readNBytes(valueLength)
-            );
-        } catch (Exception e) {
+        if (pos == limit && !fill())
             return null;
-        }
+
+        int keyLength = readVByteInt();
+        int valueLength = readVByteInt();
+        return new ByteArrayPair(readNBytes(keyLength), readNBytes(valueLength));
+    }
+
+    /**
+     * Lê o próximo item para os buffers reutilizáveis do chamador, sem criar objetos
+     * (exceto quando os buffers precisam crescer).
+     *
+     * @param entry os buffers de destino.
+     * @return falso no fim do arquivo.
+     */
+    public boolean readEntry(EntryBuffer entry) {
+        if (pos == limit && !fill())
+            return false;
+
+        int keyLength = readVByteInt();
+        int valueLength = readVByteInt();
+        readFully(entry.ensureKeyCapacity(keyLength), 0, keyLength);
+        readFully(entry.ensureValueCapacity(valueLength), 0, valueLength);
+        entry.keyLength = keyLength;
+        entry.valueLength = valueLength;
+        return true;
     }
 
     /**
      * Pula N bytes no fluxo.
      *
      * @param n o número de bytes a serem ignorados.
-     * @return o número de bytes efetivamente ignorados.
+     * @return o número de bytes ignorados.
      */
     public long skip(int n) {
-        try {
-            return fis.skip(n);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        if (n <= limit - pos)
+            pos += n;
+        else
+            seek(position() + n);
+        return n;
     }
 
     /**
-     * Posiciona o fluxo no deslocamento desejado.
+     * Posiciona o fluxo no deslocamento desejado. Se o deslocamento já estiver no buffer,
+     * nenhum byte é relido do arquivo.
      *
      * @param offset o deslocamento para o qual o fluxo deve ser movido.
      */
     public void seek(long offset) {
-        try {
-            fis.position(offset);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        if (offset >= bufferStart && offset <= bufferStart + limit) {
+            pos = (int) (offset - bufferStart);
+        } else {
+            bufferStart = offset;
+            pos = 0;
+            limit = 0;
         }
     }
 
+    /**
+     * Retorna a posição atual do fluxo.
+     *
+     * @return o deslocamento do próximo byte a ser lido.
+     */
+    public long position() {
+        return bufferStart + pos;
+    }
+
+    /**
+     * Retorna o número de bytes lidos do arquivo desde a abertura do fluxo; leituras repetidas da mesma
+     * região contam de novo, exceto quando ela ainda está no buffer.
+     *
+     * @return o total de bytes lidos.
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
     /**
      * Fecha os recursos utilizados.
      */
     public void close() {
         try {
-            fis.close();
+            channel.close();
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Recarrega o buffer a partir da posição atual, que deve estar no fim do buffer.
+     *
+     * @return falso no fim do arquivo.
+     */
+    private boolean fill() {
+        bufferStart += limit;
+        pos = 0;
+        limit = 0;
+        try {
+            int read = channel.read(byteBuffer.clear(), bufferStart);
+            if (read <= 0)
+                return false;
+            limit = read;
+            bytesRead += read;
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void require() {
+        if (!fill())
+            throw new RuntimeException(new EOFException("Fim inesperado do arquivo na posição " + bufferStart));
+    }
+
+}
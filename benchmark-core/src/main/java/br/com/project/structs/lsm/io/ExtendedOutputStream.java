@@ -1,17 +1,31 @@
 package br.com.project.structs.lsm.io;
 
 import br.com.project.structs.lsm.types.ByteArrayPair;
-import it.unimi.dsi.fastutil.io.FastBufferedOutputStream;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
 
 /**
- * Classe para escrita de inteiros e longs codificados em bytes utilizando FastBufferedOutputStream.
+ * Classe para escrita de inteiros e longs codificados em bytes com um buffer próprio. Os números são codificados
+ * direto no buffer do fluxo, sem arrays intermediários, e todo o estado é do fluxo, de forma que flushes
+ * e compactações podem escrever em paralelo, cada um no seu arquivo.
+ * O fluxo também calcula o CRC32C dos bytes escritos, por trechos ({@link #takeChecksum()}) ou do arquivo inteiro
+ * ({@link #writeChecksum()}).
  */
 public class ExtendedOutputStream {
 
-    private static final byte[] VBYTE_BUFFER = new byte[10];
-    private final FastBufferedOutputStream fos;
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    // maior tamanho de um long codificado em bytes (64 bits em grupos de 7)
+    private static final int MAX_VBYTE_LENGTH = 10;
+
+    private final OutputStream fos;
+    private final byte[] buffer;
+    private int pos;
+    private final CRC32C checksum = new CRC32C();
+    // início dos bytes do buffer ainda não incluídos no checksum
+    private int checksumPos;
 
     /**
      * Inicializa um fluxo de saída para um arquivo.
@@ -19,12 +33,46 @@ public class ExtendedOutputStream {
      * @param filename o nome do arquivo.
      */
     public ExtendedOutputStream(String filename) {
+        this(filename, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Inicializa um fluxo de saída para um arquivo.
+     *
+     * @param filename   o nome do arquivo.
+     * @param bufferSize o tamanho do buffer de escrita, em bytes (pelo menos 2 longs codificados).
+     */
+    public ExtendedOutputStream(String filename, int bufferSize) {
+        this(filename, bufferSize, false);
+    }
+
+    /**
+     * Inicializa um fluxo de saída para um arquivo, opcionalmente sem passar pelo cache de páginas
+     * (ver {@link DirectFileOutputStream}).
+     *
+     * @param filename o nome do arquivo.
+     * @param directIo verdadeiro para escrever com O_DIRECT, quando o sistema de arquivos permitir.
+     */
+    public ExtendedOutputStream(String filename, boolean directIo) {
+        this(filename, DEFAULT_BUFFER_SIZE, directIo);
+    }
+
+    private ExtendedOutputStream(String filename, int bufferSize, boolean directIo) {
+        if (bufferSize < 2 * MAX_VBYTE_LENGTH)
+            throw new IllegalArgumentException("O buffer deve ter pelo menos " + 2 * MAX_VBYTE_LENGTH + " bytes");
         try {
-            fos = new FastBufferedOutputStream(new FileOutputStream(filename));
-            fos.position(0);
+            fos = directIo ? new DirectFileOutputStream(filename) : new FileOutputStream(filename);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
+        buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Indica se o arquivo está sendo escrito sem o cache de páginas.
+     */
+    public boolean isDirectIo() {
+        return fos instanceof DirectFileOutputStream direct && direct.isDirect();
     }
 
     /**
@@ -34,12 +82,12 @@ public class ExtendedOutputStream {
      * @return número de bytes escritos.
      */
     public int write(byte[] bytes) {
-        try {
-            fos.write(bytes);
-            return bytes.length;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        if (bytes.length > buffer.length - pos)
+            return writeLarge(bytes);
+
+        System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+        pos += bytes.length;
+        return bytes.length;
     }
 
     /**
@@ -49,7 +97,7 @@ public class ExtendedOutputStream {
      * @return número de bytes escritos.
      */
     public int writeVByteInt(int n) {
-        return write(intToVByte(n));
+        return writeVByteLong(n);
     }
 
     /**
@@ -59,7 +107,8 @@ public class ExtendedOutputStream {
      * @return número de bytes escritos.
      */
     public int writeVByteLong(long n) {
-        return write(longToVByte(n));
+        ensureCapacity(MAX_VBYTE_LENGTH);
+        return encodeVByte(n);
     }
 
     /**
@@ -69,20 +118,70 @@ public class ExtendedOutputStream {
      * @return número de bytes escritos.
      */
     public int writeLong(long n) {
-        return write(longToBytes(n));
+        ensureCapacity(Long.BYTES);
+        // big-endian, na ordem esperada por ExtendedInputStream.readLong
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            buffer[pos + i] = (byte) n;
+            n >>>= 8;
+        }
+        pos += Long.BYTES;
+        return Long.BYTES;
     }
 
     /**
-     * Escreve um ByteArrayPair no fluxo.
+     * Escreve 32 bits no fluxo.
+     *
+     * @param n inteiro a ser escrito.
+     * @return número de bytes escritos.
+     */
+    public int writeInt(int n) {
+        ensureCapacity(Integer.BYTES);
+        for (int i = Integer.BYTES - 1; i >= 0; i--) {
+            buffer[pos + i] = (byte) n;
+            n >>>= 8;
+        }
+        pos += Integer.BYTES;
+        return Integer.BYTES;
+    }
+
+    /**
+     * Retorna o CRC32C dos bytes escritos desde a chamada anterior (ou desde a abertura do fluxo) e recomeça o cálculo.
+     *
+     * @return o checksum do trecho.
+     */
+    public int takeChecksum() {
+        checksum.update(buffer, checksumPos, pos - checksumPos);
+        checksumPos = pos;
+        int value = (int) checksum.getValue();
+        checksum.reset();
+        return value;
+    }
+
+    /**
+     * Escreve o CRC32C dos bytes escritos desde a última chamada de {@link #takeChecksum()}, normalmente o arquivo
+     * inteiro, como os últimos 4 bytes do arquivo. Ver {@link ExtendedInputStream#verifyChecksum(String)}.
+     *
+     * @return número de bytes escritos.
+     */
+    public int writeChecksum() {
+        return writeInt(takeChecksum());
+    }
+
+    /**
+     * Escreve um ByteArrayPair no fluxo: os dois tamanhos são codificados após uma única verificação de espaço,
+     * e a chave e o valor são copiados de uma vez cada.
      *
      * @param pair item a ser escrito.
      * @return número de bytes escritos.
      */
     public int writeByteArrayPair(ByteArrayPair pair) {
-        return write(longToVByte(pair.key().length))
-                + write(longToVByte(pair.value().length))
-                + write(pair.key())
-                + write(pair.value());
+        byte[] key = pair.key();
+        byte[] value = pair.value();
+
+        ensureCapacity(2 * MAX_VBYTE_LENGTH);
+        int written = encodeVByte(key.length);
+        written += encodeVByte(value.length);
+        return written + write(key) + write(value);
     }
 
     /**
@@ -90,6 +189,7 @@ public class ExtendedOutputStream {
      */
     public void close() {
         try {
+            flushBuffer();
             fos.close();
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -97,50 +197,60 @@ public class ExtendedOutputStream {
     }
 
     /**
-     * Converte um número long para bytes codificados com comprimento variável.
+     * Codifica o número no buffer, que deve ter espaço para ele.
      */
-    private byte[] longToVByte(long n) {
+    private int encodeVByte(long n) {
         if (++n <= 0) throw new IllegalArgumentException("n deve ser maior que 0");
 
-        int i = 0;
+        int start = pos;
         while (n > 0) {
-            VBYTE_BUFFER[i++] = (byte) (n & 0x7F);
-            n = n / 128;
+            buffer[pos++] = (byte) (n & 0x7F);
+            n >>>= 7;
         }
-        VBYTE_BUFFER[i - 1] |= (byte) 0x80;
-
-        byte[] res = new byte[i];
-        System.arraycopy(VBYTE_BUFFER, 0, res, 0, i);
-        return res;
+        buffer[pos - 1] |= (byte) 0x80;
+        return pos - start;
     }
 
-    /**
-     * Converte um número long para 8 bytes.
-     */
-    private byte[] longToBytes(long n) {
-        byte[] result = new byte[8];
-        for (int i = 0; i < 8; i++) {
-            result[i] = (byte) (n & 0xFF);
-            n = n / 256;
-        }
-        return result;
+    private void ensureCapacity(int length) {
+        if (length > buffer.length - pos)
+            flushBuffer();
     }
 
     /**
-     * Converte um número inteiro para bytes codificados com comprimento variável.
+     * Escreve um array que não cabe no espaço restante: completa o buffer e, se o restante for maior que
+     * o buffer inteiro, escreve-o direto no arquivo.
      */
-    private byte[] intToVByte(int n) {
-        if (++n <= 0) throw new IllegalArgumentException("n deve ser maior que 0");
+    private int writeLarge(byte[] bytes) {
+        int offset = buffer.length - pos;
+        System.arraycopy(bytes, 0, buffer, pos, offset);
+        pos = buffer.length;
+        flushBuffer();
 
-        int i = 0;
-        while (n > 0) {
-            VBYTE_BUFFER[i++] = (byte) (n & 0x7F);
-            n = n / 128;
+        int remaining = bytes.length - offset;
+        try {
+            if (remaining >= buffer.length) {
+                checksum.update(bytes, offset, remaining);
+                fos.write(bytes, offset, remaining);
+            } else {
+                System.arraycopy(bytes, offset, buffer, 0, remaining);
+                pos = remaining;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-        VBYTE_BUFFER[i - 1] |= (byte) 0x80;
+        return bytes.length;
+    }
 
-        byte[] res = new byte[i];
-        System.arraycopy(VBYTE_BUFFER, 0, res, 0, i);
-        return res;
+    private void flushBuffer() {
+        if (pos == 0)
+            return;
+        checksum.update(buffer, checksumPos, pos - checksumPos);
+        try {
+            fos.write(buffer, 0, pos);
+            pos = 0;
+            checksumPos = 0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -420,6 +420,31 @@ public class AVLTree<K extends Comparable<K>, V extends Comparable<V>> implement
         inOrderTraversal(node.right, result);
     }
 
+    /**
+     * Retorna um iterador sobre os valores cujas chaves estão no intervalo [from, to], em ordem.
+     * Subárvores totalmente fora do intervalo não são visitadas.
+     *
+     * @param from limite inferior (inclusivo).
+     * @param to   limite superior (inclusivo).
+     * @return iterador dos valores no intervalo.
+     */
+    public Iterator<V> iterator(K from, K to) {
+        List<V> elements = new ArrayList<>();
+        rangeTraversal(root, from, to, elements);
+        return elements.iterator();
+    }
+
+    private void rangeTraversal(Node<V> node, K from, K to, List<V> result) {
+        if (node == null) return;
+        K nodeKey = keyExtractor.apply(node.value);
+        boolean aboveFrom = nodeKey.compareTo(from) >= 0;
+        boolean belowTo = nodeKey.compareTo(to) <= 0;
+
+        if (aboveFrom) rangeTraversal(node.left, from, to, result);
+        if (aboveFrom && belowTo) result.add(node.value);
+        if (belowTo) rangeTraversal(node.right, from, to, result);
+    }
+
     /**
      * Limpa todos os elementos da árvore AVL.
      */
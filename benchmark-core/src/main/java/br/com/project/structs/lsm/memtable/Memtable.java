@@ -2,7 +2,7 @@ package br.com.project.structs.lsm.memtable;
 
 import br.com.project.structs.lsm.types.ByteArrayPair;
 import br.com.project.structs.lsm.types.ByteArrayWrapper;
-import br.com.project.structs.lsm.utils.UniqueSortedIterator;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import java.util.Arrays;
 import java.util.Iterator;
@@ -17,6 +17,7 @@ public class Memtable implements Iterable<ByteArrayPair> {
 
     AVLTree<ByteArrayWrapper, ByteArrayPair> tree;
     long byteSize;
+    int maxKeyLength;
 
     /**
      * Inicializa uma Memtable com tamanho padrão para a lista subjacente.
@@ -34,6 +35,7 @@ public class Memtable implements Iterable<ByteArrayPair> {
     public void add(ByteArrayPair item) {
         tree.add(item);
         byteSize += item.size();
+        maxKeyLength = Math.max(maxKeyLength, item.key().length);
     }
 
     /**
@@ -54,7 +56,17 @@ public class Memtable implements Iterable<ByteArrayPair> {
      * @param key a chave do elemento a ser removido.
      */
     public void remove(byte[] key) {
-        tree.add(new ByteArrayPair(key, new byte[]{}));
+        ByteArrayPair tombstone = new ByteArrayPair(key, new byte[]{});
+        tree.add(tombstone);
+        byteSize += tombstone.size();
+        maxKeyLength = Math.max(maxKeyLength, key.length);
+    }
+
+    /**
+     * Retorna o tamanho da maior chave já escrita na Memtable.
+     */
+    public int maxKeyLength() {
+        return maxKeyLength;
     }
 
     /**
@@ -67,18 +79,47 @@ public class Memtable implements Iterable<ByteArrayPair> {
     }
 
     /**
-     * Retorna um iterador que descarta elementos duplicados para percorrer todos os dados da Memtable,
-     * sem repetir chaves
+     * Retorna um iterador para percorrer todos os dados da Memtable em ordem. A AVL substitui o item de uma chave
+     * repetida, então as chaves não se repetem.
      *
-     * @return um iterador modificado da lista subjacente.
+     * @return um iterador da lista subjacente.
      */
     @Override
     public Iterator<ByteArrayPair> iterator() {
-        return new UniqueSortedIterator<>(tree.iterator());
+        return tree.iterator();
+    }
+
+    /**
+     * Retorna um iterador sobre os itens com chave no intervalo [from, to], incluindo tombstones.
+     *
+     * @param from limite inferior (inclusivo).
+     * @param to   limite superior (inclusivo).
+     * @return iterador ordenado dos itens no intervalo.
+     */
+    public Iterator<ByteArrayPair> iterator(byte[] from, byte[] to) {
+        return tree.iterator(new ByteArrayWrapper(from), new ByteArrayWrapper(to));
+    }
+
+    /**
+     * Retorna um iterador sobre os itens cuja chave começa com o prefixo, incluindo tombstones.
+     * Percorre um intervalo da árvore para cada tamanho de chave possível.
+     *
+     * @param prefix o prefixo.
+     * @return iterador ordenado dos itens com o prefixo.
+     */
+    public Iterator<ByteArrayPair> prefixIterator(byte[] prefix) {
+        ObjectArrayList<ByteArrayPair> res = new ObjectArrayList<>();
+        for (int length = prefix.length; length <= maxKeyLength; length++) {
+            Iterator<ByteArrayPair> it = iterator(ByteArrayWrapper.prefixLowerBound(prefix, length),
+                    ByteArrayWrapper.prefixUpperBound(prefix, length));
+            it.forEachRemaining(res::add);
+        }
+        return res.iterator();
     }
 
     public void clear() {
         tree.clear();
         byteSize = 0L;
+        maxKeyLength = 0;
     }
 }
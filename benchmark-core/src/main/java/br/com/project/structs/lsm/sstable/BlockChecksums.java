@@ -0,0 +1,96 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+
+import java.util.Arrays;
+
+/**
+ * CRC32C dos blocos do arquivo de dados de uma SSTable. Cada bloco é um intervalo do índice esparso
+ * (do item amostrado até o próximo), de forma que uma busca verifica exatamente o trecho que percorre.
+ * No arquivo .crc, são gravados o número de blocos, os tamanhos (V-Byte) e os checksums, seguidos do CRC32C
+ * do próprio arquivo.
+ */
+final class BlockChecksums {
+
+    private final long[] starts;
+    private final int[] checksums;
+
+    private BlockChecksums(long[] starts, int[] checksums) {
+        this.starts = starts;
+        this.checksums = checksums;
+    }
+
+    int size() {
+        return checksums.length;
+    }
+
+    long start(int block) {
+        return starts[block];
+    }
+
+    long length(int block) {
+        return starts[block + 1] - starts[block];
+    }
+
+    int checksum(int block) {
+        return checksums[block];
+    }
+
+    void writeToFile(String filename) {
+        ExtendedOutputStream os = new ExtendedOutputStream(filename);
+        os.writeVByteInt(checksums.length);
+        for (int i = 0; i < checksums.length; i++)
+            os.writeVByteLong(length(i));
+        for (int checksum : checksums)
+            os.writeInt(checksum);
+        os.writeChecksum();
+        os.close();
+    }
+
+    static BlockChecksums readFromFile(String filename) {
+        if (!ExtendedInputStream.verifyChecksum(filename))
+            throw new CorruptedTableException(filename, "checksum do arquivo " + filename + " não confere");
+
+        ExtendedInputStream is = new ExtendedInputStream(filename);
+        try {
+            int n = is.readVByteInt();
+            long[] starts = new long[n + 1];
+            for (int i = 0; i < n; i++)
+                starts[i + 1] = starts[i] + is.readVByteLong();
+
+            int[] checksums = new int[n];
+            for (int i = 0; i < n; i++)
+                checksums[i] = is.readInt();
+            return new BlockChecksums(starts, checksums);
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Acumula os checksums durante a escrita do arquivo de dados.
+     */
+    static class Builder {
+
+        private long[] starts = new long[17];
+        private int[] checksums = new int[16];
+        private int size;
+
+        /**
+         * Registra o bloco que termina na posição informada.
+         */
+        void add(long end, int checksum) {
+            if (size == checksums.length) {
+                checksums = Arrays.copyOf(checksums, size * 2);
+                starts = Arrays.copyOf(starts, size * 2 + 1);
+            }
+            checksums[size++] = checksum;
+            starts[size] = end;
+        }
+
+        BlockChecksums build() {
+            return new BlockChecksums(Arrays.copyOf(starts, size + 1), Arrays.copyOf(checksums, size));
+        }
+    }
+}
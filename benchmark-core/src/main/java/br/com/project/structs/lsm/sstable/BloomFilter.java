@@ -16,7 +16,7 @@ import static java.lang.Math.log;
  * o tamanho do filtro é calculado e o número de funções de hash é calculado com base na taxa de falsos positivos.
  * O filtro usa duas funções de hash simples para cada chave.
  */
-public class BloomFilter {
+public class BloomFilter implements KeyFilter {
 
     static final int DEFAULT_SIZE = 1 << 20;
 
@@ -73,21 +73,25 @@ public class BloomFilter {
      * @return O filtro de Bloom.
      */
     public static BloomFilter readFromFile(String filename) {
-        ExtendedInputStream is = new ExtendedInputStream(filename);
-        try {
-            int size = is.readVByteInt();
-            int hashCount = is.readVByteInt();
-            int bitsLength = is.readVByteInt();
-            long[] bits = new long[bitsLength];
-
-            for (int i = 0; i < bitsLength; i++)
-                bits[i] = is.readLong();
-
-            is.close();
-            return new BloomFilter(size, hashCount, bits);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        KeyFilter filter = KeyFilter.readFromFile(filename);
+        if (!(filter instanceof BloomFilter bloomFilter))
+            throw new IllegalArgumentException("O arquivo " + filename + " não contém um filtro de Bloom");
+        return bloomFilter;
+    }
+
+    /**
+     * Lê o conteúdo de um filtro de Bloom, após a etiqueta do tipo.
+     */
+    static BloomFilter read(ExtendedInputStream is) {
+        int size = is.readVByteInt();
+        int hashCount = is.readVByteInt();
+        int bitsLength = is.readVByteInt();
+        long[] bits = new long[bitsLength];
+
+        for (int i = 0; i < bitsLength; i++)
+            bits[i] = is.readLong();
+
+        return new BloomFilter(size, hashCount, bits);
     }
 
     /**
@@ -111,6 +115,7 @@ public class BloomFilter {
      * @param key A chave a ser verificada.
      * @return Verdadeiro se o filtro pode conter a chave, falso caso contrário.
      */
+    @Override
     public boolean mightContain(byte[] key) {
         LongLongPair hash = getHash(key);
         long h1 = hash.leftLong(), h2 = hash.rightLong();
@@ -124,6 +129,11 @@ public class BloomFilter {
         return true;
     }
 
+    @Override
+    public long bitSize() {
+        return (long) bits.length * Long.SIZE;
+    }
+
     private LongLongMutablePair getHash(byte[] key) {
         long[] hashes = MurmurHash3.hash128x64(key, 0, key.length, 0);
         return LongLongMutablePair.of(hashes[0], hashes[1]);
@@ -134,9 +144,11 @@ public class BloomFilter {
      *
      * @param filename O nome do arquivo.
      */
+    @Override
     public void writeToFile(String filename) {
         ExtendedOutputStream os = new ExtendedOutputStream(filename);
 
+        os.writeVByteInt(Type.BLOOM.ordinal());
         os.writeVByteInt(size);
         os.writeVByteInt(hashCount);
         os.writeVByteInt(bits.length);
@@ -144,6 +156,7 @@ public class BloomFilter {
         for (long b : bits)
             os.writeLong(b);
 
+        os.writeChecksum();
         os.close();
     }
 
@@ -0,0 +1,19 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Filtro aplicado a cada item durante a combinação de SSTables ({@link SSTable#sortedRun}).
+ * Recebe a versão mais recente de cada chave e retorna o item a ser escrito, possivelmente alterado,
+ * ou null para descartá-lo.
+ */
+@FunctionalInterface
+public interface CompactionFilter extends UnaryOperator<ByteArrayPair> {
+
+    /**
+     * Filtro que mantém todos os itens.
+     */
+    CompactionFilter KEEP_ALL = item -> item;
+}
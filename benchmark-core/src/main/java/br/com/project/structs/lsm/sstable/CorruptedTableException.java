@@ -0,0 +1,24 @@
+package br.com.project.structs.lsm.sstable;
+
+/**
+ * Indica que o conteúdo de um arquivo de uma SSTable não confere com o CRC32C gravado na escrita,
+ * por exemplo após uma escrita interrompida ou a troca de bits no disco.
+ */
+public class CorruptedTableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String filename;
+
+    public CorruptedTableException(String filename, String message) {
+        super("SSTable " + filename + " corrompida: " + message);
+        this.filename = filename;
+    }
+
+    /**
+     * Retorna o caminho base da tabela corrompida (sem extensão).
+     */
+    public String getFilename() {
+        return filename;
+    }
+}
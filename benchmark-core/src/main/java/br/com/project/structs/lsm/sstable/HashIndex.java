@@ -0,0 +1,169 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.util.Arrays;
+
+/**
+ * Tabelas de hash dos intervalos do índice esparso de uma SSTable, usadas nas buscas pontuais para ir direto
+ * ao item procurado em vez de percorrer o intervalo. Cada intervalo tem uma tabela própria, com
+ * {@code ceil(n / utilRatio)} posições de 16 bits para os seus n itens. Cada posição guarda o deslocamento do item
+ * em relação ao início do intervalo, ou uma marca de posição vazia (a chave não está no intervalo) ou de colisão
+ * (a busca volta a percorrer o intervalo). Itens a mais de 64 KB do início do intervalo também são marcados como
+ * colisão. As tabelas de todos os intervalos ficam num único array, gravado no arquivo .hash.
+ */
+final class HashIndex {
+
+    static final double DEFAULT_UTIL_RATIO = 0.75;
+
+    static final int EMPTY = -1;
+    static final int COLLISION = -2;
+
+    private static final char EMPTY_SLOT = 0xFFFF;
+    private static final char COLLISION_SLOT = 0xFFFE;
+
+    private final int[] slotStarts;
+    private final char[] slots;
+
+    private HashIndex(int[] slotStarts, char[] slots) {
+        this.slotStarts = slotStarts;
+        this.slots = slots;
+    }
+
+    /**
+     * Procura a chave na tabela de um intervalo.
+     *
+     * @param interval a posição do intervalo no índice esparso.
+     * @param key      a chave.
+     * @return o deslocamento do único item candidato em relação ao início do intervalo,
+     * {@link #EMPTY} se a chave com certeza não está no intervalo ou {@link #COLLISION} se o intervalo deve ser percorrido.
+     */
+    int lookup(int interval, byte[] key) {
+        int start = slotStarts[interval];
+        int numSlots = slotStarts[interval + 1] - start;
+        char slot = slots[start + slotOf(key, numSlots)];
+
+        if (slot == EMPTY_SLOT)
+            return EMPTY;
+        if (slot == COLLISION_SLOT)
+            return COLLISION;
+        return slot;
+    }
+
+    /**
+     * Retorna o espaço ocupado pelas tabelas em memória, em bytes.
+     */
+    long byteSize() {
+        return (long) slotStarts.length * Integer.BYTES + (long) slots.length * Character.BYTES;
+    }
+
+    void writeToFile(String filename) {
+        ExtendedOutputStream os = new ExtendedOutputStream(filename);
+
+        os.writeVByteInt(slotStarts.length - 1);
+        for (int i = 1; i < slotStarts.length; i++)
+            os.writeVByteInt(slotStarts[i] - slotStarts[i - 1]);
+
+        byte[] bytes = new byte[slots.length * Character.BYTES];
+        for (int i = 0; i < slots.length; i++) {
+            bytes[2 * i] = (byte) (slots[i] >>> 8);
+            bytes[2 * i + 1] = (byte) slots[i];
+        }
+        os.write(bytes);
+        os.writeChecksum();
+        os.close();
+    }
+
+    static HashIndex readFromFile(String filename) {
+        ExtendedInputStream is = new ExtendedInputStream(filename);
+        try {
+            int[] slotStarts = new int[is.readVByteInt() + 1];
+            for (int i = 1; i < slotStarts.length; i++)
+                slotStarts[i] = slotStarts[i - 1] + is.readVByteInt();
+
+            char[] slots = new char[slotStarts[slotStarts.length - 1]];
+            byte[] bytes = is.readNBytes(slots.length * Character.BYTES);
+            for (int i = 0; i < slots.length; i++)
+                slots[i] = (char) (((bytes[2 * i] & 0xFF) << 8) | (bytes[2 * i + 1] & 0xFF));
+
+            return new HashIndex(slotStarts, slots);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static int slotOf(byte[] key, int numSlots) {
+        return Integer.remainderUnsigned(MurmurHash3.hash32x86(key), numSlots);
+    }
+
+    /**
+     * Monta as tabelas durante a escrita da tabela: os itens de cada intervalo são acumulados
+     * e a tabela do intervalo é gerada quando o próximo começa.
+     */
+    static class Builder {
+
+        private final double utilRatio;
+
+        private int[] slotStarts = new int[17];
+        private char[] slots = new char[64];
+        private int intervals;
+
+        private int[] hashes = new int[16];
+        private long[] offsets = new long[16];
+        private int pending;
+
+        Builder(double utilRatio) {
+            this.utilRatio = utilRatio;
+        }
+
+        /**
+         * Inicia um novo intervalo, fechando o anterior.
+         */
+        void startInterval() {
+            if (intervals > 0 || pending > 0)
+                finishInterval();
+        }
+
+        /**
+         * Adiciona um item ao intervalo atual.
+         *
+         * @param key            a chave do item.
+         * @param relativeOffset o deslocamento do item em relação ao início do intervalo.
+         */
+        void add(byte[] key, long relativeOffset) {
+            if (pending == hashes.length) {
+                hashes = Arrays.copyOf(hashes, pending * 2);
+                offsets = Arrays.copyOf(offsets, pending * 2);
+            }
+            hashes[pending] = MurmurHash3.hash32x86(key);
+            offsets[pending++] = relativeOffset;
+        }
+
+        HashIndex build() {
+            finishInterval();
+            return new HashIndex(Arrays.copyOf(slotStarts, intervals + 1), Arrays.copyOf(slots, slotStarts[intervals]));
+        }
+
+        private void finishInterval() {
+            int numSlots = Math.max(1, (int) Math.ceil(pending / utilRatio));
+            int start = slotStarts[intervals];
+
+            if (intervals + 2 > slotStarts.length)
+                slotStarts = Arrays.copyOf(slotStarts, slotStarts.length * 2);
+            if (start + numSlots > slots.length)
+                slots = Arrays.copyOf(slots, Math.max(slots.length * 2, start + numSlots));
+
+            Arrays.fill(slots, start, start + numSlots, EMPTY_SLOT);
+            for (int i = 0; i < pending; i++) {
+                int slot = start + Integer.remainderUnsigned(hashes[i], numSlots);
+                boolean fits = offsets[i] < COLLISION_SLOT;
+                slots[slot] = slots[slot] == EMPTY_SLOT && fits ? (char) offsets[i] : COLLISION_SLOT;
+            }
+
+            slotStarts[++intervals] = start + numSlots;
+            pending = 0;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package br.com.project.structs.lsm.sstable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache LRU das partições de índice das SSTables com índice particionado, limitado pelo tamanho total em bytes.
+ * Pode ser compartilhado por todas as tabelas (e famílias de colunas) de uma árvore, limitando a memória
+ * usada pelos índices independentemente do volume de dados.
+ */
+public class IndexCache {
+
+    private record PartitionKey(String filename, int partition) {
+    }
+
+    private final long capacity;
+    private final LinkedHashMap<PartitionKey, SparseIndex> partitions = new LinkedHashMap<>(16, 0.75f, true);
+    private long byteSize;
+
+    /**
+     * Cria um cache vazio.
+     *
+     * @param capacity o tamanho máximo das partições guardadas, em bytes.
+     */
+    public IndexCache(long capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("A capacidade deve ser maior que 0");
+        this.capacity = capacity;
+    }
+
+    /**
+     * Retorna a partição do cache, carregando-a se necessário.
+     */
+    synchronized SparseIndex get(String filename, int partition, Supplier<SparseIndex> loader) {
+        PartitionKey key = new PartitionKey(filename, partition);
+        SparseIndex index = partitions.get(key);
+        if (index != null)
+            return index;
+
+        index = loader.get();
+        partitions.put(key, index);
+        byteSize += index.byteSize();
+
+        Iterator<SparseIndex> eldest = partitions.values().iterator();
+        while (byteSize > capacity && eldest.hasNext()) {
+            SparseIndex evicted = eldest.next();
+            // a partição recém-carregada é mantida mesmo que sozinha exceda a capacidade
+            if (evicted == index)
+                break;
+            byteSize -= evicted.byteSize();
+            eldest.remove();
+        }
+        return index;
+    }
+
+    /**
+     * Remove do cache as partições de uma tabela.
+     */
+    synchronized void invalidate(String filename) {
+        Iterator<Map.Entry<PartitionKey, SparseIndex>> it = partitions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<PartitionKey, SparseIndex> entry = it.next();
+            if (entry.getKey().filename().equals(filename)) {
+                byteSize -= entry.getValue().byteSize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Retorna o tamanho atual das partições guardadas, em bytes.
+     */
+    public synchronized long getByteSize() {
+        return byteSize;
+    }
+}
@@ -0,0 +1,101 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+
+/**
+ * Filtro de pertinência de chaves de uma SSTable: responde se a tabela pode conter uma chave,
+ * sem falsos negativos. O arquivo de um filtro começa com uma etiqueta do seu tipo,
+ * permitindo que {@link #readFromFile(String)} reconheça a implementação usada na escrita.
+ */
+public interface KeyFilter {
+
+    /**
+     * Tipos de filtro disponíveis para as SSTables.
+     */
+    enum Type {
+        /**
+         * {@link BloomFilter}: aceita inserções a qualquer momento, com cerca de 1,44·log2(1/fpr) bits por chave.
+         */
+        BLOOM,
+        /**
+         * {@link XorFilter}: construído uma única vez a partir de todas as chaves, com cerca de 1,23·log2(1/fpr)
+         * bits por chave.
+         */
+        XOR
+    }
+
+    /**
+     * Construtor incremental de um filtro, alimentado com as chaves na escrita da tabela.
+     */
+    interface Builder {
+
+        void add(byte[] key);
+
+        KeyFilter build();
+    }
+
+    /**
+     * Verifica se o filtro pode conter a chave.
+     *
+     * @param key a chave.
+     * @return falso se a chave com certeza não foi adicionada.
+     */
+    boolean mightContain(byte[] key);
+
+    /**
+     * Retorna o espaço ocupado pelo filtro em memória, em bits.
+     */
+    long bitSize();
+
+    /**
+     * Escreve o filtro num arquivo, precedido pela etiqueta do tipo.
+     *
+     * @param filename o nome do arquivo.
+     */
+    void writeToFile(String filename);
+
+    /**
+     * Cria um construtor de filtro do tipo informado.
+     *
+     * @param type              o tipo do filtro.
+     * @param falsePositiveRate a taxa de falsos positivos desejada.
+     * @return o construtor.
+     */
+    static Builder builder(Type type, double falsePositiveRate) {
+        return switch (type) {
+            case BLOOM -> new Builder() {
+                final BloomFilter filter = new BloomFilter(BloomFilter.DEFAULT_SIZE, falsePositiveRate);
+
+                @Override
+                public void add(byte[] key) {
+                    filter.add(key);
+                }
+
+                @Override
+                public KeyFilter build() {
+                    return filter;
+                }
+            };
+            case XOR -> new XorFilter.Builder(falsePositiveRate);
+        };
+    }
+
+    /**
+     * Lê um filtro de um arquivo, escolhendo a implementação pela etiqueta do tipo.
+     *
+     * @param filename o nome do arquivo.
+     * @return o filtro.
+     */
+    static KeyFilter readFromFile(String filename) {
+        ExtendedInputStream is = new ExtendedInputStream(filename);
+        try {
+            Type type = Type.values()[is.readVByteInt()];
+            return switch (type) {
+                case BLOOM -> BloomFilter.read(is);
+                case XOR -> XorFilter.read(is);
+            };
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package br.com.project.structs.lsm.sstable;
+
+import java.util.Arrays;
+
+/**
+ * Extrai de uma chave o prefixo registrado no filtro de prefixos de cada SSTable.
+ * Todas as chaves que começam com um mesmo prefixo consultado devem ter o mesmo prefixo extraído;
+ * extratores de tamanho fixo satisfazem essa condição.
+ */
+@FunctionalInterface
+public interface PrefixExtractor {
+
+    /**
+     * Extrai o prefixo de uma chave (ou de um prefixo consultado).
+     *
+     * @param key a chave.
+     * @return o prefixo, ou null se a chave for curta demais para ter um.
+     */
+    byte[] extract(byte[] key);
+
+    /**
+     * Extrator dos primeiros {@code length} bytes da chave. Chaves do tipo String são serializadas em UTF-8,
+     * então {@code fixedLength(3)} agrupa CPFs pelos três primeiros dígitos.
+     */
+    static PrefixExtractor fixedLength(int length) {
+        if (length <= 0)
+            throw new IllegalArgumentException("O tamanho do prefixo deve ser maior que 0");
+        return key -> key.length < length ? null : Arrays.copyOf(key, length);
+    }
+}
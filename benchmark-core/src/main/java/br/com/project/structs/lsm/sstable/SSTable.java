@@ -1,20 +1,27 @@
 package br.com.project.structs.lsm.sstable;
 
+import br.com.project.structs.lsm.io.EntryBuffer;
 import br.com.project.structs.lsm.io.ExtendedInputStream;
 import br.com.project.structs.lsm.io.ExtendedOutputStream;
 import br.com.project.structs.lsm.types.ByteArrayPair;
 import br.com.project.structs.lsm.types.ByteArrayWrapper;
-import br.com.project.structs.lsm.utils.IteratorMerger;
-import br.com.project.structs.lsm.utils.UniqueSortedIterator;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import br.com.project.structs.lsm.utils.FilterIterator;
+import br.com.project.structs.lsm.utils.RateLimiter;
+import br.com.project.structs.lsm.utils.VersionMerger;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * A classe SSTable representa uma tabela de busca otimizada para armazenar
@@ -26,18 +33,51 @@ public class SSTable implements Iterable<ByteArrayPair> {
     public static final String DATA_FILE_EXTENSION = ".data";
     public static final String BLOOM_FILE_EXTENSION = ".bloom";
     public static final String INDEX_FILE_EXTENSION = ".index";
+    public static final String PREFIX_BLOOM_FILE_EXTENSION = ".pbloom";
+    public static final String HASH_FILE_EXTENSION = ".hash";
+    public static final String CHECKSUM_FILE_EXTENSION = ".crc";
 
-    private static final int DEFAULT_SAMPLE_SIZE = 1000;
+    static final int DEFAULT_SAMPLE_SIZE = 1000;
+    static final int DEFAULT_SAMPLE_BYTES = 4096;
+    static final int EXPIRY_SAMPLE_SIZE = 16;
     static final AtomicLong SST_COUNTER = new AtomicLong();
-    LongArrayList sparseOffsets;
-    IntArrayList sparseSizeCount;
-    ObjectArrayList<byte[]> sparseKeys;
-
-    BloomFilter bloomFilter;
+    static final String SST_PREFIX = "sst_";
+    // índice esparso inteiro ou, se particionado, o seu nível superior (fixo em memória)
+    SparseIndex index;
+    SparseIndex.Builder indexBuilder;
+    int indexPartitions;
+    long partitionsPosition;
+    ExtendedInputStream indexIs;
+    IndexCache indexCache;
+    HashIndex hashIndex;
+    HashIndex.Builder hashIndexBuilder;
+
+    // amostragem usada na escrita do índice: a distância em bytes ou, se 0, o número de itens
+    int sampleBytes;
+    int sampleSize;
+
+    int expiringCount;
+    long[] expirySample = new long[0];
+
+    KeyFilter keyFilter;
+    KeyFilter.Builder keyFilterBuilder;
+
+    // checksums dos blocos de dados, mantidos em memória só quando as leituras os verificam
+    boolean verifyChecksums;
+    BlockChecksums blockChecksums;
+    BlockChecksums.Builder checksumsBuilder;
+
+    PrefixExtractor prefixExtractor;
+    BloomFilter prefixBloomFilter;
+    ObjectArrayList<byte[]> prefixes;
 
     public String filename;
     ExtendedInputStream is;
+    // buffers de leitura reutilizados pelas buscas, que são feitas uma de cada vez sobre o fluxo compartilhado
+    private final EntryBuffer entryBuffer = new EntryBuffer();
     public int size;
+    long dataByteSize;
+    TableStatistics statistics;
 
     ByteArrayWrapper minKey;
     ByteArrayWrapper maxKey;
@@ -60,7 +100,7 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * @param items     Os itens a serem escritos na SSTable (deve estar ordenado).
      */
     public SSTable(String directory, Iterator<ByteArrayPair> items) {
-        this(getNextSstFilename(directory), items, DEFAULT_SAMPLE_SIZE, 1024 * 1024 * 256);
+        this(getNextSstFilename(directory), new SSTableOptions(), items, 1024 * 1024 * 256);
     }
 
     /**
@@ -71,7 +111,19 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * @param maxByteSize O tamanho máximo do arquivo SSTable.
      */
     public SSTable(String directory, Iterator<ByteArrayPair> items, long maxByteSize) {
-        this(getNextSstFilename(directory), items, DEFAULT_SAMPLE_SIZE, maxByteSize);
+        this(getNextSstFilename(directory), new SSTableOptions(), items, maxByteSize);
+    }
+
+    /**
+     * Cria uma nova SSTable a partir de um iterável de itens com as opções de escrita informadas.
+     *
+     * @param directory   O diretório onde a SSTable será salva.
+     * @param items       Os itens a serem escritos na SSTable (deve estar ordenado).
+     * @param maxByteSize O tamanho máximo do arquivo SSTable.
+     * @param options     As opções de escrita (amostragem do índice, filtro de Bloom).
+     */
+    public SSTable(String directory, Iterator<ByteArrayPair> items, long maxByteSize, SSTableOptions options) {
+        this(getNextSstFilename(directory), options, items, maxByteSize);
     }
 
     /**
@@ -83,8 +135,12 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * @param maxByteSize O tamanho máximo do arquivo SSTable.
      */
     public SSTable(String filename, Iterator<ByteArrayPair> items, int sampleSize, long maxByteSize) {
+        this(filename, new SSTableOptions().sampleSize(sampleSize), items, maxByteSize);
+    }
+
+    SSTable(String filename, SSTableOptions options, Iterator<ByteArrayPair> items, long maxByteSize) {
         this.filename = filename;
-        writeItems(filename, items, sampleSize, maxByteSize);
+        writeItems(filename, items, options, maxByteSize);
         is = new ExtendedInputStream(filename + DATA_FILE_EXTENSION);
     }
 
@@ -94,8 +150,25 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * @param filename O nome do arquivo base da SSTable.
      */
     public SSTable(String filename) {
+        this(filename, new SSTableOptions());
+    }
+
+    /**
+     * Inicializa uma SSTable a partir de um arquivo existente no disco, com as opções de leitura informadas
+     * (verificação dos checksums, cache do índice, estatísticas e extrator de prefixos). As opções de escrita
+     * são ignoradas.
+     *
+     * @param filename O nome do arquivo base da SSTable.
+     * @param options  As opções da tabela.
+     */
+    public SSTable(String filename, SSTableOptions options) {
         this.filename = filename;
+        indexCache = options.indexCache;
+        prefixExtractor = options.prefixExtractor;
+        verifyChecksums = options.verifyChecksums;
+        statistics = options.statistics;
         initializeFromDisk(filename);
+        reserveFilename(filename);
     }
 
     /**
@@ -103,24 +176,181 @@ public class SSTable implements Iterable<ByteArrayPair> {
      *
      * @param dataDir    O diretório onde as novas SSTables serão armazenadas.
      * @param sstMaxSize O tamanho máximo de cada SSTable.
-     * @param tables     As SSTables a serem combinadas.
+     * @param tables     As SSTables a serem combinadas, da mais recente para a mais antiga.
      * @return Uma lista de SSTables ordenadas.
      */
     public static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTable... tables) {
-        SSTableIterator[] itArray = Arrays.stream(tables).map(SSTable::iterator).toArray(SSTableIterator[]::new);
+        return sortedRun(dataDir, sstMaxSize, new SSTableOptions(), tables);
+    }
+
+    /**
+     * Combina várias SSTables ordenadas numa nova lista de SSTables escritas com as opções informadas.
+     *
+     * @param dataDir    O diretório onde as novas SSTables serão armazenadas.
+     * @param sstMaxSize O tamanho máximo de cada SSTable.
+     * @param options    As opções de escrita das novas tabelas.
+     * @param tables     As SSTables a serem combinadas, da mais recente para a mais antiga.
+     * @return Uma lista de SSTables ordenadas.
+     */
+    public static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTableOptions options, SSTable... tables) {
+        return sortedRun(dataDir, sstMaxSize, options, CompactionFilter.KEEP_ALL, tables);
+    }
+
+    /**
+     * Combina várias SSTables ordenadas numa nova lista de SSTables, aplicando um filtro à versão mais recente
+     * de cada chave. Itens descartados pelo filtro não são escritos; se todos forem descartados, a lista fica vazia.
+     *
+     * @param dataDir    O diretório onde as novas SSTables serão armazenadas.
+     * @param sstMaxSize O tamanho máximo de cada SSTable.
+     * @param options    As opções de escrita das novas tabelas.
+     * @param filter     O filtro aplicado a cada item.
+     * @param tables     As SSTables a serem combinadas, da mais recente para a mais antiga.
+     * @return Uma lista de SSTables ordenadas.
+     */
+    public static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTableOptions options,
+                                                     CompactionFilter filter, SSTable... tables) {
+        return sortedRun(dataDir, sstMaxSize, options, null, filter, tables);
+    }
+
+    /**
+     * Combina várias SSTables ordenadas numa nova lista de SSTables, combinando as versões de cada chave
+     * com as regras informadas antes de aplicar o filtro.
+     * Os checksums dos blocos das tabelas de entrada são sempre verificados; se algum não conferir, as tabelas
+     * já escritas são excluídas e uma {@link CorruptedTableException} é lançada, sem alterar as tabelas de entrada.
+     *
+     * @param dataDir    O diretório onde as novas SSTables serão armazenadas.
+     * @param sstMaxSize O tamanho máximo de cada SSTable.
+     * @param options    As opções de escrita das novas tabelas.
+     * @param combiner   As regras de combinação das versões de uma chave, ou null para manter apenas a mais recente.
+     * @param filter     O filtro aplicado a cada item.
+     * @param tables     As SSTables a serem combinadas, da mais recente para a mais antiga.
+     * @return Uma lista de SSTables ordenadas.
+     */
+    public static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTableOptions options,
+                                                     VersionMerger.Combiner<ByteArrayPair> combiner,
+                                                     CompactionFilter filter, SSTable... tables) {
+        ObjectArrayList<SSTable> res = new ObjectArrayList<>();
+        try {
+            return sortedRun(dataDir, sstMaxSize, options, combiner, filter, null, res::add, newestFirst(tables.length),
+                    tables);
+        } catch (RuntimeException e) {
+            // entrada corrompida (ou falha de escrita): as tabelas novas são descartadas e as antigas mantidas
+            res.forEach(SSTable::closeAndDelete);
+            throw e;
+        }
+    }
+
+    /**
+     * Combina várias SSTables ordenadas a partir de uma chave, entregando cada nova tabela assim que ela é concluída.
+     * Permite retomar uma combinação interrompida: com {@code after} igual à maior chave da última tabela concluída,
+     * as tabelas de entrada são posicionadas pelo índice esparso logo depois dela, e as novas tabelas continuam as já
+     * entregues. As tabelas entregues a {@code completed} passam a ser do chamador e não são excluídas se a combinação
+     * falhar depois; a tabela incompleta é excluída.
+     * As tabelas de entrada são lidas por fluxos próprios, e não pelo fluxo compartilhado pelas buscas, então elas
+     * podem continuar sendo consultadas durante a combinação.
+     *
+     * @param dataDir    O diretório onde as novas SSTables serão armazenadas.
+     * @param sstMaxSize O tamanho máximo de cada SSTable.
+     * @param options    As opções de escrita das novas tabelas.
+     * @param combiner   As regras de combinação das versões de uma chave, ou null para manter apenas a mais recente.
+     * @param filter     O filtro aplicado a cada item.
+     * @param after      A chave a partir da qual (exclusive) os itens são combinados, ou null para todos.
+     * @param completed  Recebe cada nova tabela, já completa no disco.
+     * @param priorities A prioridade de versão de cada tabela: entre versões de uma chave, prevalece a da tabela de
+     *                   maior prioridade (ver {@link VersionMerger}).
+     * @param tables     As SSTables a serem combinadas.
+     * @return As novas tabelas, em ordem.
+     */
+    public static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTableOptions options,
+                                                     VersionMerger.Combiner<ByteArrayPair> combiner,
+                                                     CompactionFilter filter, byte[] after,
+                                                     Consumer<SSTable> completed, int[] priorities,
+                                                     SSTable... tables) {
+        SSTableIterator[] itArray = new SSTableIterator[tables.length];
+        try {
+            for (int i = 0; i < tables.length; i++)
+                itArray[i] = tables[i].verifiedIteratorAfter(after);
+            return sortedRun(dataDir, sstMaxSize, options, combiner, filter, completed, priorities, itArray);
+        } finally {
+            for (SSTableIterator it : itArray)
+                if (it != null)
+                    it.close();
+        }
+    }
 
-        IteratorMerger<ByteArrayPair> merger = new IteratorMerger<>(itArray);
-        UniqueSortedIterator<ByteArrayPair> uniqueSortedIterator = new UniqueSortedIterator<>(merger);
+    private static ObjectArrayList<SSTable> sortedRun(String dataDir, long sstMaxSize, SSTableOptions options,
+                                                      VersionMerger.Combiner<ByteArrayPair> combiner,
+                                                      CompactionFilter filter, Consumer<SSTable> completed,
+                                                      int[] priorities, SSTableIterator[] itArray) {
+        // os itens das entradas são lidos em buffers reutilizáveis, e só a versão que sobrevive de cada chave é copiada
+        @SuppressWarnings("unchecked")
+        Iterator<EntryBuffer>[] sources = (Iterator<EntryBuffer>[]) new Iterator<?>[itArray.length];
+        for (int i = 0; i < itArray.length; i++)
+            sources[i] = itArray[i].entries(options.rateLimiter);
+        VersionMerger<EntryBuffer> versions = new VersionMerger<>(Comparator.naturalOrder(), priorities,
+                entryCombiner(combiner), null, sources);
+        Iterator<ByteArrayPair> survivors = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return versions.hasNext();
+            }
+
+            @Override
+            public ByteArrayPair next() {
+                return versions.next().toPair();
+            }
+        };
+        FilterIterator<ByteArrayPair> filtered = new FilterIterator<>(survivors, filter);
 
         ObjectArrayList<SSTable> res = new ObjectArrayList<>();
 
-        while (uniqueSortedIterator.hasNext()) {
-            res.add(new SSTable(getNextSstFilename(dataDir), uniqueSortedIterator, DEFAULT_SAMPLE_SIZE, sstMaxSize));
+        while (filtered.hasNext()) {
+            String filename = getNextSstFilename(dataDir);
+            SSTable table;
+            try {
+                table = new SSTable(filename, options, filtered, sstMaxSize);
+            } catch (RuntimeException e) {
+                deleteFiles(filename);
+                throw e;
+            }
+            res.add(table);
+            completed.accept(table);
         }
 
         return res;
     }
 
+    /**
+     * Adapta as regras de combinação aos buffers lidos na compactação. Só as versões de chaves repetidas entre as
+     * entradas são copiadas para pares.
+     */
+    private static VersionMerger.Combiner<EntryBuffer> entryCombiner(VersionMerger.Combiner<ByteArrayPair> combiner) {
+        if (combiner == null)
+            return null;
+
+        return new VersionMerger.Combiner<>() {
+            @Override
+            public boolean isPartial(EntryBuffer item) {
+                return combiner.isPartial(item.toPair());
+            }
+
+            @Override
+            public EntryBuffer combine(EntryBuffer newer, EntryBuffer older) {
+                return EntryBuffer.of(combiner.combine(newer.toPair(), older.toPair()));
+            }
+        };
+    }
+
+    /**
+     * Prioridades de versão para tabelas informadas da mais recente para a mais antiga.
+     */
+    private static int[] newestFirst(int tableCount) {
+        int[] res = new int[tableCount];
+        for (int i = 0; i < tableCount; i++)
+            res[i] = tableCount - i;
+        return res;
+    }
+
     /**
      * Lê um item da SSTable pelo valor da chave.
      *
@@ -128,62 +358,420 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * @return O valor associado à chave, ou null se a chave não for encontrada.
      */
     public byte[] get(byte[] key) {
-        ByteArrayWrapper keyWrapper = new ByteArrayWrapper(key);
+        return get(key, null);
+    }
 
+    /**
+     * Lê um item da SSTable pelo valor da chave, registrando o caminho da busca.
+     *
+     * As buscas em uma mesma tabela são serializadas, pois compartilham o fluxo de dados; buscas em tabelas
+     * diferentes correm em paralelo.
+     *
+     * @param key   A chave do item a ser lido.
+     * @param probe o registro da busca, ou null.
+     * @return O valor associado à chave, ou null se a chave não for encontrada.
+     */
+    public synchronized byte[] get(byte[] key, TableProbe probe) {
+        if (probe == null)
+            return lookup(key, null);
+
+        long start = System.nanoTime();
+        long dataBytes = is.bytesRead();
+        long indexBytes = indexIs == null ? 0 : indexIs.bytesRead();
+
+        byte[] value = lookup(key, probe);
+
+        probe.nanos = System.nanoTime() - start;
+        probe.dataBytesRead = is.bytesRead() - dataBytes;
+        probe.indexBytesRead = indexIs == null ? 0 : indexIs.bytesRead() - indexBytes;
+        return value;
+    }
+
+    private byte[] lookup(byte[] key, TableProbe probe) {
         // verifica se a chave está fora do intervalo conhecido ou se com certeza não está presente (via Bloom Filter)
-        if (keyWrapper.compareTo(minKey) < 0 || keyWrapper.compareTo(maxKey) > 0 || !bloomFilter.mightContain(key))
+        if (!covers(key)) {
+            if (probe != null)
+                probe.outcome = TableProbe.Outcome.OUT_OF_RANGE;
             return null;
+        }
 
-        int offsetIndex = getCandidateOffsetIndex(key);
-        long offset = sparseOffsets.getLong(offsetIndex);
-        int remaining = size - sparseSizeCount.getInt(offsetIndex);
-        is.seek(offset);
+        boolean mightContain = keyFilter.mightContain(key);
+        if (probe != null && !mightContain)
+            probe.outcome = TableProbe.Outcome.FILTERED;
+        if (statistics == null)
+            return mightContain ? find(key, probe) : null;
 
-        int cmp = 1;
-        int searchKeyLen = key.length, readKeyLen, readValueLen;
+        statistics.filterChecks.increment();
+        if (!mightContain) {
+            statistics.filterUseful.increment();
+            return null;
+        }
 
-        byte[] readKey;
+        byte[] value = find(key, probe);
+        if (value == null)
+            statistics.filterFalsePositives.increment();
+        else
+            statistics.tableHits.increment();
+        return value;
+    }
 
-        while (cmp > 0 && remaining > 0) {
+    /**
+     * Retorna se a chave está no intervalo [menor chave, maior chave] da tabela, ou seja, se uma busca por ela
+     * consulta o filtro da tabela.
+     */
+    public boolean covers(byte[] key) {
+        return ByteArrayWrapper.compare(key, key.length, minKey.getData(), minKey.getData().length) >= 0
+                && ByteArrayWrapper.compare(key, key.length, maxKey.getData(), maxKey.getData().length) <= 0;
+    }
 
-            remaining--;
-            readKeyLen = is.readVByteInt();
+    /**
+     * Retorna se o intervalo de chaves da tabela tem interseção com [from, to].
+     */
+    public boolean overlaps(byte[] from, byte[] to) {
+        return ByteArrayWrapper.compare(to, to.length, minKey.getData(), minKey.getData().length) >= 0
+                && ByteArrayWrapper.compare(from, from.length, maxKey.getData(), maxKey.getData().length) <= 0;
+    }
+
+    public byte[] getMinKey() {
+        return minKey.getData();
+    }
+
+    public byte[] getMaxKey() {
+        return maxKey.getData();
+    }
 
-            // passou demais
-            if (readKeyLen > searchKeyLen) {
+    /**
+     * Procura a chave nos dados, depois de o filtro não descartar a tabela.
+     */
+    private byte[] find(byte[] key, TableProbe probe) {
+        SparseIndex block = indexFor(key);
+        int offsetIndex = block.floor(key);
+        long offset = block.offset(offsetIndex);
+        int remaining = size - block.count(offsetIndex);
+
+        int candidate = HashIndex.COLLISION;
+        if (hashIndex != null) {
+            candidate = hashIndex.lookup(block.base() + offsetIndex, key);
+            if (candidate == HashIndex.EMPTY) {
+                if (probe != null)
+                    probe.outcome = TableProbe.Outcome.HASH_MISS;
                 return null;
             }
+        }
 
-            // ficou muito curto
-            if (readKeyLen < searchKeyLen) {
+        if (verifyChecksums)
+            verifyBlock(block.base() + offsetIndex);
+
+        byte[] value = null;
+        int decoded = 0;
+
+        if (candidate != HashIndex.COLLISION) {
+            value = readCandidate(key, offset + candidate);
+            decoded = 1;
+        } else {
+            is.seek(offset);
+
+            int cmp = 1;
+            int searchKeyLen = key.length, readKeyLen, readValueLen;
+
+            while (cmp > 0 && remaining > 0) {
+
+                remaining--;
+                decoded++;
+                readKeyLen = is.readVByteInt();
+
+                // passou demais
+                if (readKeyLen > searchKeyLen) {
+                    break;
+                }
+
+                // ficou muito curto
+                if (readKeyLen < searchKeyLen) {
+                    readValueLen = is.readVByteInt();
+                    is.skip(readKeyLen + readValueLen);
+                    continue;
+                }
+
+                // compara a chave direto no buffer do fluxo, se for igual, lê o valor
                 readValueLen = is.readVByteInt();
-                is.skip(readKeyLen + readValueLen);
-                continue;
+                cmp = is.compareNext(key);
+
+                if (cmp == 0) {
+                    value = is.readNBytes(readValueLen);
+                } else {
+                    is.skip(readValueLen);
+                }
             }
+        }
 
-            // lê a chave completa, compara, se for igual, lê o valor
-            readValueLen = is.readVByteInt();
-            readKey = is.readNBytes(readKeyLen);
-            cmp = compare(key, readKey);
+        if (probe != null) {
+            probe.outcome = value == null ? TableProbe.Outcome.NOT_FOUND : TableProbe.Outcome.FOUND;
+            probe.blocksRead = 1;
+            probe.entriesDecoded = decoded;
+        }
+        return value;
+    }
 
-            if (cmp == 0) {
-                return is.readNBytes(readValueLen);
-            } else {
-                is.skip(readValueLen);
-            }
+    /**
+     * Lê o único item do intervalo que pode ter a chave, apontado pela tabela de hash.
+     */
+    private byte[] readCandidate(byte[] key, long offset) {
+        is.seek(offset);
+        int readKeyLen = is.readVByteInt();
+        int readValueLen = is.readVByteInt();
+        if (readKeyLen != key.length)
+            return null;
+
+        return is.compareNext(key) == 0 ? is.readNBytes(readValueLen) : null;
+    }
+
+    /**
+     * Lê os itens com chave no intervalo [from, to], incluindo tombstones.
+     * O índice esparso é usado para posicionar o fluxo próximo ao início do intervalo.
+     *
+     * @param from limite inferior (inclusivo).
+     * @param to   limite superior (inclusivo).
+     * @return os itens do intervalo, em ordem.
+     */
+    public synchronized ObjectArrayList<ByteArrayPair> scan(byte[] from, byte[] to) {
+        ObjectArrayList<ByteArrayPair> res = new ObjectArrayList<>();
+        ByteArrayWrapper fromWrapper = new ByteArrayWrapper(from);
+        ByteArrayWrapper toWrapper = new ByteArrayWrapper(to);
+
+        if (toWrapper.compareTo(minKey) < 0 || fromWrapper.compareTo(maxKey) > 0)
+            return res;
+
+        SparseIndex block = indexFor(from);
+        int offsetIndex = block.floor(from);
+        int remaining = size - block.count(offsetIndex);
+        int nextBlock = block.base() + offsetIndex;
+        is.seek(block.offset(offsetIndex));
+
+        // os itens são lidos nos buffers reutilizáveis e só os do intervalo são copiados
+        while (remaining-- > 0) {
+            if (verifyChecksums)
+                nextBlock = verifyBlockAt(nextBlock);
+            if (!is.readEntry(entryBuffer))
+                break;
+
+            if (entryBuffer.compareKey(to) > 0)
+                break;
+            if (entryBuffer.compareKey(from) >= 0)
+                res.add(entryBuffer.toPair());
         }
 
-        return null;
+        return res;
+    }
+
+    /**
+     * Verifica, pelo filtro de prefixos, se a tabela pode conter chaves com o prefixo.
+     * Sem extrator configurado, ou se o prefixo for curto demais para o extrator, retorna verdadeiro.
+     *
+     * @param prefix o prefixo consultado.
+     * @return falso se com certeza nenhuma chave da tabela começa com o prefixo.
+     */
+    public boolean mightContainPrefix(byte[] prefix) {
+        if (prefixBloomFilter == null || prefixExtractor == null)
+            return true;
+
+        byte[] extracted = prefixExtractor.extract(prefix);
+        return extracted == null || prefixBloomFilter.mightContain(extracted);
     }
 
     /**
-     * Retorna um iterador sobre os itens da SSTable.
+     * Lê todos os itens (incluindo tombstones) cuja chave começa com o prefixo.
+     * A tabela é ignorada se o filtro de prefixos descartar o prefixo; caso contrário, é lido um intervalo
+     * para cada tamanho de chave entre o prefixo e a maior chave da tabela.
+     *
+     * @param prefix o prefixo.
+     * @return os itens encontrados, em ordem.
+     */
+    public ObjectArrayList<ByteArrayPair> scanPrefix(byte[] prefix) {
+        ObjectArrayList<ByteArrayPair> res = new ObjectArrayList<>();
+        if (!mightContainPrefix(prefix))
+            return res;
+
+        int minLength = Math.max(prefix.length, minKey.getData().length);
+        for (int length = minLength; length <= maxKey.getData().length; length++)
+            res.addAll(scan(ByteArrayWrapper.prefixLowerBound(prefix, length), ByteArrayWrapper.prefixUpperBound(prefix, length)));
+        return res;
+    }
+
+    /**
+     * Estima a fração dos itens da tabela que já expiraram no instante informado,
+     * a partir da amostra de instantes de expiração gravada no índice.
+     *
+     * @param now o instante atual, em milissegundos.
+     * @return um valor entre 0 e 1.
+     */
+    public double expiredFraction(long now) {
+        if (expiringCount == 0 || expirySample.length == 0)
+            return 0;
+
+        int expired = 0;
+        for (long expiresAt : expirySample) {
+            if (expiresAt <= now)
+                expired++;
+        }
+        return (double) expired / expirySample.length * expiringCount / size;
+    }
+
+    /**
+     * Retorna a distância, em bytes, entre as entradas do índice esparso gravada no arquivo .index,
+     * ou 0 se a tabela foi amostrada por número de itens.
+     */
+    public int getSampleBytes() {
+        return sampleBytes;
+    }
+
+    /**
+     * Retorna o número de itens entre as entradas do índice esparso, se a tabela foi amostrada por itens, ou 0.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Retorna o tamanho do arquivo de dados, em bytes.
+     */
+    public long dataByteSize() {
+        return dataByteSize;
+    }
+
+    /**
+     * Retorna o espaço ocupado em memória pelo índice esparso fixo da tabela (o índice inteiro ou,
+     * se particionado, apenas o nível superior), em bytes.
+     */
+    public long indexByteSize() {
+        return index.byteSize();
+    }
+
+    /**
+     * Retorna um iterador sobre os itens da SSTable. O iterador lê o arquivo por um fluxo próprio, fechado quando os
+     * itens acabam, então as buscas na tabela podem continuar durante a iteração.
      *
      * @return Iterador da tabela.
      */
     public Iterator<ByteArrayPair> iterator() {
-        is.seek(0);
-        return new SSTableIterator(this);
+        return new SSTableIterator(this, verifyChecksums);
+    }
+
+    /**
+     * Retorna um iterador que verifica o checksum de cada bloco, independentemente das opções da tabela.
+     * Usado pela compactação, que não deve propagar dados corrompidos para as novas tabelas.
+     */
+    private SSTableIterator verifiedIterator() {
+        return new SSTableIterator(this, true);
+    }
+
+    /**
+     * Retorna um iterador verificado posicionado no primeiro item com chave maior que {@code after}:
+     * o fluxo vai para o intervalo do índice esparso da chave, cujo bloco é verificado, e os itens até ela são pulados.
+     */
+    private SSTableIterator verifiedIteratorAfter(byte[] after) {
+        SSTableIterator it = verifiedIterator();
+        if (after == null || ByteArrayWrapper.compare(after, after.length, minKey.getData(), minKey.getData().length) < 0)
+            return it;
+        if (ByteArrayWrapper.compare(after, after.length, maxKey.getData(), maxKey.getData().length) >= 0) {
+            it.remaining = 0;
+            return it;
+        }
+
+        SparseIndex block = indexFor(after);
+        int offsetIndex = block.floor(after);
+        it.is.seek(block.offset(offsetIndex));
+        it.remaining = size - block.count(offsetIndex);
+        it.nextBlock = block.base() + offsetIndex;
+
+        EntryBuffer skipped = new EntryBuffer();
+        while (it.remaining > 0) {
+            it.nextBlock = verifyBlockAt(it.is, it.nextBlock);
+            long position = it.is.position();
+            it.is.readEntry(skipped);
+            if (skipped.compareKey(after) > 0) {
+                it.is.seek(position);
+                break;
+            }
+            it.remaining--;
+        }
+        return it;
+    }
+
+    /**
+     * Verifica os checksums de todos os arquivos da tabela: os blocos do arquivo de dados e os arquivos
+     * de índice, filtros e checksums. Os dados são lidos do disco por um fluxo próprio, e não pelo buffer
+     * compartilhado pelas buscas.
+     *
+     * @throws CorruptedTableException se algum arquivo não conferir.
+     */
+    public void verify() {
+        verifyMetadata(filename);
+        BlockChecksums checksums = checksums();
+        ExtendedInputStream dataIs = new ExtendedInputStream(filename + DATA_FILE_EXTENSION);
+        try {
+            for (int block = 0; block < checksums.size(); block++)
+                verifyBlock(dataIs, checksums, block);
+        } finally {
+            dataIs.close();
+        }
+    }
+
+    private BlockChecksums checksums() {
+        if (blockChecksums != null)
+            return blockChecksums;
+
+        BlockChecksums checksums = BlockChecksums.readFromFile(filename + CHECKSUM_FILE_EXTENSION);
+        if (verifyChecksums)
+            blockChecksums = checksums;
+        return checksums;
+    }
+
+    /**
+     * Verifica o checksum de um bloco do arquivo de dados e posiciona o fluxo no início dele.
+     */
+    private void verifyBlock(int block) {
+        verifyBlock(is, checksums(), block);
+    }
+
+    private void verifyBlock(ExtendedInputStream is, BlockChecksums checksums, int block) {
+        long start = checksums.start(block);
+        if (is.checksum(start, checksums.length(block)) != checksums.checksum(block))
+            throw new CorruptedTableException(filename, "checksum do bloco " + block + " (posição " + start + ") não confere");
+        is.seek(start);
+    }
+
+    /**
+     * Durante uma leitura sequencial, verifica o bloco que começa na posição atual do fluxo, se houver.
+     *
+     * @param nextBlock o próximo bloco ainda não verificado.
+     * @return o próximo bloco a verificar.
+     */
+    private int verifyBlockAt(int nextBlock) {
+        return verifyBlockAt(is, nextBlock);
+    }
+
+    private int verifyBlockAt(ExtendedInputStream is, int nextBlock) {
+        BlockChecksums checksums = checksums();
+        if (nextBlock < checksums.size() && is.position() == checksums.start(nextBlock)) {
+            verifyBlock(is, checksums, nextBlock);
+            return nextBlock + 1;
+        }
+        return nextBlock;
+    }
+
+    /**
+     * Verifica o CRC32C gravado no fim de cada arquivo de metadados da tabela.
+     */
+    private static void verifyMetadata(String filename) {
+        for (var extension : List.of(INDEX_FILE_EXTENSION, BLOOM_FILE_EXTENSION, PREFIX_BLOOM_FILE_EXTENSION,
+                HASH_FILE_EXTENSION, CHECKSUM_FILE_EXTENSION)) {
+            String file = filename + extension;
+            boolean optional = extension.equals(PREFIX_BLOOM_FILE_EXTENSION) || extension.equals(HASH_FILE_EXTENSION);
+            if (optional && !new File(file).exists())
+                continue;
+            if (!ExtendedInputStream.verifyChecksum(file))
+                throw new CorruptedTableException(filename, "checksum do arquivo " + file + " não confere");
+        }
     }
 
     /**
@@ -191,13 +779,27 @@ public class SSTable implements Iterable<ByteArrayPair> {
      */
     public void close() {
         is.close();
+        if (indexIs != null)
+            indexIs.close();
+        if (indexCache != null)
+            indexCache.invalidate(filename);
     }
 
     /**
      * Exclui os arquivos relacionados à SSTable do disco.
      */
     public void deleteFiles() {
-        for (var extension : List.of(DATA_FILE_EXTENSION, INDEX_FILE_EXTENSION, BLOOM_FILE_EXTENSION))
+        deleteFiles(filename);
+    }
+
+    /**
+     * Exclui os arquivos de uma SSTable pelo nome base, sem abri-la.
+     *
+     * @param filename o nome base da SSTable.
+     */
+    public static void deleteFiles(String filename) {
+        for (var extension : List.of(DATA_FILE_EXTENSION, INDEX_FILE_EXTENSION, BLOOM_FILE_EXTENSION,
+                PREFIX_BLOOM_FILE_EXTENSION, HASH_FILE_EXTENSION, CHECKSUM_FILE_EXTENSION))
             new File(filename + extension).delete();
     }
 
@@ -209,8 +811,75 @@ public class SSTable implements Iterable<ByteArrayPair> {
         deleteFiles();
     }
 
-    private static String getNextSstFilename(String directory) {
-        return String.format("%s/sst_%d", directory, SST_COUNTER.incrementAndGet());
+    /**
+     * Vincula os arquivos de uma SSTable a um novo nome gerado no diretório e abre a tabela com o novo nome.
+     * Os arquivos são ligados por links físicos, sem cópia dos dados; se o sistema de arquivos não permitir
+     * (por exemplo, entre dispositivos diferentes), são copiados. Os arquivos originais não são alterados.
+     *
+     * @param filename  o nome base da SSTable a ser vinculada.
+     * @param directory o diretório de destino.
+     * @param options   as opções de leitura da nova tabela.
+     * @return a tabela aberta com o novo nome.
+     */
+    public static SSTable linkInto(String filename, String directory, SSTableOptions options) {
+        String target = getNextSstFilename(directory);
+        try {
+            for (var extension : List.of(DATA_FILE_EXTENSION, INDEX_FILE_EXTENSION, BLOOM_FILE_EXTENSION,
+                    PREFIX_BLOOM_FILE_EXTENSION, HASH_FILE_EXTENSION, CHECKSUM_FILE_EXTENSION)) {
+                Path source = Paths.get(filename + extension);
+                if (!Files.exists(source))
+                    continue;
+                Path link = Paths.get(target + extension);
+                try {
+                    Files.createLink(link, source);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(source, link);
+                }
+            }
+            return new SSTable(target, options);
+        } catch (IOException e) {
+            deleteFiles(target);
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            deleteFiles(target);
+            throw e;
+        }
+    }
+
+    static String getNextSstFilename(String directory) {
+        return String.format("%s/" + SST_PREFIX + "%d", directory, SST_COUNTER.incrementAndGet());
+    }
+
+    /**
+     * Garante que os próximos nomes gerados sejam maiores que o de uma tabela aberta do disco,
+     * para que tabelas escritas depois de um reinício não sobrescrevam as existentes.
+     */
+    private static void reserveFilename(String filename) {
+        String name = new File(filename).getName();
+        if (!name.startsWith(SST_PREFIX))
+            return;
+        try {
+            long number = Long.parseLong(name.substring(SST_PREFIX.length()));
+            SST_COUNTER.accumulateAndGet(number, Math::max);
+        } catch (NumberFormatException ignored) {
+            // nome escolhido pelo usuário
+        }
+    }
+
+    /**
+     * Retorna se o arquivo pertence a uma SSTable com nome gerado, e o nome base da tabela (sem a extensão).
+     *
+     * @param name o nome do arquivo, sem o diretório.
+     * @return o nome base, ou null se o arquivo não for de uma SSTable.
+     */
+    public static String tableNameOf(String name) {
+        if (!name.startsWith(SST_PREFIX))
+            return null;
+        for (var extension : List.of(DATA_FILE_EXTENSION, INDEX_FILE_EXTENSION, BLOOM_FILE_EXTENSION,
+                PREFIX_BLOOM_FILE_EXTENSION, HASH_FILE_EXTENSION, CHECKSUM_FILE_EXTENSION))
+            if (name.endsWith(extension))
+                return name.substring(0, name.length() - extension.length());
+        return null;
     }
 
     /**
@@ -220,89 +889,109 @@ public class SSTable implements Iterable<ByteArrayPair> {
      * - os offsets esparsos e tamanhos acumulados a partir do índice
      * - as chaves associadas aos pontos de amostragem
      * - o filtro de Bloom utilizado para consultas rápidas de existência de chave
-     * O arquivo .index armazena o número total de elementos, seguido pelas diferenças de offset e contagem
-     * relativas aos pontos de amostragem. Esses dados são reconstruídos somando cumulativamente os valores.
+     * O arquivo .index armazena o número total de elementos, a amostragem usada, a amostra de expirações, o número de partições
+     * e o índice esparso (ver {@link SparseIndex}). Quando particionado, o índice gravado é o nível superior,
+     * seguido pelas partições, que são lidas sob demanda.
      * Por fim, o filtro de Bloom é carregado do arquivo correspondente.
+     * Antes de tudo, os checksums dos arquivos de metadados são verificados.
      *
      * @param filename caminho base dos arquivos da SSTable (sem extensão)
      */
     private void initializeFromDisk(String filename) {
+        verifyMetadata(filename);
+
         // arquivo de itens
         is = new ExtendedInputStream(filename + DATA_FILE_EXTENSION);
+        dataByteSize = new File(filename + DATA_FILE_EXTENSION).length();
 
         // índice esparso
-        sparseOffsets = new LongArrayList();
-        sparseSizeCount = new IntArrayList();
-        sparseKeys = new ObjectArrayList<>();
-
         ExtendedInputStream indexIs = new ExtendedInputStream(filename + INDEX_FILE_EXTENSION);
         size = indexIs.readVByteInt();
-
-        int sparseSize = indexIs.readVByteInt();
-        long offsetsCumulative = 0L;
-        sparseOffsets.add(offsetsCumulative);
-        for (int i = 0; i < sparseSize - 1; i++) {
-            offsetsCumulative += indexIs.readVByteLong();
-            sparseOffsets.add(offsetsCumulative);
+        sampleBytes = indexIs.readVByteInt();
+        sampleSize = indexIs.readVByteInt();
+
+        expiringCount = indexIs.readVByteInt();
+        expirySample = new long[indexIs.readVByteInt()];
+        for (int i = 0; i < expirySample.length; i++)
+            expirySample[i] = indexIs.readVByteLong();
+
+        indexPartitions = indexIs.readVByteInt();
+        index = SparseIndex.read(indexIs, 0);
+        if (indexPartitions > 0) {
+            // as partições são lidas sob demanda pelo mesmo fluxo
+            partitionsPosition = indexIs.position();
+            this.indexIs = indexIs;
+        } else {
+            indexIs.close();
         }
 
-        int sizeCumulative = 0;
-        sparseSizeCount.add(sizeCumulative);
-        for (int i = 0; i < sparseSize - 1; i++) {
-            sizeCumulative += indexIs.readVByteInt();
-            sparseSizeCount.add(sizeCumulative);
+        // a menor chave é a do primeiro item; a maior, a do último item do último intervalo do índice
+        is.seek(0);
+        minKey = is.readBytePair().getKey();
+        SparseIndex last = indexPartitions > 0 ? readPartition(index.size() - 1) : index;
+        is.seek(last.offset(last.size() - 1));
+        byte[] max = null;
+        for (int remaining = size - last.count(last.size() - 1); remaining > 0; remaining--) {
+            is.readEntry(entryBuffer);
+            if (remaining == 1)
+                max = Arrays.copyOf(entryBuffer.getKey(), entryBuffer.getKeyLength());
         }
+        maxKey = new ByteArrayWrapper(max);
 
-        for (int i = 0; i < sparseSize; i++)
-            sparseKeys.add(indexIs.readNBytes(indexIs.readVByteInt()));
+        // filtro de chaves (Bloom ou xor, conforme a etiqueta gravada no arquivo)
+        keyFilter = KeyFilter.readFromFile(filename + BLOOM_FILE_EXTENSION);
 
-        is.close();
+        // o filtro de prefixos só é usado se a tabela for aberta com o mesmo extrator da escrita
+        if (new File(filename + PREFIX_BLOOM_FILE_EXTENSION).exists())
+            prefixBloomFilter = BloomFilter.readFromFile(filename + PREFIX_BLOOM_FILE_EXTENSION);
 
-        // filtro de bloom
-        bloomFilter = BloomFilter.readFromFile(filename + BLOOM_FILE_EXTENSION);
+        if (new File(filename + HASH_FILE_EXTENSION).exists())
+            hashIndex = HashIndex.readFromFile(filename + HASH_FILE_EXTENSION);
     }
 
-    private int getCandidateOffsetIndex(byte[] key) {
-        int low = 0;
-        int high = sparseOffsets.size() - 1;
-
-        while (low < (high - 1)) {
-            int mid = (low + high) / 2;
-            int cmp = compare(key, sparseKeys.get(mid));
-
-            if (cmp < 0)
-                high = mid - 1;
-            else if (cmp > 0)
-                low = mid;
-            else
-                return mid;
-        }
-        return low;
+    /**
+     * Retorna o bloco do índice esparso onde a chave deve ser buscada: o índice inteiro, ou a partição
+     * apontada pelo nível superior, obtida do cache.
+     */
+    private SparseIndex indexFor(byte[] key) {
+        if (indexPartitions == 0)
+            return index;
+
+        int partition = index.floor(key);
+        if (indexCache == null)
+            return readPartition(partition);
+        return indexCache.get(filename, partition, () -> readPartition(partition));
     }
 
-    private int compare(byte[] b1, byte[] b2) {
-        return new ByteArrayWrapper(b1).compareTo(new ByteArrayWrapper(b2));
+    private SparseIndex readPartition(int partition) {
+        // o fluxo do índice é compartilhado pelas buscas e pelos iteradores da compactação
+        synchronized (indexIs) {
+            indexIs.seek(partitionsPosition + index.offset(partition));
+            // no nível superior, a contagem de cada partição é a posição da sua primeira entrada no índice completo
+            return SparseIndex.read(indexIs, index.count(partition));
+        }
     }
 
     /**
      * Escreve os pares chave-valor no disco, gerando os arquivos .data, .bloom e .index.
      * EPercorre os itens do iterador e grava os dados no arquivo .data enquanto mantém:
-     * - um filtro de Bloom com todas as chaves
+     * - um filtro com todas as chaves (de Bloom ou xor, conforme {@link SSTableOptions#filterType})
      * - amostras dos offsets e posições para formar um índice esparso
-     * A cada 'sampleSize' elementos, registra a chave, o offset e a contagem atual, que
-     * são utilizados na criação do arquivo .index.
-     * Após o término, também grava o filtro de Bloom no arquivo correspondente.
+     * A cada 'sampleBytes' bytes escritos (ou 'sampleSize' elementos), registra a chave, o offset e a contagem atual, que
+     * são utilizados na criação do arquivo .index, particionado se exceder {@link SSTableOptions#indexPartitionSize}.
+     * Após o término, constrói o filtro e o grava no arquivo .bloom, precedido pela etiqueta do tipo.
+     * Com {@link SSTableOptions#hashIndex(boolean)}, também grava no arquivo .hash as tabelas de hash dos intervalos.
      * Se o iterador estiver vazio, uma exceção é lançada para evitar a criação de uma SSTable inválida.
      *
      * @param filename    caminho base para os arquivos a serem criados (sem extensão)
      * @param items       iterador dos pares chave-valor a serem gravados
-     * @param sampleSize  intervalo de amostragem para gerar o índice esparso
+     * @param options     opções de escrita (intervalo de amostragem do índice esparso e filtro de Bloom)
      * @param maxByteSize limite máximo de bytes que podem ser escritos no arquivo .data
      */
-    private void writeItems(String filename, Iterator<ByteArrayPair> items, int sampleSize, long maxByteSize) {
-        initializeIndexStructures();
+    private void writeItems(String filename, Iterator<ByteArrayPair> items, SSTableOptions options, long maxByteSize) {
+        initializeIndexStructures(options);
 
-        int numElements = writeDataFile(filename, items, sampleSize, maxByteSize);
+        int numElements = writeDataFile(filename, items, options, maxByteSize);
 
         if (numElements == 0) {
             throw new IllegalArgumentException("Tentativa de criar uma SSTable a partir de um iterador vazio");
@@ -311,19 +1000,34 @@ public class SSTable implements Iterable<ByteArrayPair> {
         this.size = numElements;
 
         writeBloomFilter(filename);
-        writeIndexFile(filename, numElements);
+        if (prefixExtractor != null)
+            writePrefixBloomFilter(filename, options);
+        writeIndexFile(filename, numElements, options);
+        if (hashIndexBuilder != null)
+            writeHashIndex(filename);
+        writeBlockChecksums(filename);
     }
 
-    private void initializeIndexStructures() {
-        sparseOffsets = new LongArrayList();
-        sparseSizeCount = new IntArrayList();
-        sparseKeys = new ObjectArrayList<>();
-        bloomFilter = new BloomFilter();
+    private void initializeIndexStructures(SSTableOptions options) {
+        indexBuilder = new SparseIndex.Builder();
+        indexCache = options.indexCache;
+        hashIndexBuilder = options.hashIndex ? new HashIndex.Builder(HashIndex.DEFAULT_UTIL_RATIO) : null;
+        keyFilterBuilder = KeyFilter.builder(options.filterType, options.bloomFalsePositiveRate);
+        prefixExtractor = options.prefixExtractor;
+        prefixes = prefixExtractor != null ? new ObjectArrayList<>() : null;
+        verifyChecksums = options.verifyChecksums;
+        statistics = options.statistics;
+        checksumsBuilder = new BlockChecksums.Builder();
     }
 
-    private int writeDataFile(String filename, Iterator<ByteArrayPair> items, int sampleSize, long maxByteSize) {
-        ExtendedOutputStream ios = new ExtendedOutputStream(filename + DATA_FILE_EXTENSION);
+    private int writeDataFile(String filename, Iterator<ByteArrayPair> items, SSTableOptions options, long maxByteSize) {
+        ExtendedOutputStream ios = new ExtendedOutputStream(filename + DATA_FILE_EXTENSION, options.directIo);
 
+        sampleBytes = options.sampleBytes;
+        sampleSize = sampleBytes > 0 ? 0 : options.sampleSize;
+        long nextSample = 0L;
+        long intervalStart = 0L;
+        LongArrayList expiries = options.expiryExtractor != null ? new LongArrayList() : null;
         int numElements = 0;
         long offset = 0L;
         long byteSize = 0L;
@@ -335,64 +1039,166 @@ public class SSTable implements Iterable<ByteArrayPair> {
                 minKey = item.getKey();
             maxKey = item.getKey();
 
-            if (numElements % sampleSize == 0) {
-                sparseOffsets.add(offset);
-                sparseSizeCount.add(numElements);
-                sparseKeys.add(item.key());
+            // por bytes, a entrada é registrada no primeiro item que começa depois da distância de amostragem
+            if (sampleBytes > 0 ? offset >= nextSample : numElements % sampleSize == 0) {
+                // cada intervalo do índice é um bloco com checksum próprio
+                if (numElements > 0)
+                    checksumsBuilder.add(offset, ios.takeChecksum());
+                indexBuilder.add(item.key(), offset, numElements);
+                nextSample = offset + sampleBytes;
+                intervalStart = offset;
+                if (hashIndexBuilder != null)
+                    hashIndexBuilder.startInterval();
+            }
+
+            if (hashIndexBuilder != null)
+                hashIndexBuilder.add(item.key(), offset - intervalStart);
+
+            keyFilterBuilder.add(item.key());
+
+            if (prefixes != null) {
+                // chaves com o mesmo prefixo e tamanho são consecutivas, então basta comparar com o último
+                byte[] prefix = prefixExtractor.extract(item.key());
+                if (prefix != null && (prefixes.isEmpty() || !Arrays.equals(prefixes.top(), prefix)))
+                    prefixes.add(prefix);
+            }
+
+            if (expiries != null) {
+                long expiresAt = options.expiryExtractor.applyAsLong(item.value());
+                if (expiresAt >= 0)
+                    expiries.add(expiresAt);
             }
 
-            bloomFilter.add(item.key());
+            int written = ios.writeByteArrayPair(item);
+            if (options.rateLimiter != null)
+                options.rateLimiter.request(written);
 
-            offset += ios.writeByteArrayPair(item);
+            offset += written;
             byteSize += item.size();
             numElements++;
         }
 
+        if (numElements > 0)
+            checksumsBuilder.add(offset, ios.takeChecksum());
         ios.close();
+        dataByteSize = offset;
+
+        if (expiries != null && !expiries.isEmpty())
+            sampleExpiries(expiries);
+
         return numElements;
     }
 
+    /**
+     * Guarda uma amostra uniforme (por posição, após a ordenação) dos instantes de expiração da tabela.
+     */
+    private void sampleExpiries(LongArrayList expiries) {
+        long[] sorted = expiries.toLongArray();
+        Arrays.sort(sorted);
+
+        expiringCount = sorted.length;
+        expirySample = new long[Math.min(EXPIRY_SAMPLE_SIZE, sorted.length)];
+        for (int i = 0; i < expirySample.length; i++)
+            expirySample[i] = sorted[(int) ((long) i * (sorted.length - 1) / Math.max(1, expirySample.length - 1))];
+    }
+
     private void writeBloomFilter(String filename) {
-        bloomFilter.writeToFile(filename + BLOOM_FILE_EXTENSION);
+        keyFilter = keyFilterBuilder.build();
+        keyFilterBuilder = null;
+        keyFilter.writeToFile(filename + BLOOM_FILE_EXTENSION);
     }
 
-    private void writeIndexFile(String filename, int numElements) {
-        ExtendedOutputStream indexOs = new ExtendedOutputStream(filename + INDEX_FILE_EXTENSION);
+    /**
+     * Escreve o filtro de prefixos, dimensionado pelo número de prefixos distintos da tabela.
+     */
+    private void writePrefixBloomFilter(String filename, SSTableOptions options) {
+        prefixBloomFilter = new BloomFilter(Math.max(1, prefixes.size()), options.bloomFalsePositiveRate);
+        for (byte[] prefix : prefixes)
+            prefixBloomFilter.add(prefix);
+        prefixes = null;
 
-        indexOs.writeVByteInt(numElements);
-        int sparseSize = sparseOffsets.size();
-        indexOs.writeVByteInt(sparseSize);
+        prefixBloomFilter.writeToFile(filename + PREFIX_BLOOM_FILE_EXTENSION);
+    }
 
-        long prevOffset = 0L;
-        for (int i = 1; i < sparseSize; i++) {
-            indexOs.writeVByteLong(sparseOffsets.getLong(i) - prevOffset);
-            prevOffset = sparseOffsets.getLong(i);
-        }
+    private void writeBlockChecksums(String filename) {
+        BlockChecksums checksums = checksumsBuilder.build();
+        checksumsBuilder = null;
+        checksums.writeToFile(filename + CHECKSUM_FILE_EXTENSION);
+        if (verifyChecksums)
+            blockChecksums = checksums;
+    }
+
+    private void writeHashIndex(String filename) {
+        hashIndex = hashIndexBuilder.build();
+        hashIndexBuilder = null;
+        hashIndex.writeToFile(filename + HASH_FILE_EXTENSION);
+    }
+
+    private void writeIndexFile(String filename, int numElements, SSTableOptions options) {
+        ExtendedOutputStream indexOs = new ExtendedOutputStream(filename + INDEX_FILE_EXTENSION);
 
-        int prevSize = 0;
-        for (int i = 1; i < sparseSize; i++) {
-            indexOs.writeVByteInt(sparseSizeCount.getInt(i) - prevSize);
-            prevSize = sparseSizeCount.getInt(i);
+        long written = indexOs.writeVByteInt(numElements);
+        written += indexOs.writeVByteInt(sampleBytes);
+        written += indexOs.writeVByteInt(sampleSize);
+
+        written += indexOs.writeVByteInt(expiringCount);
+        written += indexOs.writeVByteInt(expirySample.length);
+        for (long expiresAt : expirySample)
+            written += indexOs.writeVByteLong(expiresAt);
+
+        SparseIndex full = indexBuilder.build();
+        indexBuilder = null;
+        int partitionSize = options.indexPartitionSize;
+
+        if (partitionSize == 0 || full.size() <= partitionSize) {
+            indexOs.writeVByteInt(0);
+            full.write(indexOs);
+            index = full;
+            indexOs.writeChecksum();
+            indexOs.close();
+            return;
         }
 
-        for (byte[] key : sparseKeys) {
-            indexOs.writeVByteInt(key.length);
-            indexOs.write(key);
+        // nível superior: a primeira chave de cada partição e a posição dela, relativa ao fim do nível superior
+        ObjectArrayList<SparseIndex> partitions = new ObjectArrayList<>();
+        SparseIndex.Builder top = new SparseIndex.Builder();
+        long position = 0L;
+        for (int from = 0; from < full.size(); from += partitionSize) {
+            SparseIndex partition = full.slice(from, Math.min(full.size(), from + partitionSize));
+            top.add(full.key(from), position, from);
+            position += partition.serializedSize();
+            partitions.add(partition);
         }
 
+        index = top.build();
+        indexPartitions = partitions.size();
+        written += indexOs.writeVByteInt(indexPartitions);
+        written += index.write(indexOs);
+        partitionsPosition = written;
+
+        for (SparseIndex partition : partitions)
+            partition.write(indexOs);
+        indexOs.writeChecksum();
         indexOs.close();
+
+        indexIs = new ExtendedInputStream(filename + INDEX_FILE_EXTENSION);
     }
 
     /**
-     * Iterador para percorrer os pares chave-valor na SSTable.
+     * Iterador para percorrer os pares chave-valor na SSTable, com um fluxo próprio sobre o arquivo de dados.
      */
     private static class SSTableIterator implements Iterator<ByteArrayPair> {
 
         private final SSTable table;
+        private final boolean verify;
+        final ExtendedInputStream is;
+        private int nextBlock;
         int remaining;
 
-        public SSTableIterator(SSTable table) {
+        public SSTableIterator(SSTable table, boolean verify) {
             this.table = table;
+            this.verify = verify;
+            is = new ExtendedInputStream(table.filename + DATA_FILE_EXTENSION);
             remaining = table.size;
         }
 
@@ -403,11 +1209,57 @@ public class SSTable implements Iterable<ByteArrayPair> {
 
         @Override
         public ByteArrayPair next() {
+            beforeRead();
+            ByteArrayPair item = is.readBytePair();
+            afterRead();
+            return item;
+        }
+
+        /**
+         * Retorna um iterador que lê os mesmos itens em buffers reutilizáveis. Os itens alternam entre dois buffers,
+         * então cada um continua válido até a leitura do item seguinte ao próximo, o bastante para o
+         * {@link VersionMerger}, que lê cada fonte no máximo um item além do que retorna.
+         *
+         * @param limiter o limitador que recebe os bytes lidos, ou null.
+         */
+        Iterator<EntryBuffer> entries(RateLimiter limiter) {
+            EntryBuffer[] buffers = {new EntryBuffer(), new EntryBuffer()};
+            return new Iterator<>() {
+                private int current;
+
+                @Override
+                public boolean hasNext() {
+                    return SSTableIterator.this.hasNext();
+                }
+
+                @Override
+                public EntryBuffer next() {
+                    EntryBuffer entry = buffers[current ^= 1];
+                    beforeRead();
+                    is.readEntry(entry);
+                    afterRead();
+                    // as leituras das tabelas de entrada também consomem a cota de I/O em segundo plano
+                    if (limiter != null)
+                        limiter.request(entry.size());
+                    return entry;
+                }
+            };
+        }
+
+        private void beforeRead() {
             remaining--;
+            if (verify)
+                nextBlock = table.verifyBlockAt(is, nextBlock);
+        }
 
-            return table.is.readBytePair();
+        private void afterRead() {
+            if (remaining == 0)
+                close();
         }
 
+        void close() {
+            is.close();
+        }
     }
 
 }
\ No newline at end of file
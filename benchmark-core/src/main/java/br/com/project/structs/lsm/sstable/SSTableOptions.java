@@ -0,0 +1,267 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.utils.RateLimiter;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * Parâmetros usados na escrita de uma SSTable.
+ * Os métodos de configuração retornam a própria instância, permitindo encadear as chamadas:
+ * {@code new SSTableOptions().sampleSize(500).bloomFalsePositiveRate(0.01)}.
+ */
+public class SSTableOptions {
+
+    static final double DEFAULT_BLOOM_FALSE_POSITIVE_RATE = 0.001;
+
+    int sampleSize = SSTable.DEFAULT_SAMPLE_SIZE;
+    int sampleBytes = SSTable.DEFAULT_SAMPLE_BYTES;
+    double bloomFalsePositiveRate = DEFAULT_BLOOM_FALSE_POSITIVE_RATE;
+    KeyFilter.Type filterType = KeyFilter.Type.BLOOM;
+    ToLongFunction<byte[]> expiryExtractor;
+    RateLimiter rateLimiter;
+    PrefixExtractor prefixExtractor;
+    int indexPartitionSize;
+    IndexCache indexCache;
+    boolean hashIndex;
+    boolean directIo;
+    boolean verifyChecksums;
+    TableStatistics statistics;
+
+    /**
+     * Define o número de itens entre duas entradas do índice esparso, substituindo a amostragem por bytes.
+     *
+     * @param sampleSize o intervalo de amostragem.
+     * @return esta instância.
+     */
+    public SSTableOptions sampleSize(int sampleSize) {
+        if (sampleSize <= 0)
+            throw new IllegalArgumentException("O intervalo de amostragem deve ser maior que 0");
+        this.sampleSize = sampleSize;
+        this.sampleBytes = 0;
+        return this;
+    }
+
+    /**
+     * Define a distância, em bytes do arquivo de dados, entre duas entradas do índice esparso (o padrão).
+     * Uma busca lê no máximo essa distância mais um item a partir da entrada encontrada no índice,
+     * independentemente do tamanho dos valores, e o índice cresce com o volume de dados, não com o número de itens.
+     *
+     * @param sampleBytes a distância de amostragem, em bytes.
+     * @return esta instância.
+     */
+    public SSTableOptions sampleBytes(int sampleBytes) {
+        if (sampleBytes <= 0)
+            throw new IllegalArgumentException("A distância de amostragem deve ser maior que 0");
+        this.sampleBytes = sampleBytes;
+        return this;
+    }
+
+    /**
+     * Define a taxa de falsos positivos do filtro de Bloom de cada tabela.
+     *
+     * @param falsePositiveRate a taxa desejada, entre 0 e 1 (exclusivos).
+     * @return esta instância.
+     */
+    public SSTableOptions bloomFalsePositiveRate(double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("A taxa de falsos positivos deve estar entre 0 e 1");
+        this.bloomFalsePositiveRate = falsePositiveRate;
+        return this;
+    }
+
+    /**
+     * Define o tipo do filtro de chaves de cada tabela. O filtro xor ocupa menos memória para a mesma taxa
+     * de falsos positivos e é dimensionado pelo número real de chaves, mas só pode ser construído ao final da escrita.
+     *
+     * @param filterType o tipo do filtro.
+     * @return esta instância.
+     */
+    public SSTableOptions filterType(KeyFilter.Type filterType) {
+        this.filterType = filterType;
+        return this;
+    }
+
+    /**
+     * Define a função que extrai de cada valor o instante de expiração (ou um número negativo se não expira).
+     * Quando definida, a tabela guarda no índice uma amostra dos instantes de expiração,
+     * usada para estimar a fração de itens já expirados ({@link SSTable#expiredFraction(long)}).
+     *
+     * @param expiryExtractor a função de extração, ou null para não registrar expirações.
+     * @return esta instância.
+     */
+    public SSTableOptions expiryExtractor(ToLongFunction<byte[]> expiryExtractor) {
+        this.expiryExtractor = expiryExtractor;
+        return this;
+    }
+
+    /**
+     * Define o limitador de taxa das escritas da tabela e das leituras feitas por {@link SSTable#sortedRun}.
+     * Um mesmo limitador pode ser compartilhado por várias famílias de colunas que usam o mesmo disco.
+     *
+     * @param rateLimiter o limitador, ou null para escrever sem limite.
+     * @return esta instância.
+     */
+    public SSTableOptions rateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Define o extrator de prefixos. Quando definido, cada tabela grava um filtro de Bloom dos prefixos das suas chaves,
+     * usado para ignorar a tabela em buscas por prefixo ({@link SSTable#scanPrefix(byte[])}).
+     *
+     * @param prefixExtractor o extrator, ou null para não gravar o filtro de prefixos.
+     * @return esta instância.
+     */
+    public SSTableOptions prefixExtractor(PrefixExtractor prefixExtractor) {
+        this.prefixExtractor = prefixExtractor;
+        return this;
+    }
+
+    /**
+     * Define o número de entradas de cada partição do índice esparso. Tabelas com mais entradas do que isso
+     * gravam um índice em dois níveis: só o nível superior, com a primeira chave de cada partição, fica em memória,
+     * e as partições são lidas sob demanda através de {@link #indexCache(IndexCache)}.
+     *
+     * @param indexPartitionSize o número de entradas por partição, ou 0 para manter o índice inteiro em memória.
+     * @return esta instância.
+     */
+    public SSTableOptions indexPartitionSize(int indexPartitionSize) {
+        if (indexPartitionSize < 0)
+            throw new IllegalArgumentException("O tamanho das partições não pode ser negativo");
+        this.indexPartitionSize = indexPartitionSize;
+        return this;
+    }
+
+    /**
+     * Define o cache das partições de índice. Sem cache, cada busca numa tabela particionada lê a partição do disco.
+     *
+     * @param indexCache o cache, ou null para não guardar as partições.
+     * @return esta instância.
+     */
+    public SSTableOptions indexCache(IndexCache indexCache) {
+        this.indexCache = indexCache;
+        return this;
+    }
+
+    /**
+     * Define se cada intervalo do índice esparso recebe uma tabela de hash das suas chaves, gravada no arquivo .hash.
+     * Com ela, uma busca pontual decodifica apenas o item candidato, em vez de percorrer o intervalo,
+     * ao custo de cerca de 2,7 bytes de memória por item.
+     *
+     * @param hashIndex verdadeiro para gravar as tabelas.
+     * @return esta instância.
+     */
+    public SSTableOptions hashIndex(boolean hashIndex) {
+        this.hashIndex = hashIndex;
+        return this;
+    }
+
+    /**
+     * Define se o arquivo de dados é escrito sem passar pelo cache de páginas (O_DIRECT), para que tabelas grandes
+     * não expulsem do cache os dados usados pelas buscas. Se o sistema de arquivos não aceitar, a escrita é feita
+     * normalmente, com buffers grandes, e os dados são enviados ao disco ao fechar a tabela.
+     *
+     * @param directIo verdadeiro para escrever sem o cache.
+     * @return esta instância.
+     */
+    public SSTableOptions directIo(boolean directIo) {
+        this.directIo = directIo;
+        return this;
+    }
+
+    /**
+     * Define se as leituras da tabela (buscas, varreduras e iteração) verificam o CRC32C de cada bloco do arquivo
+     * de dados antes de usá-lo. Os checksums são sempre gravados; a compactação sempre os verifica, mesmo sem
+     * esta opção, para não propagar dados corrompidos.
+     *
+     * @param verifyChecksums verdadeiro para verificar os blocos nas leituras.
+     * @return esta instância.
+     */
+    public SSTableOptions verifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+        return this;
+    }
+
+    /**
+     * Define os contadores em que as buscas nas tabelas registram o uso dos filtros de chaves.
+     *
+     * @param statistics os contadores, ou null para não registrar.
+     * @return esta instância.
+     */
+    public SSTableOptions statistics(TableStatistics statistics) {
+        this.statistics = statistics;
+        return this;
+    }
+
+    /**
+     * Cria uma cópia independente destas opções.
+     *
+     * @return a cópia.
+     */
+    public SSTableOptions copy() {
+        SSTableOptions copy = new SSTableOptions();
+        copy.sampleSize = sampleSize;
+        copy.sampleBytes = sampleBytes;
+        copy.bloomFalsePositiveRate = bloomFalsePositiveRate;
+        copy.filterType = filterType;
+        copy.expiryExtractor = expiryExtractor;
+        copy.rateLimiter = rateLimiter;
+        copy.prefixExtractor = prefixExtractor;
+        copy.indexPartitionSize = indexPartitionSize;
+        copy.indexCache = indexCache;
+        copy.hashIndex = hashIndex;
+        copy.directIo = directIo;
+        copy.verifyChecksums = verifyChecksums;
+        copy.statistics = statistics;
+        return copy;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public int getSampleBytes() {
+        return sampleBytes;
+    }
+
+    public double getBloomFalsePositiveRate() {
+        return bloomFalsePositiveRate;
+    }
+
+    public KeyFilter.Type getFilterType() {
+        return filterType;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public PrefixExtractor getPrefixExtractor() {
+        return prefixExtractor;
+    }
+
+    public int getIndexPartitionSize() {
+        return indexPartitionSize;
+    }
+
+    public IndexCache getIndexCache() {
+        return indexCache;
+    }
+
+    public boolean isHashIndex() {
+        return hashIndex;
+    }
+
+    public boolean isDirectIo() {
+        return directIo;
+    }
+
+    public boolean isVerifyChecksums() {
+        return verifyChecksums;
+    }
+
+    public TableStatistics getStatistics() {
+        return statistics;
+    }
+}
@@ -0,0 +1,116 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.types.ByteArrayWrapper;
+import br.com.project.structs.lsm.utils.ExternalSorter;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Escreve SSTables fora de uma LSMTree, para cargas em lote: os itens vão direto para os arquivos, sem passar por
+ * Memtables, descarregamentos e compactações. As tabelas escritas podem ser incorporadas a uma árvore por
+ * {@code LSMTree.ingestFiles}; nesse caso, os valores devem estar no formato gravado pela árvore
+ * (ver {@code LSMTree.encodeItem}).
+ * Itens já ordenados são escritos em uma única passada por {@link #writeSorted(Iterator)}. Itens fora de ordem passam
+ * antes por uma ordenação externa ({@link #writeUnsorted(Iterator, long)}), que usa no máximo o orçamento de memória
+ * informado.
+ */
+public class SSTableWriter {
+
+    private final String directory;
+    private final long sstMaxSize;
+    private final SSTableOptions options;
+
+    /**
+     * @param directory  o diretório onde as SSTables serão escritas.
+     * @param sstMaxSize o tamanho máximo de cada SSTable.
+     * @param options    as opções de escrita das tabelas.
+     */
+    public SSTableWriter(String directory, long sstMaxSize, SSTableOptions options) {
+        this.directory = directory;
+        this.sstMaxSize = sstMaxSize;
+        this.options = options;
+    }
+
+    /**
+     * Escreve itens em ordem estritamente crescente de chave, dividindo-os em tabelas de até {@code sstMaxSize} bytes.
+     * Se a ordem não for respeitada, as tabelas já escritas são excluídas.
+     *
+     * @param items os itens, ordenados e sem chaves repetidas.
+     * @return as tabelas escritas, em ordem.
+     * @throws IllegalArgumentException se uma chave não for maior que a anterior.
+     */
+    public ObjectArrayList<SSTable> writeSorted(Iterator<ByteArrayPair> items) {
+        return write(new OrderChecker(items));
+    }
+
+    /**
+     * Escreve itens em qualquer ordem. Os itens passam antes por um {@link ExternalSorter}, que grava execuções
+     * ordenadas no diretório sempre que os itens em memória atingem {@code memoryBudget} bytes; as execuções são
+     * combinadas diretamente nas tabelas definitivas e excluídas no final. Se uma chave se repetir, vale o último item
+     * com ela.
+     *
+     * @param items        os itens.
+     * @param memoryBudget o total de bytes de itens mantidos em memória.
+     * @return as tabelas escritas, em ordem.
+     */
+    public ObjectArrayList<SSTable> writeUnsorted(Iterator<ByteArrayPair> items, long memoryBudget) {
+        try (ExternalSorter sorter = new ExternalSorter(directory, memoryBudget, true)) {
+            sorter.addAll(items);
+            return write(sorter.iterator());
+        }
+    }
+
+    private ObjectArrayList<SSTable> write(Iterator<ByteArrayPair> items) {
+        ObjectArrayList<SSTable> res = new ObjectArrayList<>();
+        try {
+            while (items.hasNext()) {
+                String filename = SSTable.getNextSstFilename(directory);
+                try {
+                    res.add(new SSTable(filename, options, items, sstMaxSize));
+                } catch (RuntimeException e) {
+                    SSTable.deleteFiles(filename);
+                    throw e;
+                }
+            }
+        } catch (RuntimeException e) {
+            res.forEach(SSTable::closeAndDelete);
+            throw e;
+        }
+        return res;
+    }
+
+    /**
+     * Repassa os itens verificando se as chaves são estritamente crescentes.
+     */
+    private static class OrderChecker implements Iterator<ByteArrayPair> {
+
+        private final Iterator<ByteArrayPair> items;
+        private byte[] previous;
+
+        OrderChecker(Iterator<ByteArrayPair> items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return items.hasNext();
+        }
+
+        @Override
+        public ByteArrayPair next() {
+            if (!items.hasNext())
+                throw new NoSuchElementException("Nenhum elemento restante na iteração.");
+
+            ByteArrayPair item = items.next();
+            byte[] key = item.key();
+            if (previous != null && ByteArrayWrapper.compare(previous, previous.length, key, key.length) >= 0)
+                throw new IllegalArgumentException("Itens fora de ordem: " + new String(key)
+                        + " depois de " + new String(previous));
+            previous = key;
+            return item;
+        }
+    }
+}
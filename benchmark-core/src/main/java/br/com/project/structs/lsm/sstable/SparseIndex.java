@@ -0,0 +1,246 @@
+package br.com.project.structs.lsm.sstable;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+
+import java.util.Arrays;
+
+/**
+ * Índice esparso de uma SSTable guardado em poucos arrays contíguos: para cada entrada, o deslocamento no arquivo
+ * de dados e o número de itens anteriores, e todas as chaves concatenadas numa única região de bytes,
+ * delimitadas por um array de inícios. Assim, o índice ocupa um número fixo de objetos no heap,
+ * independentemente do número de entradas, e as buscas comparam as chaves sem criar objetos.
+ * No arquivo, as entradas são gravadas como |n|deslocamentos (diferenças)|contagens (diferenças)|chaves (tamanho e bytes)|.
+ */
+final class SparseIndex {
+
+    private final long[] offsets;
+    private final int[] counts;
+    private final int[] keyStarts;
+    private final byte[] keys;
+    // posição da primeira entrada no índice completo, quando este é uma partição
+    private final int base;
+
+    private SparseIndex(long[] offsets, int[] counts, int[] keyStarts, byte[] keys, int base) {
+        this.offsets = offsets;
+        this.counts = counts;
+        this.keyStarts = keyStarts;
+        this.keys = keys;
+        this.base = base;
+    }
+
+    int size() {
+        return offsets.length;
+    }
+
+    int base() {
+        return base;
+    }
+
+    long offset(int i) {
+        return offsets[i];
+    }
+
+    int count(int i) {
+        return counts[i];
+    }
+
+    byte[] key(int i) {
+        return Arrays.copyOfRange(keys, keyStarts[i], keyStarts[i + 1]);
+    }
+
+    /**
+     * Retorna o espaço aproximado ocupado pelo índice no heap, em bytes.
+     */
+    long byteSize() {
+        return (long) offsets.length * Long.BYTES + (long) counts.length * Integer.BYTES
+                + (long) keyStarts.length * Integer.BYTES + keys.length;
+    }
+
+    /**
+     * Encontra a última entrada com chave menor ou igual à chave informada, na ordem de {@code ByteArrayWrapper}
+     * (primeiro pelo tamanho, depois pelos bytes com sinal).
+     *
+     * @param key a chave buscada.
+     * @return a posição da entrada, ou 0 se todas as chaves forem maiores.
+     */
+    int floor(byte[] key) {
+        int low = 0;
+        int high = offsets.length - 1;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (compare(key, mid) < 0)
+                high = mid - 1;
+            else
+                low = mid;
+        }
+        return low;
+    }
+
+    private int compare(byte[] key, int i) {
+        int start = keyStarts[i];
+        int length = keyStarts[i + 1] - start;
+
+        if (key.length != length)
+            return key.length < length ? -1 : 1;
+
+        for (int j = 0; j < length; j++) {
+            byte a = key[j];
+            byte b = keys[start + j];
+            if (a != b)
+                return a < b ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Cria um índice com as entradas [from, to) deste.
+     */
+    SparseIndex slice(int from, int to) {
+        int[] starts = new int[to - from + 1];
+        for (int i = 0; i < starts.length; i++)
+            starts[i] = keyStarts[from + i] - keyStarts[from];
+
+        return new SparseIndex(Arrays.copyOfRange(offsets, from, to), Arrays.copyOfRange(counts, from, to), starts,
+                Arrays.copyOfRange(keys, keyStarts[from], keyStarts[to]), base + from);
+    }
+
+    /**
+     * Escreve o índice no fluxo.
+     *
+     * @return o número de bytes escritos.
+     */
+    int write(ExtendedOutputStream os) {
+        int written = os.writeVByteInt(offsets.length);
+
+        long prevOffset = 0L;
+        for (long offset : offsets) {
+            written += os.writeVByteLong(offset - prevOffset);
+            prevOffset = offset;
+        }
+
+        int prevCount = 0;
+        for (int count : counts) {
+            written += os.writeVByteInt(count - prevCount);
+            prevCount = count;
+        }
+
+        for (int i = 0; i < offsets.length; i++) {
+            written += os.writeVByteInt(keyStarts[i + 1] - keyStarts[i]);
+            written += os.write(key(i));
+        }
+        return written;
+    }
+
+    /**
+     * Calcula o número de bytes que {@link #write(ExtendedOutputStream)} escreveria.
+     */
+    int serializedSize() {
+        int size = vbyteLength(offsets.length);
+
+        long prevOffset = 0L;
+        for (long offset : offsets) {
+            size += vbyteLength(offset - prevOffset);
+            prevOffset = offset;
+        }
+
+        int prevCount = 0;
+        for (int count : counts) {
+            size += vbyteLength(count - prevCount);
+            prevCount = count;
+        }
+
+        for (int i = 0; i < offsets.length; i++)
+            size += vbyteLength(keyStarts[i + 1] - keyStarts[i]);
+        return size + keys.length;
+    }
+
+    /**
+     * Lê um índice escrito por {@link #write(ExtendedOutputStream)}.
+     *
+     * @param base a posição da primeira entrada no índice completo (0, se não for uma partição).
+     */
+    static SparseIndex read(ExtendedInputStream is, int base) {
+        int n = is.readVByteInt();
+        long[] offsets = new long[n];
+        int[] counts = new int[n];
+
+        long offset = 0L;
+        for (int i = 0; i < n; i++)
+            offsets[i] = offset += is.readVByteLong();
+
+        int count = 0;
+        for (int i = 0; i < n; i++)
+            counts[i] = count += is.readVByteInt();
+
+        Builder keys = new Builder();
+        int[] keyStarts = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            keys.appendKey(is, is.readVByteInt());
+            keyStarts[i + 1] = keys.keysLength;
+        }
+        return new SparseIndex(offsets, counts, keyStarts, Arrays.copyOf(keys.keys, keys.keysLength), base);
+    }
+
+    private static int vbyteLength(long n) {
+        // mesma codificação de ExtendedOutputStream: n + 1 em grupos de 7 bits
+        int length = 1;
+        for (n = (n + 1) >>> 7; n > 0; n >>>= 7)
+            length++;
+        return length;
+    }
+
+    /**
+     * Acumula as entradas do índice durante a escrita da tabela.
+     */
+    static class Builder {
+
+        private long[] offsets = new long[16];
+        private int[] counts = new int[16];
+        private int[] keyStarts = new int[17];
+        private byte[] keys = new byte[256];
+        private int size;
+        private int keysLength;
+
+        void add(byte[] key, long offset, int count) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+                keyStarts = Arrays.copyOf(keyStarts, size * 2 + 1);
+            }
+
+            offsets[size] = offset;
+            counts[size] = count;
+            appendKey(key);
+            keyStarts[++size] = keysLength;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void appendKey(byte[] key) {
+            ensureKeysCapacity(key.length);
+            System.arraycopy(key, 0, keys, keysLength, key.length);
+            keysLength += key.length;
+        }
+
+        // lê a chave do fluxo direto para a região de chaves, sem um array intermediário
+        private void appendKey(ExtendedInputStream is, int length) {
+            ensureKeysCapacity(length);
+            is.readFully(keys, keysLength, length);
+            keysLength += length;
+        }
+
+        private void ensureKeysCapacity(int length) {
+            if (keysLength + length > keys.length)
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keysLength + length));
+        }
+
+        SparseIndex build() {
+            return new SparseIndex(Arrays.copyOf(offsets, size), Arrays.copyOf(counts, size),
+                    Arrays.copyOf(keyStarts, size + 1), Arrays.copyOf(keys, keysLength), 0);
+        }
+    }
+}
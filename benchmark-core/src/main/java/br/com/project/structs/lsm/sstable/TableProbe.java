@@ -0,0 +1,76 @@
+package br.com.project.structs.lsm.sstable;
+
+/**
+ * Registro de uma busca pontual numa SSTable, preenchido por {@link SSTable#get(byte[], TableProbe)}:
+ * até onde a busca chegou, quantos bytes foram lidos do disco e quantos itens foram decodificados.
+ */
+public class TableProbe {
+
+    /**
+     * Até onde a busca chegou na tabela.
+     */
+    public enum Outcome {
+        /** A chave está fora do intervalo [menor chave, maior chave] da tabela. */
+        OUT_OF_RANGE,
+        /** O filtro de chaves descartou a tabela. */
+        FILTERED,
+        /** O filtro aceitou a chave, mas a tabela de hash do intervalo não tem a chave. */
+        HASH_MISS,
+        /** O filtro aceitou a chave, mas ela não estava nos dados (falso positivo). */
+        NOT_FOUND,
+        /** A chave foi encontrada. */
+        FOUND
+    }
+
+    Outcome outcome;
+    long indexBytesRead;
+    long dataBytesRead;
+    int blocksRead;
+    int entriesDecoded;
+    long nanos;
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Bytes lidos do arquivo de índice, para carregar uma partição do índice ausente do cache.
+     */
+    public long getIndexBytesRead() {
+        return indexBytesRead;
+    }
+
+    /**
+     * Bytes lidos do arquivo de dados, incluindo a verificação dos checksums; 0 se o bloco já estava no buffer.
+     */
+    public long getDataBytesRead() {
+        return dataBytesRead;
+    }
+
+    /**
+     * Número de blocos (intervalos do índice esparso) percorridos: 0 ou 1.
+     */
+    public int getBlocksRead() {
+        return blocksRead;
+    }
+
+    /**
+     * Número de itens decodificados no bloco até encontrar a chave ou passar dela.
+     */
+    public int getEntriesDecoded() {
+        return entriesDecoded;
+    }
+
+    /**
+     * Duração da busca na tabela, em nanossegundos.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return outcome + " (" + nanos / 1000 + "us, " + blocksRead + " bloco(s), " + entriesDecoded + " item(ns), "
+                + dataBytesRead + "B de dados, " + indexBytesRead + "B de índice)";
+    }
+}
@@ -0,0 +1,36 @@
+package br.com.project.structs.lsm.sstable;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores das buscas nas SSTables, compartilhados pelas tabelas escritas com as mesmas opções
+ * (ver {@link SSTableOptions#statistics(TableStatistics)}).
+ * Uma consulta ao filtro é útil quando descarta a tabela, e é um falso positivo quando a tabela é lida
+ * (ou consultada na tabela de hash) sem ter a chave.
+ */
+public class TableStatistics {
+
+    final LongAdder filterChecks = new LongAdder();
+    final LongAdder filterUseful = new LongAdder();
+    final LongAdder filterFalsePositives = new LongAdder();
+    final LongAdder tableHits = new LongAdder();
+
+    public long getFilterChecks() {
+        return filterChecks.sum();
+    }
+
+    public long getFilterUseful() {
+        return filterUseful.sum();
+    }
+
+    public long getFilterFalsePositives() {
+        return filterFalsePositives.sum();
+    }
+
+    /**
+     * Retorna o número de buscas que encontraram a chave numa tabela.
+     */
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+}
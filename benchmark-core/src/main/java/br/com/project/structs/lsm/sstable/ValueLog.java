@@ -0,0 +1,236 @@
+package br.com.project.structs.lsm.sstable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Log de valores no estilo WiscKey: valores grandes são gravados em segmentos de escrita sequencial
+ * e as SSTables guardam apenas um ponteiro (segmento, posição, tamanho) para eles.
+ * Assim, a compactação reescreve só as chaves e os ponteiros.
+ * Cada registro de um segmento tem o formato |tamanho da chave (int)|chave|tamanho do valor (int)|valor|,
+ * o que permite à coleta de lixo percorrer um segmento e verificar quais valores ainda são referenciados.
+ */
+public class ValueLog {
+
+    public static final String FILE_EXTENSION = ".vlog";
+
+    /**
+     * Posição de um valor no log.
+     */
+    public record Pointer(int segment, long offset, int length) {
+
+        static final int BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+        public byte[] encode() {
+            return ByteBuffer.allocate(BYTES).putInt(segment).putLong(offset).putInt(length).array();
+        }
+
+        public static Pointer decode(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new Pointer(buffer.getInt(), buffer.getLong(), buffer.getInt());
+        }
+    }
+
+    /**
+     * Registro lido de um segmento: a chave e a posição do seu valor.
+     */
+    public record Entry(byte[] key, Pointer pointer) {
+    }
+
+    private final String directory;
+    private final long maxSegmentSize;
+    private final TreeMap<Integer, FileChannel> segments = new TreeMap<>();
+    private int activeSegment;
+    private long activeSize;
+
+    /**
+     * Cria um log de valores vazio no diretório informado.
+     *
+     * @param directory      o diretório dos segmentos.
+     * @param maxSegmentSize o tamanho a partir do qual um novo segmento é iniciado.
+     */
+    public ValueLog(String directory, long maxSegmentSize) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        openSegment(0);
+    }
+
+    /**
+     * Grava um valor no segmento ativo.
+     *
+     * @param key   a chave do valor, usada na coleta de lixo.
+     * @param value o valor.
+     * @return a posição do valor.
+     */
+    public synchronized Pointer append(byte[] key, byte[] value) {
+        if (activeSize >= maxSegmentSize)
+            openSegment(activeSegment + 1);
+
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + key.length + value.length)
+                .putInt(key.length).put(key)
+                .putInt(value.length).put(value)
+                .flip();
+        Pointer pointer = new Pointer(activeSegment, activeSize + Integer.BYTES * 2L + key.length, value.length);
+
+        try {
+            FileChannel channel = segments.get(activeSegment);
+            while (record.hasRemaining())
+                activeSize += channel.write(record);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return pointer;
+    }
+
+    /**
+     * Lê um valor do log.
+     *
+     * @param pointer a posição do valor.
+     * @return o valor, ou null se o segmento já foi removido pela coleta de lixo.
+     */
+    public byte[] read(Pointer pointer) {
+        FileChannel channel;
+        synchronized (this) {
+            channel = segments.get(pointer.segment());
+        }
+        if (channel == null)
+            return null;
+
+        try {
+            return readFully(channel, pointer.offset(), pointer.length());
+        } catch (RuntimeException e) {
+            // o segmento pode ser removido durante uma leitura que não exclui a coleta de lixo, como a da compactação
+            synchronized (this) {
+                if (e.getCause() instanceof ClosedChannelException && segments.get(pointer.segment()) != channel)
+                    return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Retorna os segmentos que não recebem mais escritas, do mais antigo para o mais recente.
+     */
+    public synchronized IntArrayList sealedSegments() {
+        IntArrayList res = new IntArrayList(segments.keySet());
+        res.rem(activeSegment);
+        return res;
+    }
+
+    /**
+     * Percorre os registros de um segmento encerrado.
+     *
+     * @param segment o número do segmento.
+     * @return um iterador sobre as chaves e posições dos valores.
+     */
+    public Iterator<Entry> entries(int segment) {
+        FileChannel channel;
+        long size;
+        synchronized (this) {
+            channel = segments.get(segment);
+        }
+        try {
+            size = channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return new Iterator<>() {
+            long position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < size;
+            }
+
+            @Override
+            public Entry next() {
+                if (!hasNext())
+                    throw new NoSuchElementException("Nenhum elemento restante na iteração.");
+
+                int keyLength = ByteBuffer.wrap(readFully(channel, position, Integer.BYTES)).getInt();
+                byte[] key = readFully(channel, position + Integer.BYTES, keyLength);
+                long valueLengthOffset = position + Integer.BYTES + keyLength;
+                int valueLength = ByteBuffer.wrap(readFully(channel, valueLengthOffset, Integer.BYTES)).getInt();
+
+                Pointer pointer = new Pointer(segment, valueLengthOffset + Integer.BYTES, valueLength);
+                position = pointer.offset() + valueLength;
+                return new Entry(key, pointer);
+            }
+        };
+    }
+
+    /**
+     * Remove um segmento encerrado do disco.
+     *
+     * @param segment o número do segmento.
+     */
+    public synchronized void deleteSegment(int segment) {
+        if (segment == activeSegment)
+            throw new IllegalArgumentException("O segmento ativo não pode ser removido");
+
+        FileChannel channel = segments.remove(segment);
+        if (channel == null)
+            return;
+
+        try {
+            channel.close();
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Fecha todos os segmentos.
+     */
+    public synchronized void close() {
+        try {
+            for (FileChannel channel : segments.values())
+                channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void openSegment(int segment) {
+        try {
+            FileChannel channel = FileChannel.open(segmentPath(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(segment, channel);
+            activeSegment = segment;
+            activeSize = channel.size();
+            channel.position(activeSize);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return Paths.get(directory, String.format("%06d", segment) + FILE_EXTENSION);
+    }
+
+    private static byte[] readFully(FileChannel channel, long position, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0)
+                    throw new IOException("Fim inesperado do segmento do log de valores");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,1563 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.memtable.Memtable;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.sstable.CompactionFilter;
+import br.com.project.structs.lsm.sstable.CorruptedTableException;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.sstable.TableProbe;
+import br.com.project.structs.lsm.sstable.ValueLog;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.types.ByteArrayWrapper;
+import br.com.project.structs.lsm.types.StoredValue;
+import br.com.project.structs.lsm.utils.FilterIterator;
+import br.com.project.structs.lsm.utils.VersionMerger;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Família de colunas de uma {@link LSMTree}: um espaço de chaves independente, com Memtables, níveis de SSTables
+ * e opções próprios. Todas as famílias de uma árvore compartilham as mesmas execuções em segundo plano
+ * de descarregamento e compactação.
+ * Os valores são gravados com o cabeçalho de {@link StoredValue}, que pode conter um instante de expiração.
+ * Itens expirados deixam de ser retornados pelas leituras e são convertidos em tombstones na compactação
+ * (ou descartados, quando a compactação escreve no último nível).
+ * Com um {@link MergeOperator} registrado, {@link #merge(Object, Object)} grava operandos sem ler o valor atual;
+ * eles são combinados com as versões anteriores nas leituras e na compactação.
+ * Com {@link ColumnFamilyOptions#valueSeparationThreshold(int)}, valores grandes são movidos para um {@link ValueLog}
+ * no descarregamento e as SSTables guardam apenas ponteiros; {@link #collectValueLogGarbage()} recupera o espaço
+ * dos valores que não são mais referenciados.
+ * As SSTables de cada nível e a compactação em andamento são registradas num {@link Manifest}; as compactações gravam
+ * um ponto de retomada a cada tabela de saída concluída, e com {@link ColumnFamilyOptions#recover(boolean)} a família
+ * reabre as tabelas e continua a compactação interrompida de onde parou.
+ * Instâncias são obtidas por {@link LSMTree#createColumnFamily(String, ColumnFamilyOptions)}.
+ */
+public class ColumnFamily {
+
+    static final int MAX_PENDING_READ_COMPACTIONS = 64;
+    // nível das Memtables nas prioridades de versão, e o espaço de prioridades de cada nível
+    static final int MEMTABLE_LEVEL = -1;
+    static final int LEVEL_PRIORITY_SPAN = 1 << 20;
+    // retornado por getBytesFromMemtables quando a versão atual do item pode estar nas SSTables
+    static final byte[] NOT_IN_MEMTABLES = new byte[0];
+
+    final Object mutableMemtableLock = new Object();
+    final Object immutableMemtablesLock = new Object();
+    // protege os níveis e o manifesto: as buscas adquirem o lock de leitura e leem as SSTables em paralelo, e as
+    // mudanças nos níveis o de escrita; as compactações só o adquirem para escolher as entradas, registrar o
+    // progresso e trocar as tabelas, e mesclam as tabelas sem ele
+    final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+    // serializa as compactações (e a incorporação de tabelas), as únicas que retiram tabelas dos níveis
+    final Object compactionLock = new Object();
+    // serializa descarregamentos e a coleta de lixo do log de valores, que não pode remover um segmento
+    // referenciado por uma SSTable ainda em escrita
+    final Object flushLock = new Object();
+    // incrementado quando uma Memtable muda de lugar (de mutável para imutável, ou de imutável para SSTable);
+    // uma leitura que a atravessou pode tê-la visto duas vezes e combinado os mesmos operandos de merge de novo
+    final AtomicLong sourceChanges = new AtomicLong();
+
+    public final String name;
+    final String dataDir;
+    final ColumnFamilyOptions options;
+    final SSTableOptions tableOptions;
+    // opções de escrita de cada nível, quando a amostragem do índice é ajustada por nível
+    final SSTableOptions[] levelTableOptions;
+    final long maxLevelZeroSstByteSize;
+    final Statistics statistics = new Statistics();
+    // chaves de buscas amostradas que consultaram tabelas demais, à espera da compactação do seu intervalo
+    final ArrayBlockingQueue<byte[]> hotKeys = new ArrayBlockingQueue<>(MAX_PENDING_READ_COMPACTIONS);
+
+    Memtable mutableMemtable;
+    LinkedList<Memtable> immutableMemtables;
+    ObjectArrayList<ObjectArrayList<SSTable>> levels;
+
+    volatile MergeOperator mergeOperator;
+    final ValueLog valueLog;
+    // compactação registrada no manifesto e ainda não instalada (interrompida por uma queda, até ser retomada)
+    Manifest.Job pendingJob;
+
+    ColumnFamily(String name, String dataDir, ColumnFamilyOptions options) {
+        this.name = name;
+        this.dataDir = dataDir;
+        this.options = options;
+        this.tableOptions = options.tableOptions.copy().expiryExtractor(StoredValue::expiresAt)
+                .statistics(statistics.tables);
+        this.levelTableOptions = levelTableOptions(options, tableOptions);
+        this.maxLevelZeroSstByteSize = options.memtableMaxByteSize * 2;
+
+        try {
+            Files.createDirectories(Paths.get(dataDir));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        this.mutableMemtable = new Memtable();
+        this.immutableMemtables = new LinkedList<>();
+        this.levels = new ObjectArrayList<>();
+        this.levels.add(new ObjectArrayList<>()); // Nível 0
+        this.valueLog = options.valueSeparationThreshold > 0 ? new ValueLog(dataDir, options.valueLogSegmentSize) : null;
+
+        if (options.recover) {
+            if (valueLog != null)
+                throw new IllegalArgumentException("A retomada não pode ser usada com o log de valores");
+            recover();
+        }
+    }
+
+    /**
+     * Reabre as SSTables do manifesto e a compactação interrompida, que é retomada na próxima compactação de níveis.
+     * Se alguma tabela de saída da compactação estiver ausente ou corrompida, o trabalho dela é descartado e ela
+     * recomeça do início. Por fim, exclui as tabelas que o manifesto não cita (escritas por descarregamentos ou
+     * compactações interrompidas antes de serem registradas, ou já substituídas).
+     */
+    private void recover() {
+        Manifest manifest = Manifest.read(dataDir);
+        ObjectOpenHashSet<String> live = new ObjectOpenHashSet<>();
+
+        if (manifest != null) {
+            levels.clear();
+            for (int i = 0; i < manifest.levels.size(); i++) {
+                ObjectArrayList<SSTable> level = new ObjectArrayList<>();
+                for (String name : manifest.levels.get(i)) {
+                    level.add(new SSTable(Paths.get(dataDir, name).toString(), tableOptionsFor(i)));
+                    live.add(name);
+                }
+                levels.add(level);
+            }
+            if (levels.isEmpty())
+                levels.add(new ObjectArrayList<>());
+
+            Manifest.Job job = manifest.job;
+            if (job != null) {
+                try {
+                    for (String name : job.outputs())
+                        new SSTable(Paths.get(dataDir, name).toString(), tableOptionsFor(job.targetLevel())).close();
+                    live.addAll(job.outputs());
+                } catch (RuntimeException e) {
+                    // saídas incompletas: a compactação recomeça sem elas
+                    job = new Manifest.Job(job.targetLevel(), job.sstMaxSize(), job.inputs(), List.of(), null);
+                }
+                pendingJob = job;
+            }
+        }
+
+        File[] files = new File(dataDir).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String table = SSTable.tableNameOf(file.getName());
+                if (table != null && !live.contains(table) && file.isFile())
+                    file.delete();
+            }
+        }
+        saveManifest();
+    }
+
+    /**
+     * Grava o manifesto com os níveis atuais e a compactação pendente. Deve ser chamado com o lock das tabelas.
+     */
+    private void saveManifest() {
+        Manifest.write(dataDir, levels, pendingJob);
+    }
+
+    /**
+     * Adiciona um ‘item’ à família. Se a Memtable estiver cheia, ela será descarregada no disco.
+     *
+     * @param key   a chave a ser adicionada.
+     * @param value o valor a ser adicionado.
+     */
+    public void add(Object key, Object value) throws JsonProcessingException {
+        addBytes(ObjectSerializer.convertToBytes(key), ObjectSerializer.convertToBytes(value));
+    }
+
+    /**
+     * Adiciona um ‘item’ à família que expira após o tempo informado.
+     *
+     * @param key   a chave a ser adicionada.
+     * @param value o valor a ser adicionado.
+     * @param ttl   o tempo de vida do item.
+     */
+    public void add(Object key, Object value, Duration ttl) throws JsonProcessingException {
+        addBytes(ObjectSerializer.convertToBytes(key), ObjectSerializer.convertToBytes(value), expiresAt(ttl));
+    }
+
+    /**
+     * Registra o operador usado para combinar os operandos gravados por {@link #merge(Object, Object)}.
+     *
+     * @param mergeOperator o operador.
+     */
+    public void setMergeOperator(MergeOperator mergeOperator) {
+        this.mergeOperator = mergeOperator;
+    }
+
+    /**
+     * Grava um operando a ser combinado com o valor atual da chave pelo {@link MergeOperator} registrado,
+     * sem ler o valor atual.
+     *
+     * @param key     a chave do item.
+     * @param operand o operando.
+     */
+    public void merge(Object key, Object operand) throws JsonProcessingException {
+        mergeBytes(ObjectSerializer.convertToBytes(key), ObjectSerializer.convertToBytes(operand));
+    }
+
+    /**
+     * Remove um ‘item’ da família adicionando um tombstone à Memtable.
+     *
+     * @param key a chave do ‘item’ a ser removido.
+     */
+    public void delete(Object key) throws JsonProcessingException {
+        removeBytes(ObjectSerializer.convertToBytes(key));
+    }
+
+    /**
+     * Obtém um item da família.
+     *
+     * @param key a chave do item a ser obtido.
+     * @return o valor do item, ou null se o item não existir.
+     */
+    public byte[] get(Object key) throws JsonProcessingException {
+        return getBytes(ObjectSerializer.convertToBytes(key));
+    }
+
+    void addBytes(byte[] key, byte[] value) {
+        addBytes(key, value, StoredValue.NO_EXPIRY);
+    }
+
+    void addBytes(byte[] key, byte[] value, long expiresAt) {
+        long start = System.nanoTime();
+        synchronized (mutableMemtableLock) {
+            statistics.stallNanos.add(System.nanoTime() - start);
+            mutableMemtable.add(new ByteArrayPair(key, StoredValue.encode(value, expiresAt)));
+            checkMemtableSize();
+        }
+        statistics.writeLatency.record(System.nanoTime() - start);
+    }
+
+    void mergeBytes(byte[] key, byte[] operand) {
+        if (mergeOperator == null)
+            throw new IllegalStateException("Nenhum operador de merge registrado na família " + name);
+
+        long start = System.nanoTime();
+        synchronized (mutableMemtableLock) {
+            statistics.stallNanos.add(System.nanoTime() - start);
+            // a Memtable guarda uma versão por chave, então o operando é combinado com a versão que já estiver nela
+            byte[] stored = combine(StoredValue.encodeOperand(operand), mutableMemtable.get(key), System.currentTimeMillis());
+            mutableMemtable.add(new ByteArrayPair(key, stored));
+            checkMemtableSize();
+        }
+        statistics.writeLatency.record(System.nanoTime() - start);
+    }
+
+    static long expiresAt(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero())
+            throw new IllegalArgumentException("O tempo de vida deve ser positivo");
+        return System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    void removeBytes(byte[] key) {
+        long start = System.nanoTime();
+        synchronized (mutableMemtableLock) {
+            statistics.stallNanos.add(System.nanoTime() - start);
+            mutableMemtable.remove(key);
+            checkMemtableSize();
+        }
+        statistics.writeLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Aplica várias escritas de uma só vez na Memtable mutável, com a mesma contabilidade de uma escrita comum:
+     * nenhuma leitura vê só parte delas, e o tamanho da Memtable é verificado depois de todas.
+     *
+     * @param items os itens, já codificados; valores {@link StoredValue#TOMBSTONE} são remoções.
+     */
+    void writeBatch(List<ByteArrayPair> items) {
+        long start = System.nanoTime();
+        synchronized (mutableMemtableLock) {
+            statistics.stallNanos.add(System.nanoTime() - start);
+            for (ByteArrayPair item : items) {
+                if (item.value().length == 0)
+                    mutableMemtable.remove(item.key());
+                else
+                    mutableMemtable.add(item);
+            }
+            checkMemtableSize();
+        }
+        statistics.writeLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Obtém um item da família, registrando no rastro as estruturas consultadas.
+     *
+     * @param key   a chave do item a ser obtido.
+     * @param trace o rastro da busca, ou null.
+     * @return o valor do item, ou null se o item não existir.
+     */
+    public byte[] get(Object key, ReadTrace trace) throws JsonProcessingException {
+        return getBytes(ObjectSerializer.convertToBytes(key), trace);
+    }
+
+    byte[] getBytes(byte[] keyBytes) {
+        return getBytes(keyBytes, null);
+    }
+
+    byte[] getBytes(byte[] keyBytes, ReadTrace trace) {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        byte[] stored = getStored(keyBytes, now, trace);
+
+        // a latência das leituras orienta o ajuste automático do limitador de I/O em segundo plano
+        long latency = System.nanoTime() - start;
+        statistics.getLatency.record(latency);
+        if (tableOptions.getRateLimiter() != null)
+            tableOptions.getRateLimiter().recordForegroundLatency(latency);
+
+        byte[] value = stored == null ? null : decode(stored, now);
+        if (trace != null) {
+            trace.totalNanos = latency;
+            trace.found = value != null;
+        }
+        return value;
+    }
+
+    /**
+     * Busca um item apenas nas Memtables, sem acessar o disco nem o log de valores.
+     *
+     * @return o valor do item (null se ele foi removido ou expirou), ou {@link #NOT_IN_MEMTABLES} se as Memtables não
+     * têm a versão atual completa e a busca precisa continuar nas SSTables.
+     */
+    byte[] getBytesFromMemtables(byte[] keyBytes) {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        byte[] stored;
+
+        synchronized (mutableMemtableLock) {
+            stored = mutableMemtable.get(keyBytes);
+            if (stored != null && !StoredValue.isOperand(stored))
+                statistics.mutableMemtableHits.increment();
+        }
+
+        if (stored == null) {
+            synchronized (immutableMemtablesLock) {
+                for (Memtable memtable : immutableMemtables) {
+                    stored = memtable.get(keyBytes);
+                    if (stored != null) {
+                        if (!StoredValue.isOperand(stored))
+                            statistics.immutableMemtableHits.increment();
+                        break;
+                    }
+                }
+            }
+        }
+
+        // operandos de merge e ponteiros para o log de valores ficam para a busca completa
+        if (stored == null || StoredValue.isOperand(stored)
+                || (StoredValue.isPointer(stored) && !StoredValue.isDead(stored, now)))
+            return NOT_IN_MEMTABLES;
+
+        statistics.getLatency.record(System.nanoTime() - start);
+        return decode(stored, now);
+    }
+
+    byte[] getStored(byte[] keyBytes, long now) {
+        return getStored(keyBytes, now, null);
+    }
+
+    /**
+     * Obtém a versão atual de um item, ainda com o cabeçalho: operandos de merge já combinados e
+     * conteúdo do log de valores já carregado.
+     *
+     * @param trace o rastro da busca, ou null.
+     * @return a versão atual (possivelmente um tombstone ou um item expirado), ou null se a chave não existir.
+     */
+    byte[] getStored(byte[] keyBytes, long now, ReadTrace trace) {
+        // enquanto a versão encontrada for um operando de merge, ela é combinada com as versões mais antigas
+        byte[] result;
+        long changes;
+        boolean collected = false;
+        long time = trace == null ? 0 : System.nanoTime();
+        boolean sampled = options.readCompactionThreshold > 0
+                && ThreadLocalRandom.current().nextInt(options.readSamplePeriod) == 0;
+        int probed = 0;
+
+        synchronized (mutableMemtableLock) {
+            if (trace != null)
+                time = lockAcquired(trace, time);
+            changes = sourceChanges.get();
+            result = mutableMemtable.get(keyBytes);
+            if (trace != null)
+                trace.add(ReadTrace.Source.MUTABLE_MEMTABLE, 0, result != null, System.nanoTime() - time);
+            if (result != null && !StoredValue.isOperand(result)) {
+                statistics.mutableMemtableHits.increment();
+                return result;
+            }
+        }
+
+        if (trace != null)
+            time = System.nanoTime();
+        synchronized (immutableMemtablesLock) {
+            if (trace != null)
+                lockAcquired(trace, time);
+            // um operando já lido pode ter sido movido para a próxima fonte
+            if (result != null && sourceChanges.get() != changes)
+                return retry(keyBytes, now, trace);
+            changes = sourceChanges.get();
+
+            int position = 0;
+            for (Memtable memtable : immutableMemtables) {
+                if (trace != null)
+                    time = System.nanoTime();
+                byte[] found = memtable.get(keyBytes);
+                if (trace != null)
+                    trace.add(ReadTrace.Source.IMMUTABLE_MEMTABLE, position++, found != null, System.nanoTime() - time);
+
+                result = combine(result, found, now);
+                if (result != null && !StoredValue.isOperand(result)) {
+                    statistics.immutableMemtableHits.increment();
+                    return result;
+                }
+            }
+        }
+
+        if (trace != null)
+            time = System.nanoTime();
+        tableLock.readLock().lock();
+        try {
+            if (trace != null)
+                lockAcquired(trace, time);
+            if (result != null && sourceChanges.get() != changes)
+                return retry(keyBytes, now, trace);
+
+            search:
+            for (int l = 0; l < levels.size(); l++) {
+                for (SSTable table : levels.get(l)) {
+                    if (sampled && table.covers(keyBytes))
+                        probed++;
+
+                    byte[] found;
+                    if (trace == null) {
+                        found = table.get(keyBytes);
+                    } else {
+                        TableProbe probe = new TableProbe();
+                        found = table.get(keyBytes, probe);
+                        trace.add(l, table.filename, probe);
+                    }
+
+                    if (found != null && (found = loadValue(found, now)) == null) {
+                        collected = true;
+                        break search;
+                    }
+
+                    result = combine(result, found, now);
+                    if (result != null && !StoredValue.isOperand(result)) {
+                        if (sampled)
+                            sampleReadAmplification(keyBytes, probed);
+                        return result;
+                    }
+                }
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+
+        if (sampled)
+            sampleReadAmplification(keyBytes, probed);
+
+        // o segmento apontado foi coletado depois da leitura das Memtables, onde está a versão regravada
+        if (collected)
+            return retry(keyBytes, now, trace);
+
+        if (result == null) {
+            statistics.notFound.increment();
+            return null;
+        }
+        return combine(result, StoredValue.TOMBSTONE, now);
+    }
+
+    /**
+     * Agenda a compactação do intervalo da chave se a busca amostrada consultou mais tabelas que o limite.
+     * Se já houver compactações demais pendentes, a chave é ignorada; buscas seguintes voltarão a amostrá-la.
+     */
+    private void sampleReadAmplification(byte[] keyBytes, int probed) {
+        if (probed > options.readCompactionThreshold)
+            hotKeys.offer(keyBytes);
+    }
+
+    private byte[] retry(byte[] keyBytes, long now, ReadTrace trace) {
+        if (trace != null)
+            trace.retries++;
+        return getStored(keyBytes, now, trace);
+    }
+
+    /**
+     * Soma ao rastro a espera por um lock, iniciada em {@code since}.
+     *
+     * @return o instante atual.
+     */
+    private static long lockAcquired(ReadTrace trace, long since) {
+        long now = System.nanoTime();
+        trace.lockWaitNanos += now - since;
+        return now;
+    }
+
+    /**
+     * Converte a versão mais recente encontrada de um item no valor retornado ao usuário:
+     * null para tombstones e itens expirados, ou o conteúdo sem o cabeçalho.
+     */
+    private static byte[] decode(byte[] stored, long now) {
+        return StoredValue.isDead(stored, now) ? null : StoredValue.payload(stored);
+    }
+
+    /**
+     * Combina uma versão de um item com a versão imediatamente mais antiga.
+     * Só operandos de merge são combinados; versões completas, tombstones e versões nulas (ainda não encontradas)
+     * escondem as mais antigas. Um operando sobre um item inexistente ou expirado torna-se o próprio valor.
+     *
+     * @param newer a versão mais recente, ou null.
+     * @param older a versão mais antiga, ou null.
+     * @param now   o instante usado para verificar a expiração.
+     * @return a versão resultante.
+     */
+    byte[] combine(byte[] newer, byte[] older, long now) {
+        if (newer == null)
+            return older;
+        if (older == null || !StoredValue.isOperand(newer))
+            return newer;
+        if (StoredValue.isPointer(older) && !StoredValue.isDead(older, now)) {
+            // na compactação, um ponteiro para um segmento já coletado pertence a uma versão escondida por outra mais recente
+            byte[] loaded = loadValue(older, now);
+            older = loaded != null ? loaded : StoredValue.TOMBSTONE;
+        }
+        if (StoredValue.isDead(older, now))
+            return StoredValue.encode(StoredValue.payload(newer), StoredValue.NO_EXPIRY);
+
+        MergeOperator operator = mergeOperator;
+        if (operator == null)
+            throw new IllegalStateException("Nenhum operador de merge registrado na família " + name);
+
+        byte[] merged = operator.merge(StoredValue.payload(older), StoredValue.payload(newer));
+        return StoredValue.isOperand(older)
+                ? StoredValue.encodeOperand(merged)
+                : StoredValue.encode(merged, StoredValue.expiresAt(older));
+    }
+
+    /**
+     * Substitui um ponteiro para o log de valores pelo valor correspondente, mantendo a expiração.
+     * Outras versões são retornadas sem alteração.
+     *
+     * @return a versão com o conteúdo carregado, ou null se o segmento apontado já foi coletado.
+     */
+    private byte[] loadValue(byte[] stored, long now) {
+        if (!StoredValue.isPointer(stored) || StoredValue.isDead(stored, now))
+            return stored;
+
+        byte[] value = valueLog.read(ValueLog.Pointer.decode(StoredValue.payload(stored)));
+        return value == null ? null : StoredValue.encode(value, StoredValue.expiresAt(stored));
+    }
+
+    /**
+     * Move para o log de valores o conteúdo de um valor grande, substituindo-o por um ponteiro.
+     */
+    private ByteArrayPair separateValue(ByteArrayPair item) {
+        byte[] stored = item.value();
+        if (stored.length <= options.valueSeparationThreshold || StoredValue.isOperand(stored) || StoredValue.isPointer(stored))
+            return item;
+
+        byte[] payload = StoredValue.payload(stored);
+        if (tableOptions.getRateLimiter() != null)
+            tableOptions.getRateLimiter().request(payload.length);
+
+        ValueLog.Pointer pointer = valueLog.append(item.key(), payload);
+        return new ByteArrayPair(item.key(), StoredValue.encodePointer(pointer.encode(), StoredValue.expiresAt(stored)));
+    }
+
+    /**
+     * Regras de combinação das versões de uma chave para o {@link VersionMerger}.
+     */
+    private VersionMerger.Combiner<ByteArrayPair> versionCombiner(long now) {
+        return new VersionMerger.Combiner<>() {
+            @Override
+            public boolean isPartial(ByteArrayPair item) {
+                return StoredValue.isOperand(item.value());
+            }
+
+            @Override
+            public ByteArrayPair combine(ByteArrayPair newer, ByteArrayPair older) {
+                return new ByteArrayPair(newer.key(), ColumnFamily.this.combine(newer.value(), older.value(), now));
+            }
+        };
+    }
+
+    /**
+     * Lê todos os itens vivos com chave no intervalo [from, to] (na ordem de {@code ByteArrayWrapper}),
+     * combinando Memtables e SSTables. Para chaves repetidas prevalece a versão mais recente; tombstones e itens
+     * expirados são descartados e os valores retornados não têm o cabeçalho de {@link StoredValue}.
+     */
+    ObjectArrayList<ByteArrayPair> scanBytes(byte[] from, byte[] to) {
+        return scan(memtable -> memtable.iterator(from, to), table -> table.scan(from, to));
+    }
+
+    /**
+     * Lê todos os itens vivos com chave no intervalo [from(n), to(n)] para cada tamanho de chave n a partir de
+     * {@code minLength}, com as mesmas regras de {@link #scanBytes(byte[], byte[])}. Cada fonte lê um intervalo para
+     * cada tamanho de chave que ela pode ter, e os itens saem ordenados pelo tamanho da chave e depois pelos bytes.
+     *
+     * @param from      o limite inferior, com o tamanho informado.
+     * @param to        o limite superior, com o tamanho informado.
+     * @param minLength o menor tamanho de chave lido.
+     */
+    ObjectArrayList<ByteArrayPair> scanBytes(IntFunction<byte[]> from, IntFunction<byte[]> to, int minLength) {
+        return scan(memtable -> {
+            ObjectArrayList<ByteArrayPair> items = new ObjectArrayList<>();
+            for (int length = minLength; length <= memtable.maxKeyLength(); length++)
+                memtable.iterator(from.apply(length), to.apply(length)).forEachRemaining(items::add);
+            return items.iterator();
+        }, table -> {
+            ObjectArrayList<ByteArrayPair> items = new ObjectArrayList<>();
+            // na ordem das chaves, a maior chave da tabela é também a mais longa
+            for (int length = Math.max(minLength, table.getMinKey().length); length <= table.getMaxKey().length; length++)
+                items.addAll(table.scan(from.apply(length), to.apply(length)));
+            return items;
+        });
+    }
+
+    /**
+     * Lê todos os itens vivos cuja chave começa com o prefixo, com as mesmas regras de {@link #scanBytes(byte[], byte[])}.
+     * Tabelas descartadas pelo filtro de prefixos ({@link SSTableOptions#prefixExtractor}) não são lidas.
+     */
+    ObjectArrayList<ByteArrayPair> scanPrefixBytes(byte[] prefix) {
+        return scan(memtable -> memtable.prefixIterator(prefix), table -> table.scanPrefix(prefix));
+    }
+
+    /**
+     * Lê todos os itens vivos cuja chave começa com o prefixo informado.
+     * Para chaves do tipo String, o prefixo é comparado com o texto da chave; por exemplo, {@code scanPrefix("123")}
+     * retorna os itens com CPF iniciado por 123.
+     *
+     * @param prefix o prefixo da chave.
+     * @return os itens encontrados (chaves serializadas e valores), em ordem.
+     */
+    public ObjectArrayList<ByteArrayPair> scanPrefix(String prefix) throws JsonProcessingException {
+        return scanPrefixBytes(ObjectSerializer.convertToBytes(prefix));
+    }
+
+    private ObjectArrayList<ByteArrayPair> scan(Function<Memtable, Iterator<ByteArrayPair>> memtableSource,
+                                                Function<SSTable, ObjectArrayList<ByteArrayPair>> tableSource) {
+        ObjectArrayList<ByteArrayPair> res;
+        do {
+            res = tryScan(memtableSource, tableSource);
+        } while (res == null);
+        return res;
+    }
+
+    /**
+     * Tenta ler os itens das fontes; retorna null se algum segmento do log de valores for coletado
+     * ou se alguma Memtable mudar de lugar durante a leitura.
+     */
+    @SuppressWarnings("unchecked")
+    private ObjectArrayList<ByteArrayPair> tryScan(Function<Memtable, Iterator<ByteArrayPair>> memtableSource,
+                                                   Function<SSTable, ObjectArrayList<ByteArrayPair>> tableSource) {
+        long now = System.currentTimeMillis();
+        ObjectArrayList<Iterator<ByteArrayPair>> sources = new ObjectArrayList<>();
+        IntArrayList priorities = new IntArrayList();
+
+        long changes;
+        synchronized (mutableMemtableLock) {
+            changes = sourceChanges.get();
+            sources.add(memtableSource.apply(mutableMemtable));
+            priorities.add(versionPriority(MEMTABLE_LEVEL, 0));
+        }
+
+        synchronized (immutableMemtablesLock) {
+            if (sourceChanges.get() != changes)
+                return null;
+            int position = 1;
+            for (Memtable memtable : immutableMemtables) {
+                sources.add(memtableSource.apply(memtable));
+                priorities.add(versionPriority(MEMTABLE_LEVEL, position++));
+            }
+        }
+
+        tableLock.readLock().lock();
+        try {
+            if (sourceChanges.get() != changes)
+                return null;
+            for (int l = 0; l < levels.size(); l++) {
+                ObjectArrayList<SSTable> level = levels.get(l);
+                for (int position = 0; position < level.size(); position++) {
+                    SSTable table = level.get(position);
+                    ObjectArrayList<ByteArrayPair> items = tableSource.apply(table);
+                    for (int i = 0; i < items.size(); i++) {
+                        ByteArrayPair item = items.get(i);
+                        byte[] loaded = loadValue(item.value(), now);
+                        if (loaded == null)
+                            return null;
+                        if (loaded != item.value())
+                            items.set(i, new ByteArrayPair(item.key(), loaded));
+                    }
+                    sources.add(items.iterator());
+                    priorities.add(versionPriority(l, position));
+                }
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+
+        @SuppressWarnings("unchecked")
+        Iterator<ByteArrayPair>[] sourceArray = (Iterator<ByteArrayPair>[]) sources.toArray(new Iterator<?>[0]);
+        var merged = new VersionMerger<>(ByteArrayPair.KEY_ORDER, priorities.toIntArray(), versionCombiner(now),
+                item -> StoredValue.isDead(item.value(), now), sourceArray);
+
+        ObjectArrayList<ByteArrayPair> res = new ObjectArrayList<>();
+        while (merged.hasNext()) {
+            ByteArrayPair item = merged.next();
+            byte[] value = combine(item.value(), StoredValue.TOMBSTONE, now);
+            if (!StoredValue.isDead(value, now))
+                res.add(new ByteArrayPair(item.key(), StoredValue.payload(value)));
+        }
+        return res;
+    }
+
+    /**
+     * Verifica se a Memtable atingiu o tamanho máximo. Caso tenha atingido, ela é transferida para a lista de Memtables imutáveis
+     * e uma nova Memtable mutável é criada.
+     */
+    void checkMemtableSize() {
+        if (mutableMemtable.byteSize() <= options.memtableMaxByteSize)
+            return;
+
+        synchronized (immutableMemtablesLock) {
+            immutableMemtables.addFirst(mutableMemtable);
+            mutableMemtable = new Memtable();
+            sourceChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * Descarrega a última Memtable imutável para o disco como uma nova SSTable.
+     */
+    void flushMemtable() {
+        // a Memtable é escolhida com o flushLock adquirido: descarregamentos pedidos por flush(true) correm junto com
+        // os agendados, e os dois não podem escrever a mesma Memtable
+        synchronized (flushLock) {
+            Memtable memtableToFlush;
+            synchronized (immutableMemtablesLock) {
+                if (immutableMemtables.isEmpty())
+                    return;
+
+                memtableToFlush = immutableMemtables.getLast();
+            }
+
+            long start = System.nanoTime();
+            Iterator<ByteArrayPair> items = valueLog == null
+                    ? memtableToFlush.iterator()
+                    : new FilterIterator<>(memtableToFlush.iterator(), this::separateValue);
+            // a Memtable inteira vai para uma só tabela: um limite de tamanho aqui descartaria os itens restantes
+            SSTable table = new SSTable(dataDir, items, Long.MAX_VALUE, tableOptionsFor(0));
+
+            // a tabela substitui a Memtable de uma só vez, para que nenhuma leitura veja as duas
+            tableLock.writeLock().lock();
+            try {
+                levels.get(0).add(0, table);
+                synchronized (immutableMemtablesLock) {
+                    immutableMemtables.removeLast();
+                    sourceChanges.incrementAndGet();
+                }
+                saveManifest();
+            } finally {
+                tableLock.writeLock().unlock();
+            }
+
+            statistics.backgroundBytesWritten.add(table.dataByteSize());
+            statistics.flushDuration.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Transfere a Memtable mutável para a lista de Memtables imutáveis, mesmo que ela não tenha atingido o tamanho
+     * máximo, e opcionalmente descarrega todas as Memtables imutáveis antes de retornar.
+     *
+     * @param wait se true, descarrega as Memtables imutáveis na thread atual; se false, elas são descarregadas
+     *             pelas execuções em segundo plano.
+     */
+    public void flush(boolean wait) {
+        synchronized (mutableMemtableLock) {
+            if (mutableMemtable.byteSize() > 0) {
+                synchronized (immutableMemtablesLock) {
+                    immutableMemtables.addFirst(mutableMemtable);
+                    mutableMemtable = new Memtable();
+                    sourceChanges.incrementAndGet();
+                }
+            }
+        }
+
+        if (!wait)
+            return;
+        while (true) {
+            synchronized (immutableMemtablesLock) {
+                if (immutableMemtables.isEmpty())
+                    return;
+            }
+            flushMemtable();
+        }
+    }
+
+    /**
+     * Descarrega todas as Memtables, inclusive a mutável, e fecha as SSTables. Chamado por {@link LSMTree#close()},
+     * depois que as execuções em segundo plano terminaram; a família não pode ser usada depois.
+     */
+    void close() {
+        flush(true);
+        tableLock.writeLock().lock();
+        try {
+            for (ObjectArrayList<SSTable> level : levels)
+                level.forEach(SSTable::close);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compacta manualmente o intervalo [from, to], levando até o último nível todas as versões das chaves do intervalo
+     * que estão em SSTables; as tabelas com interseção com o intervalo são reescritas por inteiro. Os tombstones e os
+     * itens expirados do intervalo são descartados. Feito para janelas de manutenção: a compactação é executada na
+     * thread atual e bloqueia as outras compactações da família até terminar; as leituras continuam. Os itens ainda
+     * em Memtables não são afetados; para incluí-los, chame {@link #flush(boolean)} com {@code wait} antes.
+     *
+     * @param from a menor chave do intervalo, ou null para começar na menor chave da família.
+     * @param to   a maior chave do intervalo, ou null para terminar na maior chave da família.
+     */
+    public void compactRange(Object from, Object to) throws JsonProcessingException {
+        compactRangeBytes(from == null ? null : ObjectSerializer.convertToBytes(from),
+                to == null ? null : ObjectSerializer.convertToBytes(to));
+    }
+
+    void compactRangeBytes(byte[] from, byte[] to) {
+        synchronized (compactionLock) {
+            long now = System.currentTimeMillis();
+            if (pendingJob != null)
+                resumePendingJob(now);
+
+            // um limite ausente vira o extremo das chaves em SSTables
+            byte[] lowest = null, highest = null;
+            tableLock.readLock().lock();
+            try {
+                for (ObjectArrayList<SSTable> level : levels) {
+                    for (SSTable table : level) {
+                        lowest = lowest == null ? table.getMinKey() : min(lowest, table.getMinKey());
+                        highest = highest == null ? table.getMaxKey() : max(highest, table.getMaxKey());
+                    }
+                }
+            } finally {
+                tableLock.readLock().unlock();
+            }
+            if (lowest == null)
+                return;
+            if (from == null)
+                from = lowest;
+            if (to == null)
+                to = highest;
+            if (ByteArrayWrapper.compare(from, from.length, to, to.length) > 0)
+                throw new IllegalArgumentException("O início do intervalo deve ser menor ou igual ao fim");
+
+            compactRange(from, to, now);
+        }
+    }
+
+    /**
+     * Incorpora SSTables escritas fora da árvore (ver {@link br.com.project.structs.lsm.sstable.SSTableWriter}), sem
+     * regravar os seus itens: os arquivos são vinculados ao diretório da família com novos nomes, e os originais
+     * ficam com o chamador. Os itens incorporados prevalecem sobre as versões já escritas das mesmas chaves; para isso,
+     * as Memtables são descarregadas antes, e cada tabela vai para o nível mais baixo em que nem ele nem os níveis
+     * acima têm tabelas com interseção com ela (o nível 0, se a interseção for no próprio nível 0). Sem interseção
+     * alguma, a tabela vai para o último nível.
+     *
+     * @param filenames os nomes base (sem extensão) das SSTables, que não podem ter interseção entre si.
+     * @throws IllegalArgumentException se as tabelas tiverem interseção entre si.
+     * @throws CorruptedTableException  se os checksums de alguma tabela não conferirem.
+     */
+    public void ingestFiles(List<String> filenames) {
+        ObjectArrayList<SSTable> tables = new ObjectArrayList<>(filenames.size());
+        try {
+            for (String filename : filenames) {
+                SSTable table = SSTable.linkInto(filename, dataDir, tableOptions);
+                tables.add(table);
+                table.verify();
+            }
+            tables.sort((a, b) -> ByteArrayWrapper.compare(a.getMinKey(), a.getMinKey().length,
+                    b.getMinKey(), b.getMinKey().length));
+            for (int i = 1; i < tables.size(); i++)
+                if (tables.get(i).overlaps(tables.get(i - 1).getMinKey(), tables.get(i - 1).getMaxKey()))
+                    throw new IllegalArgumentException("As tabelas incorporadas não podem ter interseção entre si");
+        } catch (RuntimeException e) {
+            tables.forEach(SSTable::closeAndDelete);
+            throw e;
+        }
+
+        flush(true);
+
+        synchronized (compactionLock) {
+            long now = System.currentTimeMillis();
+            if (pendingJob != null)
+                resumePendingJob(now);
+            tableLock.writeLock().lock();
+            try {
+                placeIngested(tables);
+            } finally {
+                tableLock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void placeIngested(List<SSTable> tables) {
+        if (levels.size() == 1)
+            levels.add(new ObjectArrayList<>());
+
+        for (SSTable table : tables) {
+            int target = 0;
+            for (int i = 0; i < levels.size(); i++) {
+                if (overlapsAny(levels.get(i), table))
+                    break;
+                target = i;
+            }
+
+            ObjectArrayList<SSTable> level = levels.get(target);
+            int position = 0;
+            if (target > 0)
+                while (position < level.size() && ByteArrayWrapper.compare(level.get(position).getMaxKey(),
+                        level.get(position).getMaxKey().length, table.getMinKey(), table.getMinKey().length) < 0)
+                    position++;
+            level.add(position, table);
+        }
+        saveManifest();
+    }
+
+    private static boolean overlapsAny(List<SSTable> level, SSTable table) {
+        for (SSTable other : level)
+            if (other.overlaps(table.getMinKey(), table.getMaxKey()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Realiza a compactação das SSTables nos diferentes níveis, mesclando as SSTables entre os níveis
+     * e substituindo as tabelas mais antigas.
+     * Tabelas cuja fração estimada de itens expirados atinge {@link ColumnFamilyOptions#expiredCompactionThreshold(double)}
+     * são reescritas individualmente, mesmo que o seu nível não tenha atingido o limite.
+     * As tabelas continuam disponíveis para as buscas enquanto são mescladas.
+     */
+    void levelCompaction() {
+        synchronized (compactionLock) {
+            long now = System.currentTimeMillis();
+            if (pendingJob != null)
+                resumePendingJob(now);
+
+            int n;
+            tableLock.readLock().lock();
+            try {
+                n = levels.size();
+            } finally {
+                tableLock.readLock().unlock();
+            }
+
+            int maxLevelSize = options.maxLevelZeroSstNumber;
+            long sstMaxSize = maxLevelZeroSstByteSize;
+
+            for (int i = 0; i < n; i++) {
+                try {
+                    ObjectArrayList<SSTable> merge = null;
+                    tableLock.writeLock().lock();
+                    try {
+                        ObjectArrayList<SSTable> level = levels.get(i);
+                        if (level.size() > maxLevelSize) {
+                            // Adiciona um novo nível se necessário
+                            if (i == levels.size() - 1)
+                                levels.add(new ObjectArrayList<>());
+
+                            // Pega todas as tabelas do nível atual e do próximo
+                            merge = new ObjectArrayList<>();
+                            merge.addAll(level);
+                            merge.addAll(levels.get(i + 1));
+                        }
+                    } finally {
+                        tableLock.writeLock().unlock();
+                    }
+
+                    if (merge != null)
+                        // Realiza uma execução ordenada que substitui as tabelas dos dois níveis no próximo
+                        compact(merge, i + 1, sstMaxSize, now);
+                    else
+                        rewriteExpiredTables(i, sstMaxSize, now);
+                } catch (CorruptedTableException e) {
+                    // as tabelas de entrada são mantidas como estão e o nível não é compactado nesta execução;
+                    // a tabela corrompida também é apontada por verifyAll
+                    e.printStackTrace();
+                }
+
+                maxLevelSize = (int) (maxLevelSize * options.levelGrowthFactor);
+                sstMaxSize = (int) (sstMaxSize * options.levelGrowthFactor);
+            }
+
+            compactHotRanges(now);
+        }
+    }
+
+    /**
+     * Compacta os intervalos das chaves agendadas pelas buscas amostradas (ver
+     * {@link ColumnFamilyOptions#readCompactionThreshold(int)}). Uma chave cujo intervalo já foi compactado por outra
+     * chave, ou por uma compactação de níveis, é descartada.
+     */
+    private void compactHotRanges(long now) {
+        byte[] key;
+        while ((key = hotKeys.poll()) != null) {
+            if (coveringTables(key) <= options.readCompactionThreshold)
+                continue;
+
+            try {
+                compactRange(key, key, now);
+                statistics.readCompactions.increment();
+            } catch (CorruptedTableException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Retorna o número de tabelas cujo intervalo contém a chave, ou seja, o máximo de tabelas consultadas
+     * por uma busca por ela.
+     */
+    private int coveringTables(byte[] key) {
+        int res = 0;
+        tableLock.readLock().lock();
+        try {
+            for (ObjectArrayList<SSTable> level : levels)
+                for (SSTable table : level)
+                    if (table.covers(key))
+                        res++;
+        } finally {
+            tableLock.readLock().unlock();
+        }
+        return res;
+    }
+
+    /**
+     * Leva as versões das chaves do intervalo [from, to] até o último nível, de forma que uma busca por uma delas consulte
+     * uma só tabela.
+     * Em cada nível, as tabelas com interseção com o intervalo são mescladas com as do nível seguinte que têm
+     * interseção com elas, e o intervalo cresce com o das tabelas mescladas. No nível 0, as tabelas são percorridas
+     * da mais recente para a mais antiga, de forma que toda tabela que permanece no nível e tem interseção com uma
+     * tabela movida seja mais recente que ela (e continue sendo lida antes).
+     */
+    private void compactRange(byte[] from, byte[] to, long now) {
+        int n;
+        tableLock.writeLock().lock();
+        try {
+            if (levels.size() == 1)
+                levels.add(new ObjectArrayList<>());
+            n = levels.size();
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+
+        long sstMaxSize = maxLevelZeroSstByteSize;
+
+        for (int i = 0; i < n - 1; i++, sstMaxSize = (long) (sstMaxSize * options.levelGrowthFactor)) {
+            ObjectArrayList<SSTable> merge;
+            tableLock.readLock().lock();
+            try {
+                ObjectArrayList<SSTable> level = levels.get(i);
+                ObjectArrayList<SSTable> nextLevel = levels.get(i + 1);
+
+                ObjectArrayList<SSTable> upper = new ObjectArrayList<>();
+                for (SSTable table : level) {
+                    if (!table.overlaps(from, to))
+                        continue;
+                    upper.add(table);
+                    from = min(from, table.getMinKey());
+                    to = max(to, table.getMaxKey());
+                }
+                if (upper.isEmpty())
+                    continue;
+
+                // os níveis a partir do 1 estão ordenados e sem sobreposição, então as tabelas afetadas são contíguas
+                int first = 0;
+                while (first < nextLevel.size() && !nextLevel.get(first).overlaps(from, to))
+                    first++;
+                int end = first;
+                while (end < nextLevel.size() && nextLevel.get(end).overlaps(from, to))
+                    end++;
+
+                merge = new ObjectArrayList<>(upper);
+                merge.addAll(nextLevel.subList(first, end));
+            } finally {
+                tableLock.readLock().unlock();
+            }
+            compact(merge, i + 1, sstMaxSize, now);
+        }
+    }
+
+    /**
+     * Prioridade de versão de uma fonte para o {@link VersionMerger}: quanto maior, mais recentes as versões.
+     * As Memtables ({@link #MEMTABLE_LEVEL}) vêm antes do nível 0, e cada nível antes do seguinte. Entre as Memtables
+     * e no nível 0 as fontes se sobrepõem, e a de posição 0 é a mais recente; a partir do nível 1 as tabelas de um
+     * nível não têm chaves em comum e recebem todas a mesma prioridade.
+     *
+     * @param level    o nível da fonte, ou {@link #MEMTABLE_LEVEL}.
+     * @param position a posição da fonte no nível.
+     */
+    static int versionPriority(int level, int position) {
+        int rank = level <= 0 ? position : 0;
+        return -((level - MEMTABLE_LEVEL) * LEVEL_PRIORITY_SPAN + rank);
+    }
+
+    /**
+     * Retorna a prioridade de versão de cada tabela pela sua posição atual nos níveis.
+     * Deve ser chamado com o {@code tableLock} adquirido.
+     */
+    private int[] versionPriorities(List<SSTable> tables) {
+        int[] res = new int[tables.size()];
+        search:
+        for (int i = 0; i < res.length; i++) {
+            for (int l = 0; l < levels.size(); l++) {
+                int position = levels.get(l).indexOf(tables.get(i));
+                if (position >= 0) {
+                    res[i] = versionPriority(l, position);
+                    continue search;
+                }
+            }
+            throw new IllegalStateException("A tabela " + tables.get(i).filename + " não está em nenhum nível");
+        }
+        return res;
+    }
+
+    private static byte[] min(byte[] a, byte[] b) {
+        return ByteArrayWrapper.compare(a, a.length, b, b.length) <= 0 ? a : b;
+    }
+
+    private static byte[] max(byte[] a, byte[] b) {
+        return ByteArrayWrapper.compare(a, a.length, b, b.length) >= 0 ? a : b;
+    }
+
+    /**
+     * Combina as tabelas de entrada em novas tabelas no nível de destino. A compactação é registrada no manifesto
+     * antes de começar e a cada tabela de saída concluída, com a maior chave já escrita; se o processo cair no meio,
+     * {@link #recover()} a retoma a partir dela. Ao final, as entradas são retiradas dos seus níveis e as saídas
+     * ocupam o lugar da primeira entrada do nível de destino (ou, se não houver, a posição da sua menor chave).
+     * Se a compactação falhar, as saídas são excluídas e as entradas mantidas.
+     * Deve ser chamado com o {@code compactionLock} adquirido. O {@code tableLock} só é adquirido para registrar o
+     * progresso e trocar as tabelas: a combinação lê as entradas sem ele, e as buscas continuam durante ela.
+     *
+     * @param inputs      as tabelas de entrada, ainda nos seus níveis, que definem as prioridades das versões
+     *                    (ver {@link #versionPriority(int, int)}).
+     * @param targetLevel o nível de destino.
+     * @param sstMaxSize  o tamanho máximo das tabelas de saída.
+     * @param now         o instante usado para verificar a expiração.
+     * @return as tabelas de saída.
+     */
+    private ObjectArrayList<SSTable> compact(ObjectArrayList<SSTable> inputs, int targetLevel, long sstMaxSize, long now) {
+        return compact(inputs, targetLevel, sstMaxSize, now, new ObjectArrayList<>(), null);
+    }
+
+    private ObjectArrayList<SSTable> compact(ObjectArrayList<SSTable> inputs, int targetLevel, long sstMaxSize, long now,
+                                             ObjectArrayList<SSTable> outputs, byte[] checkpoint) {
+        ObjectArrayList<String> inputNames = new ObjectArrayList<>(inputs.size());
+        for (SSTable table : inputs)
+            inputNames.add(new File(table.filename).getName());
+        ObjectArrayList<String> outputNames = new ObjectArrayList<>(outputs.size());
+        for (SSTable table : outputs)
+            outputNames.add(new File(table.filename).getName());
+
+        boolean bottom;
+        int[] priorities;
+        tableLock.writeLock().lock();
+        try {
+            pendingJob = new Manifest.Job(targetLevel, sstMaxSize, inputNames, outputNames, checkpoint);
+            saveManifest();
+
+            // o nível 0 tem tabelas sobrepostas, por isso só é considerado último nível a partir do 1
+            bottom = targetLevel > 0 && targetLevel == levels.size() - 1;
+            priorities = versionPriorities(inputs);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        try {
+            SSTable.sortedRun(dataDir, sstMaxSize, tableOptionsFor(targetLevel), versionCombiner(now),
+                    expiryFilter(now, bottom), checkpoint, table -> {
+                        outputs.add(table);
+                        outputNames.add(new File(table.filename).getName());
+                        tableLock.writeLock().lock();
+                        try {
+                            pendingJob = new Manifest.Job(targetLevel, sstMaxSize, inputNames, outputNames, table.getMaxKey());
+                            saveManifest();
+                        } finally {
+                            tableLock.writeLock().unlock();
+                        }
+                    }, priorities, inputs.toArray(SSTable[]::new));
+        } catch (RuntimeException e) {
+            outputs.forEach(SSTable::closeAndDelete);
+            tableLock.writeLock().lock();
+            try {
+                pendingJob = null;
+                saveManifest();
+            } finally {
+                tableLock.writeLock().unlock();
+            }
+            throw e;
+        }
+        recordCompaction(inputs, outputs, start);
+
+        tableLock.writeLock().lock();
+        try {
+            // as posições são procuradas de novo: descarregamentos podem ter incluído tabelas no nível 0 durante a combinação
+            ObjectArrayList<SSTable> target = levels.get(targetLevel);
+            int position = -1;
+            for (int i = 0; i < target.size() && position < 0; i++)
+                if (inputs.contains(target.get(i)))
+                    position = i;
+            for (ObjectArrayList<SSTable> level : levels)
+                level.removeAll(inputs);
+            if (position < 0) {
+                position = 0;
+                while (!outputs.isEmpty() && position < target.size() && ByteArrayWrapper.compare(target.get(position).getMaxKey(),
+                        target.get(position).getMaxKey().length, outputs.get(0).getMinKey(), outputs.get(0).getMinKey().length) < 0)
+                    position++;
+            }
+            target.addAll(position, outputs);
+
+            // o manifesto passa a citar as saídas antes de as entradas serem excluídas
+            pendingJob = null;
+            saveManifest();
+            inputs.forEach(SSTable::closeAndDelete);
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+        return outputs;
+    }
+
+    /**
+     * Retoma a compactação interrompida registrada no manifesto, reabrindo as tabelas de saída já concluídas.
+     * As tabelas de entrada continuam nos seus níveis, já abertas por {@link #recover()}.
+     */
+    private void resumePendingJob(long now) {
+        Manifest.Job job = pendingJob;
+        ObjectArrayList<SSTable> inputs = new ObjectArrayList<>();
+        tableLock.writeLock().lock();
+        try {
+            for (String name : job.inputs()) {
+                SSTable input = null;
+                for (ObjectArrayList<SSTable> level : levels)
+                    for (SSTable table : level)
+                        if (new File(table.filename).getName().equals(name))
+                            input = table;
+                if (input == null) {
+                    // manifesto inconsistente: o trabalho é descartado e as entradas restantes seguem nos seus níveis
+                    for (String output : job.outputs())
+                        SSTable.deleteFiles(Paths.get(dataDir, output).toString());
+                    pendingJob = null;
+                    saveManifest();
+                    return;
+                }
+                inputs.add(input);
+            }
+
+            while (levels.size() <= job.targetLevel())
+                levels.add(new ObjectArrayList<>());
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+
+        ObjectArrayList<SSTable> outputs = new ObjectArrayList<>();
+        for (String name : job.outputs())
+            outputs.add(new SSTable(Paths.get(dataDir, name).toString(), tableOptionsFor(job.targetLevel())));
+
+        try {
+            compact(inputs, job.targetLevel(), job.sstMaxSize(), now, outputs, job.checkpoint());
+        } catch (CorruptedTableException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void recordCompaction(List<SSTable> inputs, List<SSTable> outputs, long start) {
+        statistics.compactionDuration.record(System.nanoTime() - start);
+        for (SSTable table : inputs)
+            statistics.backgroundBytesRead.add(table.dataByteSize());
+        for (SSTable table : outputs)
+            statistics.backgroundBytesWritten.add(table.dataByteSize());
+    }
+
+    /**
+     * Monta as opções de cada nível, da amostragem por nível e do nível a partir do qual a escrita é direta.
+     * O último elemento vale para os níveis seguintes.
+     */
+    private static SSTableOptions[] levelTableOptions(ColumnFamilyOptions options, SSTableOptions tableOptions) {
+        int[] sampleBytes = options.levelSampleBytes;
+        int directFrom = options.directIoFromLevel;
+        SSTableOptions[] res = new SSTableOptions[Math.max(sampleBytes.length, directFrom + 1)];
+
+        for (int i = 0; i < res.length; i++) {
+            res[i] = tableOptions.copy();
+            if (sampleBytes.length > 0)
+                res[i].sampleBytes(sampleBytes[Math.min(i, sampleBytes.length - 1)]);
+            if (directFrom >= 0)
+                res[i].directIo(i >= directFrom);
+        }
+        return res;
+    }
+
+    /**
+     * Retorna as opções de escrita das tabelas de um nível.
+     */
+    private SSTableOptions tableOptionsFor(int level) {
+        if (levelTableOptions.length == 0)
+            return tableOptions;
+        return levelTableOptions[Math.min(level, levelTableOptions.length - 1)];
+    }
+
+    /**
+     * Reescreve sozinhas, na mesma posição do nível, as tabelas com muitos itens expirados.
+     */
+    private void rewriteExpiredTables(int levelNumber, long sstMaxSize, long now) {
+        ObjectArrayList<SSTable> expired = new ObjectArrayList<>();
+        tableLock.readLock().lock();
+        try {
+            for (SSTable table : levels.get(levelNumber))
+                if (table.expiredFraction(now) >= options.expiredCompactionThreshold)
+                    expired.add(table);
+        } finally {
+            tableLock.readLock().unlock();
+        }
+
+        for (SSTable table : expired)
+            compact(ObjectArrayList.of(table), levelNumber, sstMaxSize, now);
+    }
+
+    /**
+     * Filtro de compactação que converte itens expirados em tombstones. No último nível não há versões mais antigas
+     * a esconder, então tombstones e itens expirados são descartados e operandos de merge restantes viram valores.
+     */
+    private CompactionFilter expiryFilter(long now, boolean bottom) {
+        return item -> {
+            if (bottom && StoredValue.isOperand(item.value()))
+                return new ByteArrayPair(item.key(), combine(item.value(), StoredValue.TOMBSTONE, now));
+            if (!StoredValue.isDead(item.value(), now))
+                return item;
+            return bottom ? null : new ByteArrayPair(item.key(), StoredValue.TOMBSTONE);
+        };
+    }
+
+    /**
+     * Coleta de lixo do log de valores. Para cada segmento encerrado, os valores ainda referenciados pela versão
+     * atual da sua chave são regravados na Memtable (e voltam ao log no próximo descarregamento),
+     * e o segmento é removido. O segmento ativo não é coletado.
+     * Não faz nada se a separação de valores estiver desativada.
+     *
+     * @return o número de segmentos removidos.
+     */
+    public int collectValueLogGarbage() {
+        if (valueLog == null)
+            return 0;
+
+        int collected = 0;
+        synchronized (flushLock) {
+            for (int segment : valueLog.sealedSegments()) {
+                Iterator<ValueLog.Entry> entries = valueLog.entries(segment);
+                while (entries.hasNext())
+                    rewriteIfLive(entries.next());
+
+                // com o lock de escrita do tableLock, nenhuma busca está com um ponteiro para o segmento em uso; uma compactação em
+                // andamento que ainda o leia recebe null, como para um segmento já coletado, e os valores vivos
+                // regravados na Memtable prevalecem sobre o que ela escrever
+                tableLock.writeLock().lock();
+                try {
+                    valueLog.deleteSegment(segment);
+                } finally {
+                    tableLock.writeLock().unlock();
+                }
+                collected++;
+            }
+        }
+        return collected;
+    }
+
+    /**
+     * Verifica os checksums de todas as SSTables da família (ver {@link SSTable#verify()}). Cada tabela é verificada
+     * com o lock de leitura do tableLock, que não bloqueia as buscas e é liberado entre uma tabela e outra para que
+     * descarregamentos e compactações continuem durante a verificação; tabelas removidas por uma compactação no meio
+     * do caminho são ignoradas.
+     * Pode ser executado periodicamente em segundo plano.
+     *
+     * @return os caminhos base (sem extensão) das tabelas corrompidas.
+     */
+    public ObjectArrayList<String> verifyAll() {
+        ObjectArrayList<SSTable> tables = new ObjectArrayList<>();
+        tableLock.readLock().lock();
+        try {
+            levels.forEach(tables::addAll);
+        } finally {
+            tableLock.readLock().unlock();
+        }
+
+        ObjectArrayList<String> corrupted = new ObjectArrayList<>();
+        for (SSTable table : tables) {
+            tableLock.readLock().lock();
+            try {
+                if (levels.stream().noneMatch(level -> level.contains(table)))
+                    continue;
+                try {
+                    table.verify();
+                } catch (CorruptedTableException e) {
+                    corrupted.add(table.filename);
+                }
+            } finally {
+                tableLock.readLock().unlock();
+            }
+        }
+        return corrupted;
+    }
+
+    /**
+     * Regrava na Memtable a versão atual da chave de um registro do log, se ela ainda depender do registro.
+     * Quando a versão mais recente é um operando de merge, o valor combinado é regravado, pois o registro
+     * pode ser a base da combinação.
+     * As leituras são feitas sem o {@code mutableMemtableLock}; com ele, a regravação só é feita se nenhuma escrita da
+     * chave chegou à Memtable mutável desde então (e ela não foi trocada), e caso contrário as leituras são refeitas.
+     */
+    private void rewriteIfLive(ValueLog.Entry entry) {
+        byte[] key = entry.key();
+        while (true) {
+            long changes;
+            byte[] inMutable;
+            synchronized (mutableMemtableLock) {
+                changes = sourceChanges.get();
+                inMutable = mutableMemtable.get(key);
+            }
+
+            byte[] newest = newestVersion(key);
+            if (newest == null)
+                return;
+
+            boolean live = StoredValue.isOperand(newest) || (StoredValue.isPointer(newest)
+                    && ValueLog.Pointer.decode(StoredValue.payload(newest)).equals(entry.pointer()));
+            if (!live)
+                return;
+
+            long now = System.currentTimeMillis();
+            byte[] current = getStored(key, now);
+
+            synchronized (mutableMemtableLock) {
+                // toda escrita da chave substitui o item dela na Memtable mutável, então a comparação é por referência
+                if (sourceChanges.get() != changes || mutableMemtable.get(key) != inMutable)
+                    continue;
+
+                if (current != null && !StoredValue.isDead(current, now))
+                    mutableMemtable.add(new ByteArrayPair(key, current));
+                checkMemtableSize();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Retorna a versão mais recente de uma chave como está armazenada, sem combinações.
+     */
+    private byte[] newestVersion(byte[] keyBytes) {
+        byte[] result;
+        synchronized (mutableMemtableLock) {
+            result = mutableMemtable.get(keyBytes);
+        }
+        if (result != null)
+            return result;
+
+        synchronized (immutableMemtablesLock) {
+            for (Memtable memtable : immutableMemtables) {
+                if ((result = memtable.get(keyBytes)) != null)
+                    return result;
+            }
+        }
+
+        tableLock.readLock().lock();
+        try {
+            for (ObjectArrayList<SSTable> level : levels) {
+                for (SSTable table : level) {
+                    if ((result = table.get(keyBytes)) != null)
+                        return result;
+                }
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+        return null;
+    }
+
+    /**
+     * Retorna as estatísticas da família.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Exporta as estatísticas da família com nomes hierárquicos, incluindo o número de tabelas e de bytes de dados
+     * de cada nível ({@code level.<n>.tables} e {@code level.<n>.bytes}).
+     *
+     * @return os valores, na ordem de exportação.
+     */
+    public Map<String, Number> exportStatistics() {
+        Map<String, Number> res = statistics.export();
+        tableLock.readLock().lock();
+        try {
+            for (int i = 0; i < levels.size(); i++) {
+                long bytes = 0;
+                for (SSTable table : levels.get(i))
+                    bytes += table.dataByteSize();
+                res.put("level." + i + ".tables", levels.get(i).size());
+                res.put("level." + i + ".bytes", bytes);
+            }
+        } finally {
+            tableLock.readLock().unlock();
+        }
+        synchronized (immutableMemtablesLock) {
+            res.put("memtable.immutable.count", immutableMemtables.size());
+        }
+        return res;
+    }
+
+    void appendTo(StringBuilder s) {
+        s.append("\tmemtable: ");
+        s.append(mutableMemtable.byteSize() / 1024.0 / 1024.0);
+        s.append(" mb\n");
+        s.append("\tquantity immutable memtables: ");
+        s.append(immutableMemtables.size());
+        s.append("\n\tsst levels:\n");
+
+        int i = 0;
+        for (var level : levels) {
+            s.append(String.format("\t\t-> %d: ", i));
+            level.stream()
+                    .map(st -> String.format("[ %s, size: %d ] ", st.filename, st.size))
+                    .forEach(s::append);
+            s.append("\n");
+            i += 1;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+
+/**
+ * Parâmetros de uma família de colunas da {@link LSMTree}: tamanho da Memtable, organização dos níveis
+ * e opções de escrita das SSTables. Cada família é configurada de forma independente.
+ * Os métodos de configuração retornam a própria instância para permitir o encadeamento das chamadas.
+ */
+public class ColumnFamilyOptions {
+
+    long memtableMaxByteSize = LSMTree.DEFAULT_MEMTABLE_MAX_BYTE_SIZE;
+    int maxLevelZeroSstNumber = LSMTree.DEFAULT_LEVEL_ZERO_MAX_SIZE;
+    double levelGrowthFactor = LSMTree.LEVEL_INCR_FACTOR;
+    SSTableOptions tableOptions = new SSTableOptions();
+    double expiredCompactionThreshold = LSMTree.DEFAULT_EXPIRED_COMPACTION_THRESHOLD;
+    int valueSeparationThreshold = 0;
+    long valueLogSegmentSize = LSMTree.DEFAULT_VALUE_LOG_SEGMENT_SIZE;
+    int[] levelSampleBytes = new int[0];
+    int directIoFromLevel = -1;
+    int readCompactionThreshold = 0;
+    int readSamplePeriod = LSMTree.DEFAULT_READ_SAMPLE_PERIOD;
+    boolean recover = false;
+
+    /**
+     * Define o tamanho máximo da Memtable (em bytes) antes de ela se tornar imutável e ser descarregada.
+     * As SSTables do nível zero podem ter até o dobro desse tamanho.
+     */
+    public ColumnFamilyOptions memtableMaxByteSize(long memtableMaxByteSize) {
+        this.memtableMaxByteSize = memtableMaxByteSize;
+        return this;
+    }
+
+    /**
+     * Define o número máximo de SSTables no nível zero antes de disparar uma compactação.
+     */
+    public ColumnFamilyOptions maxLevelZeroSstNumber(int maxLevelZeroSstNumber) {
+        this.maxLevelZeroSstNumber = maxLevelZeroSstNumber;
+        return this;
+    }
+
+    /**
+     * Define o fator de crescimento do número e do tamanho das tabelas nos níveis seguintes.
+     */
+    public ColumnFamilyOptions levelGrowthFactor(double levelGrowthFactor) {
+        this.levelGrowthFactor = levelGrowthFactor;
+        return this;
+    }
+
+    /**
+     * Define as opções de escrita das SSTables (amostragem do índice esparso, filtro de Bloom).
+     */
+    public ColumnFamilyOptions tableOptions(SSTableOptions tableOptions) {
+        this.tableOptions = tableOptions;
+        return this;
+    }
+
+    /**
+     * Define a fração estimada de itens expirados a partir da qual uma SSTable é reescrita sozinha,
+     * mesmo que o seu nível não tenha atingido o limite de tabelas.
+     */
+    public ColumnFamilyOptions expiredCompactionThreshold(double expiredCompactionThreshold) {
+        if (expiredCompactionThreshold <= 0 || expiredCompactionThreshold > 1)
+            throw new IllegalArgumentException("O limite deve estar no intervalo (0, 1]");
+        this.expiredCompactionThreshold = expiredCompactionThreshold;
+        return this;
+    }
+
+    /**
+     * Define o tamanho (em bytes) a partir do qual os valores são gravados num log de valores no descarregamento,
+     * ficando nas SSTables apenas um ponteiro para eles. Com 0 (o padrão), todos os valores ficam nas SSTables.
+     */
+    public ColumnFamilyOptions valueSeparationThreshold(int valueSeparationThreshold) {
+        if (valueSeparationThreshold < 0)
+            throw new IllegalArgumentException("O limite de separação não pode ser negativo");
+        this.valueSeparationThreshold = valueSeparationThreshold;
+        return this;
+    }
+
+    /**
+     * Define o tamanho (em bytes) de cada segmento do log de valores. A coleta de lixo trabalha por segmento.
+     */
+    public ColumnFamilyOptions valueLogSegmentSize(long valueLogSegmentSize) {
+        this.valueLogSegmentSize = valueLogSegmentSize;
+        return this;
+    }
+
+    /**
+     * Define a distância de amostragem do índice esparso (ver {@link SSTableOptions#sampleBytes(int)}) de cada nível,
+     * a partir do nível 0. Os níveis além dos informados usam o último valor. Sem valores, todos os níveis usam
+     * a amostragem de {@link #tableOptions(SSTableOptions)}.
+     */
+    public ColumnFamilyOptions levelSampleBytes(int... levelSampleBytes) {
+        for (int sampleBytes : levelSampleBytes) {
+            if (sampleBytes <= 0)
+                throw new IllegalArgumentException("A distância de amostragem deve ser maior que 0");
+        }
+        this.levelSampleBytes = levelSampleBytes.clone();
+        return this;
+    }
+
+    /**
+     * Faz as tabelas gravadas a partir do nível informado serem escritas sem o cache de páginas
+     * (ver {@link SSTableOptions#directIo(boolean)}). Os níveis mais baixos, lidos com mais frequência,
+     * continuam passando pelo cache. Com -1 (o padrão), segue a opção de {@link #tableOptions(SSTableOptions)}.
+     */
+    public ColumnFamilyOptions directIoFromLevel(int directIoFromLevel) {
+        if (directIoFromLevel < -1)
+            throw new IllegalArgumentException("O nível deve ser maior ou igual a 0, ou -1 para desativar");
+        this.directIoFromLevel = directIoFromLevel;
+        return this;
+    }
+
+    /**
+     * Define o número de SSTables consultadas por uma busca acima do qual o intervalo da chave é compactado até o
+     * último nível, mesmo sem escritas que disparem a compactação por número de tabelas. Com 0 (o padrão), as leituras
+     * não disparam compactações.
+     */
+    public ColumnFamilyOptions readCompactionThreshold(int readCompactionThreshold) {
+        if (readCompactionThreshold < 0)
+            throw new IllegalArgumentException("O limite de tabelas não pode ser negativo");
+        this.readCompactionThreshold = readCompactionThreshold;
+        return this;
+    }
+
+    /**
+     * Define a amostragem das buscas para a compactação por leituras: em média uma a cada {@code readSamplePeriod}
+     * buscas conta as tabelas consultadas.
+     */
+    public ColumnFamilyOptions readSamplePeriod(int readSamplePeriod) {
+        if (readSamplePeriod < 1)
+            throw new IllegalArgumentException("O período de amostragem deve ser positivo");
+        this.readSamplePeriod = readSamplePeriod;
+        return this;
+    }
+
+    /**
+     * Define se a família retoma, ao ser aberta, as SSTables do seu manifesto (e a compactação interrompida, se houver),
+     * excluindo as tabelas que ele não cita. Sem a retomada (o padrão), a família começa vazia, como antes.
+     * O conteúdo das Memtables não descarregadas não é recuperado, e a retomada não pode ser usada com o log de valores.
+     */
+    public ColumnFamilyOptions recover(boolean recover) {
+        this.recover = recover;
+        return this;
+    }
+
+    public long getMemtableMaxByteSize() {
+        return memtableMaxByteSize;
+    }
+
+    public int getMaxLevelZeroSstNumber() {
+        return maxLevelZeroSstNumber;
+    }
+
+    public double getLevelGrowthFactor() {
+        return levelGrowthFactor;
+    }
+
+    public SSTableOptions getTableOptions() {
+        return tableOptions;
+    }
+
+    public double getExpiredCompactionThreshold() {
+        return expiredCompactionThreshold;
+    }
+
+    public int getValueSeparationThreshold() {
+        return valueSeparationThreshold;
+    }
+
+    public long getValueLogSegmentSize() {
+        return valueLogSegmentSize;
+    }
+
+    public int[] getLevelSampleBytes() {
+        return levelSampleBytes.clone();
+    }
+
+    public int getDirectIoFromLevel() {
+        return directIoFromLevel;
+    }
+
+    public int getReadCompactionThreshold() {
+        return readCompactionThreshold;
+    }
+
+    public int getReadSamplePeriod() {
+        return readSamplePeriod;
+    }
+
+    public boolean isRecover() {
+        return recover;
+    }
+}
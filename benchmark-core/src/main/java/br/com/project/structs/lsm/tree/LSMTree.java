@@ -1,19 +1,34 @@
 package br.com.project.structs.lsm.tree;
 
 import br.com.project.structs.lsm.serialization.ObjectSerializer;
-import br.com.project.structs.lsm.memtable.Memtable;
-import br.com.project.structs.lsm.sstable.SSTable;
 import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.types.StoredValue;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 
@@ -24,29 +39,46 @@ import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
  * Quando uma Memtable é descarregada, ela torna-se uma SSTable no nível 1. Quando o número de tabelas de um nível
  * excede um limite, as tabelas desse nível são mescladas e movidas para o próximo nível.
  * Execuções em segundo plano são responsáveis pelo descarregamento da Memtable e pela compactação das SSTables.
+ * Além do espaço de chaves padrão, a árvore pode conter famílias de colunas ({@link ColumnFamily}), cada uma com
+ * Memtables, níveis e opções próprios, mas compartilhando as mesmas execuções em segundo plano.
+ * Índices secundários ({@link SecondaryIndex}) podem ser registrados para consultas por outros campos do valor;
+ * as suas entradas são gravadas como chaves extras no mesmo armazenamento.
+ * Itens podem ser escritos com um tempo de vida; depois de expirados, deixam de ser retornados
+ * e são removidos pela compactação.
+ * Com um {@link MergeOperator} registrado, {@link #merge(Object, Object)} atualiza um item sem lê-lo.
+ * Leituras e escritas também têm versões assíncronas ({@link #getAsync(Object)}, {@link #putAsync(Object, Object)},
+ * {@link #multiGetAsync(Collection)}), que não bloqueiam o chamador em acessos ao disco; depois de
+ * {@link #close()} ou {@link #stop()}, elas retornam futuros completados com {@link IllegalStateException}.
  */
-public class LSMTree<K, V> {
+public class LSMTree<K, V> implements AutoCloseable {
 
     static final long DEFAULT_MEMTABLE_MAX_BYTE_SIZE = 1024 * 1024 * 32;
     static final int DEFAULT_LEVEL_ZERO_MAX_SIZE = 2;
     static final double LEVEL_INCR_FACTOR = 1.75;
+    static final double DEFAULT_EXPIRED_COMPACTION_THRESHOLD = 0.5;
+    static final long DEFAULT_VALUE_LOG_SEGMENT_SIZE = 1024 * 1024 * 64;
+    static final int DEFAULT_READ_SAMPLE_PERIOD = 16;
+    static final byte[] INDEX_REF_PREFIX = new byte[]{0, 0};
+    static final String DEFAULT_COLUMN_FAMILY = "default";
+    static final int INDEX_LOCK_STRIPES = 64;
+    // as buscas do executor de E/S leem SSTables em paralelo; só as buscas numa mesma tabela se revezam no fluxo dela
+    static final int DEFAULT_IO_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
 
-    final Object mutableMemtableLock = new Object();
-    final Object immutableMemtablesLock = new Object();
-    final Object tableLock = new Object();
-
-    final long mutableMemtableMaxSize;
-    final int maxLevelZeroSstNumber;
-    final long maxLevelZeroSstByteSize;
-    final double levelIncrFactor;
     public final String dataDir;
 
-    Memtable mutableMemtable;
-    LinkedList<Memtable> immutableMemtables;
-    ObjectArrayList<ObjectArrayList<SSTable>> levels;
+    final ColumnFamily defaultFamily;
+    final Map<String, ColumnFamily> columnFamilies = new LinkedHashMap<>();
+    final ObjectArrayList<SecondaryIndex<V>> indexes = new ObjectArrayList<>();
+    // escritas indexadas de uma mesma chave primária são serializadas por um destes locks
+    private final Object[] indexLocks = new Object[INDEX_LOCK_STRIPES];
 
     ScheduledExecutorService memtableFlusher;
     ScheduledExecutorService tableCompactor;
+    // criados no primeiro uso da API assíncrona: as leituras em paralelo, as escritas indexadas em série, na ordem
+    // das chamadas
+    private ExecutorService ioExecutor;
+    private ExecutorService ioWriter;
+    private volatile boolean closed;
 
     /**
      * Cria uma LSMTree com o tamanho de Memtable padrão e diretório de dados.
@@ -99,32 +131,70 @@ public class LSMTree<K, V> {
                    double levelGrowthFactor,
                    long flushDelayMillis,
                    long compactionDelayMillis) {
+        this(dataDir,
+                new ColumnFamilyOptions()
+                        .memtableMaxByteSize(mutableMemtableMaxByteSize)
+                        .maxLevelZeroSstNumber(maxLevelZeroSstNumber)
+                        .levelGrowthFactor(levelGrowthFactor),
+                flushDelayMillis,
+                compactionDelayMillis);
+    }
 
-        this.mutableMemtableMaxSize = mutableMemtableMaxByteSize;
-        this.maxLevelZeroSstNumber = maxLevelZeroSstNumber;
-        this.maxLevelZeroSstByteSize = mutableMemtableMaxByteSize * 2;
-        this.levelIncrFactor = levelGrowthFactor;
+    /**
+     * Construtor da LSMTree a partir das opções da família de colunas padrão.
+     *
+     * @param dataDir               Caminho onde os arquivos da SSTable serão salvos.
+     * @param defaultOptions        Opções do espaço de chaves padrão.
+     * @param flushDelayMillis      Intervalo (em milissegundos) entre execuções do flush da Memtable.
+     * @param compactionDelayMillis Intervalo (em milissegundos) entre execuções da compactação de níveis.
+     */
+    public LSMTree(String dataDir, ColumnFamilyOptions defaultOptions, long flushDelayMillis, long compactionDelayMillis) {
         this.dataDir = dataDir;
+        for (int i = 0; i < indexLocks.length; i++)
+            indexLocks[i] = new Object();
 
-        createDataDir();
-        initMemtables();
-        initLevels();
+        // com a retomada, o diretório é mantido e a família padrão reabre as tabelas do seu manifesto
+        if (!defaultOptions.recover)
+            createDataDir();
+        this.defaultFamily = new ColumnFamily(DEFAULT_COLUMN_FAMILY, dataDir, defaultOptions);
+        columnFamilies.put(DEFAULT_COLUMN_FAMILY, defaultFamily);
 
         memtableFlusher = newSingleThreadScheduledExecutor();
-        memtableFlusher.scheduleAtFixedRate(this::flushMemtable, flushDelayMillis, flushDelayMillis, TimeUnit.MILLISECONDS);
+        memtableFlusher.scheduleAtFixedRate(this::flushMemtables, flushDelayMillis, flushDelayMillis, TimeUnit.MILLISECONDS);
 
         tableCompactor = newSingleThreadScheduledExecutor();
-        tableCompactor.scheduleAtFixedRate(this::levelCompaction, compactionDelayMillis, compactionDelayMillis, TimeUnit.MILLISECONDS);
+        tableCompactor.scheduleAtFixedRate(this::levelCompactions, compactionDelayMillis, compactionDelayMillis, TimeUnit.MILLISECONDS);
     }
 
-    private void initMemtables() {
-        this.mutableMemtable = new Memtable();
-        this.immutableMemtables = new LinkedList<>();
+    /**
+     * Cria uma família de colunas, com Memtables, níveis e opções próprios.
+     * Os arquivos da família ficam num subdiretório com o seu nome.
+     *
+     * @param name    o nome da família.
+     * @param options as opções da família.
+     * @return a família criada.
+     */
+    public ColumnFamily createColumnFamily(String name, ColumnFamilyOptions options) {
+        synchronized (columnFamilies) {
+            if (columnFamilies.containsKey(name))
+                throw new IllegalArgumentException("Já existe uma família de colunas com o nome " + name);
+
+            ColumnFamily family = new ColumnFamily(name, Paths.get(dataDir, name).toString(), options);
+            columnFamilies.put(name, family);
+            return family;
+        }
     }
 
-    private void initLevels() {
-        this.levels = new ObjectArrayList<>();
-        this.levels.add(new ObjectArrayList<>()); // Nível 0
+    /**
+     * Retorna a família de colunas com o nome informado.
+     *
+     * @param name o nome da família.
+     * @return a família, ou null se não existir.
+     */
+    public ColumnFamily getColumnFamily(String name) {
+        synchronized (columnFamilies) {
+            return columnFamilies.get(name);
+        }
     }
 
     private byte[] conversorToByte(Object o) throws JsonProcessingException {
@@ -138,9 +208,63 @@ public class LSMTree<K, V> {
      * @param value o valor a ser adicionado.
      */
     public void add(K key, V value) throws JsonProcessingException {
-        synchronized (mutableMemtableLock) {
-            mutableMemtable.add(new ByteArrayPair(conversorToByte(key), conversorToByte(value)));
-            checkMemtableSize();
+        addWithExpiry(conversorToByte(key), value, StoredValue.NO_EXPIRY);
+    }
+
+    /**
+     * Adiciona um ‘item’ à LSMTree que expira após o tempo informado.
+     * As entradas de índices secundários do item expiram no mesmo instante.
+     *
+     * @param key   a chave a ser adicionada.
+     * @param value o valor a ser adicionado.
+     * @param ttl   o tempo de vida do item.
+     */
+    public void add(K key, V value, Duration ttl) throws JsonProcessingException {
+        addWithExpiry(conversorToByte(key), value, ColumnFamily.expiresAt(ttl));
+    }
+
+    private void addWithExpiry(byte[] keyBytes, V value, long expiresAt) throws JsonProcessingException {
+        byte[] valueBytes = conversorToByte(value);
+
+        ObjectArrayList<SecondaryIndex<V>> currentIndexes = snapshotIndexes();
+        if (currentIndexes.isEmpty()) {
+            defaultFamily.addBytes(keyBytes, valueBytes, expiresAt);
+            return;
+        }
+
+        synchronized (indexLock(keyBytes)) {
+            ObjectArrayList<ByteArrayPair> batch = indexEntries(currentIndexes, keyBytes, value, expiresAt);
+            batch.add(new ByteArrayPair(keyBytes, StoredValue.encode(valueBytes, expiresAt)));
+            defaultFamily.writeBatch(batch);
+        }
+    }
+
+    /**
+     * Registra o operador usado para combinar os operandos gravados por {@link #merge(Object, Object)}.
+     *
+     * @param mergeOperator o operador.
+     */
+    public void setMergeOperator(MergeOperator mergeOperator) {
+        defaultFamily.setMergeOperator(mergeOperator);
+    }
+
+    /**
+     * Grava um operando a ser combinado com o valor atual da chave, sem ler o valor atual.
+     * Os operandos são combinados nas leituras e, definitivamente, na compactação.
+     * Não é suportado em árvores com índices secundários, cuja manutenção exige o valor completo.
+     *
+     * @param key     a chave do item.
+     * @param operand o operando.
+     */
+    public void merge(K key, V operand) throws JsonProcessingException {
+        byte[] keyBytes = conversorToByte(key);
+        byte[] operandBytes = conversorToByte(operand);
+
+        synchronized (defaultFamily.mutableMemtableLock) {
+            if (!indexes.isEmpty())
+                throw new IllegalStateException("merge não é suportado em árvores com índices secundários");
+
+            defaultFamily.mergeBytes(keyBytes, operandBytes);
         }
     }
 
@@ -150,12 +274,76 @@ public class LSMTree<K, V> {
      * @param key A chave do ‘item’ a ser removido.
      */
     public void delete(K key) throws JsonProcessingException {
-        synchronized (mutableMemtableLock) {
-            mutableMemtable.remove(conversorToByte(key));
-            checkMemtableSize();
+        byte[] keyBytes = conversorToByte(key);
+
+        ObjectArrayList<SecondaryIndex<V>> currentIndexes = snapshotIndexes();
+        if (currentIndexes.isEmpty()) {
+            defaultFamily.removeBytes(keyBytes);
+            return;
+        }
+
+        synchronized (indexLock(keyBytes)) {
+            ObjectArrayList<ByteArrayPair> batch = indexEntries(currentIndexes, keyBytes, null, StoredValue.NO_EXPIRY);
+            batch.add(new ByteArrayPair(keyBytes, StoredValue.TOMBSTONE));
+            defaultFamily.writeBatch(batch);
         }
     }
 
+    /**
+     * Registra um índice secundário. Apenas as escritas feitas após o registro são indexadas: os itens já existentes
+     * não são incluídos no índice até serem escritos de novo.
+     *
+     * @param index a definição do índice.
+     */
+    public void addIndex(SecondaryIndex<V> index) {
+        synchronized (defaultFamily.mutableMemtableLock) {
+            for (SecondaryIndex<V> existing : indexes) {
+                if (existing.name.equals(index.name))
+                    throw new IllegalArgumentException("Já existe um índice com o nome " + index.name);
+            }
+            indexes.add(index);
+        }
+    }
+
+    /**
+     * Busca os valores cujo campo indexado é igual ao informado.
+     *
+     * @param indexName o nome do índice.
+     * @param value     o valor do campo.
+     * @return os valores encontrados (vazio se nenhum).
+     */
+    public List<byte[]> getByIndex(String indexName, Object value) {
+        byte[] field = SecondaryIndex.encodeField(value);
+        return queryIndex(findIndex(indexName), field, field);
+    }
+
+    /**
+     * Busca os valores cujo campo indexado está no intervalo [from, to].
+     * Números inteiros (Long, Integer, Short e Byte) e de ponto flutuante (Double e Float) são comparados
+     * numericamente, desde que os limites e o campo sejam do mesmo grupo; os demais tipos, como textos e BigDecimal,
+     * são comparados pelo texto, na ordem dos pontos de código (bytes em UTF-8 sem sinal).
+     *
+     * @param indexName o nome do índice.
+     * @param from      limite inferior (inclusivo).
+     * @param to        limite superior (inclusivo).
+     * @return os valores encontrados, na ordem do campo indexado.
+     */
+    public List<byte[]> getByIndexRange(String indexName, Object from, Object to) {
+        return queryIndex(findIndex(indexName), SecondaryIndex.encodeField(from), SecondaryIndex.encodeField(to));
+    }
+
+    /**
+     * Busca os itens cuja chave começa com o prefixo informado. Para chaves do tipo String, o prefixo é comparado
+     * com o texto da chave. Com um extrator de prefixos nas opções das SSTables
+     * ({@link br.com.project.structs.lsm.sstable.SSTableOptions#prefixExtractor}), tabelas sem o prefixo são ignoradas.
+     *
+     * @param prefix o prefixo da chave.
+     * @return os itens encontrados (chaves serializadas e valores), em ordem.
+     */
+    public List<ByteArrayPair> scanPrefix(String prefix) throws JsonProcessingException {
+        return defaultFamily.scanPrefix(prefix);
+    }
+
     /**
      * Obtém um item da LSMTree.
      *
@@ -163,127 +351,438 @@ public class LSMTree<K, V> {
      * @return O valor do item, ou null se o item não existir.
      */
     public byte[] get(K key) throws JsonProcessingException {
-        byte[] result;
-        byte[] keyBytes = conversorToByte(key);
+        return defaultFamily.getBytes(conversorToByte(key));
+    }
 
-        synchronized (mutableMemtableLock) {
-            result = mutableMemtable.get(keyBytes);
-            if (result != null) {
-                return result.length == 0 ? null : result;
-            }
+    /**
+     * Obtém um item da LSMTree, registrando no rastro as Memtables e SSTables consultadas.
+     *
+     * @param key   A chave do item a ser obtido.
+     * @param trace O rastro da busca, ou null.
+     * @return O valor do item, ou null se o item não existir.
+     */
+    public byte[] get(K key, ReadTrace trace) throws JsonProcessingException {
+        return defaultFamily.getBytes(conversorToByte(key), trace);
+    }
+
+    /**
+     * Obtém um item da LSMTree sem bloquear o chamador em acessos ao disco. Se a versão atual do item estiver numa
+     * Memtable, o futuro já é retornado completo; caso contrário, a busca nas SSTables é feita por um executor de
+     * E/S próprio da árvore. A consulta às Memtables ainda é feita pelo chamador e pode esperar pelos locks delas,
+     * que as escritas só mantêm durante a inserção em memória.
+     *
+     * @param key A chave do item a ser obtido.
+     * @return O futuro com o valor do item, ou com null se o item não existir. Erros de serialização da chave e o
+     * encerramento da árvore completam o futuro excepcionalmente.
+     */
+    public CompletableFuture<byte[]> getAsync(K key) {
+        if (closed)
+            return closedFuture();
+
+        byte[] keyBytes;
+        try {
+            keyBytes = conversorToByte(key);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
         }
 
-        synchronized (immutableMemtablesLock) {
-            for (Memtable memtable : immutableMemtables) {
-                result = memtable.get(keyBytes);
-                if (result != null) {
-                    return result.length == 0 ? null : result;
-                }
-            }
+        byte[] value = defaultFamily.getBytesFromMemtables(keyBytes);
+        if (value != ColumnFamily.NOT_IN_MEMTABLES)
+            return CompletableFuture.completedFuture(value);
+        try {
+            return CompletableFuture.supplyAsync(() -> defaultFamily.getBytes(keyBytes), ioExecutor());
+        } catch (RejectedExecutionException e) {
+            return closedFuture();
         }
+    }
+
+    /**
+     * Obtém vários itens da LSMTree sem bloquear o chamador em acessos ao disco. Os itens encontrados nas Memtables
+     * são resolvidos imediatamente; os demais são buscados em paralelo pelo executor de E/S. As buscas leem as
+     * SSTables em paralelo entre si e com as compactações, exceto quando caem na mesma tabela, cujo fluxo de dados é
+     * compartilhado: essas são feitas uma de cada vez.
+     *
+     * @param keys As chaves dos itens a serem obtidos.
+     * @return O futuro com os valores, na ordem das chaves (null para os itens que não existem).
+     */
+    public CompletableFuture<List<byte[]>> multiGetAsync(Collection<K> keys) {
+        ObjectArrayList<CompletableFuture<byte[]>> futures = new ObjectArrayList<>(keys.size());
+        for (K key : keys)
+            futures.add(getAsync(key));
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            ObjectArrayList<byte[]> res = new ObjectArrayList<>(futures.size());
+            for (CompletableFuture<byte[]> future : futures)
+                res.add(future.join());
+            return res;
+        });
+    }
+
+    /**
+     * Adiciona um item à LSMTree sem bloquear o chamador em acessos ao disco. Sem índices secundários, a escrita é
+     * síncrona: ela é feita na thread do chamador e o futuro já é retornado completo. A escrita só insere o item na
+     * Memtable (e, se ela encher, a transfere para as imutáveis, sem escrever no disco), mas espera pelo
+     * {@code mutableMemtableLock} enquanto outras escritas o mantêm. Com índices secundários, cuja manutenção lê as
+     * entradas anteriores do item, a escrita é feita por um executor de E/S de uma só thread, que aplica as escritas
+     * na ordem das chamadas.
+     *
+     * @param key   a chave a ser adicionada.
+     * @param value o valor a ser adicionado.
+     * @return o futuro completado quando o item estiver visível para as leituras.
+     */
+    public CompletableFuture<Void> putAsync(K key, V value) {
+        if (closed)
+            return closedFuture();
 
-        synchronized (tableLock) {
-            for (ObjectArrayList<SSTable> level : levels) {
-                for (SSTable table : level) {
-                    result = table.get(keyBytes);
-                    if (result != null) {
-                        return result.length == 0 ? null : result;
+        boolean indexed;
+        synchronized (defaultFamily.mutableMemtableLock) {
+            indexed = !indexes.isEmpty();
+        }
+        if (indexed) {
+            try {
+                return CompletableFuture.runAsync(() -> {
+                    try {
+                        add(key, value);
+                    } catch (JsonProcessingException e) {
+                        throw new CompletionException(e);
                     }
-                }
+                }, ioWriter());
+            } catch (RejectedExecutionException e) {
+                return closedFuture();
             }
         }
 
-        return null;
+        try {
+            add(key, value);
+            return CompletableFuture.completedFuture(null);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> closedFuture() {
+        return CompletableFuture.failedFuture(new IllegalStateException("A árvore foi encerrada"));
+    }
+
+    private synchronized ExecutorService ioExecutor() {
+        if (closed)
+            throw new RejectedExecutionException("A árvore foi encerrada");
+        if (ioExecutor == null) {
+            AtomicInteger threads = new AtomicInteger();
+            ioExecutor = Executors.newFixedThreadPool(DEFAULT_IO_THREADS, task -> {
+                Thread thread = new Thread(task, "lsm-io-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ioExecutor;
+    }
+
+    private synchronized ExecutorService ioWriter() {
+        if (closed)
+            throw new RejectedExecutionException("A árvore foi encerrada");
+        if (ioWriter == null) {
+            ioWriter = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "lsm-io-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ioWriter;
     }
 
     /**
-     * Interrompe os executores em segundo plano responsáveis pelo descarregamento da Memtable e compactação das SSTables.
+     * Encerra os executores de E/S, se criados, esperando as leituras e escritas assíncronas em andamento.
+     * Chamadas assíncronas posteriores falham com {@link IllegalStateException}.
      */
-    public void stop() {
-        memtableFlusher.shutdownNow();
-        tableCompactor.shutdownNow();
+    private synchronized void awaitIoExecutors() throws InterruptedException {
+        if (ioWriter != null) {
+            ioWriter.shutdown();
+            ioWriter.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+            ioExecutor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private SecondaryIndex<V> findIndex(String indexName) {
+        synchronized (defaultFamily.mutableMemtableLock) {
+            for (SecondaryIndex<V> index : indexes) {
+                if (index.name.equals(indexName))
+                    return index;
+            }
+        }
+        throw new IllegalArgumentException("Índice inexistente: " + indexName);
+    }
+
+    private List<byte[]> queryIndex(SecondaryIndex<V> index, byte[] fromField, byte[] toField) {
+        ObjectArrayList<byte[]> res = new ObjectArrayList<>();
+
+        // as entradas ficam agrupadas pelo tamanho da chave primária, que vem depois do campo na chave
+        ObjectArrayList<ByteArrayPair> entries = defaultFamily.scanBytes(length -> index.lowerBound(fromField, length),
+                length -> index.upperBound(toField, length), index.entryKeyLength(0));
+        entries.sort((a, b) -> index.compareFields(a.key(), b.key()));
+
+        for (ByteArrayPair entry : entries) {
+            if (!inRange(entry.value(), fromField, toField))
+                continue;
+
+            // a entrada pode ter sido substituída depois da varredura: com as escritas da chave primária bloqueadas,
+            // ela é relida e, se continuar no intervalo, o valor lido é o que a gerou
+            byte[] primaryKey = SecondaryIndex.primaryKeyOf(entry.value());
+            synchronized (indexLock(primaryKey)) {
+                byte[] current = defaultFamily.getBytes(entry.key());
+                if (current == null || !inRange(current, fromField, toField))
+                    continue;
+
+                byte[] value = defaultFamily.getBytes(primaryKey);
+                if (value != null)
+                    res.add(value);
+            }
+        }
+        return res;
     }
 
     /**
-     * Verifica se a Memtable atingiu o tamanho máximo. Caso tenha atingido, ela é transferida para a lista de Memtables imutáveis
-     * e uma nova Memtable mutável é criada.
+     * Verifica se o campo completo de uma entrada de índice está no intervalo; a chave guarda só o campo truncado.
      */
-    private void checkMemtableSize() {
-        if (mutableMemtable.byteSize() <= mutableMemtableMaxSize)
-            return;
+    private static boolean inRange(byte[] entryValue, byte[] fromField, byte[] toField) {
+        byte[] field = SecondaryIndex.fieldOf(entryValue);
+        return Arrays.compare(field, fromField) >= 0 && Arrays.compare(field, toField) <= 0;
+    }
 
-        synchronized (immutableMemtablesLock) {
-            immutableMemtables.addFirst(mutableMemtable);
-            mutableMemtable = new Memtable();
+    private ObjectArrayList<SecondaryIndex<V>> snapshotIndexes() {
+        synchronized (defaultFamily.mutableMemtableLock) {
+            return new ObjectArrayList<>(indexes);
         }
     }
 
     /**
-     * Descarrega a última Memtable imutável para o disco como uma nova SSTable.
+     * Retorna o lock que serializa as escritas indexadas e as releituras das consultas de uma chave primária.
      */
-    private void flushMemtable() {
-        Memtable memtableToFlush;
-        synchronized (immutableMemtablesLock) {
-            if (immutableMemtables.isEmpty())
-                return;
+    private Object indexLock(byte[] primaryKey) {
+        return indexLocks[Math.floorMod(Arrays.hashCode(primaryKey), indexLocks.length)];
+    }
 
-            memtableToFlush = immutableMemtables.getLast();
+    /**
+     * Monta as escritas que mantêm as entradas dos índices consistentes com uma escrita na chave primária.
+     * As chaves de índice atuais de cada registro ficam numa entrada de referência (|0x00|0x00|chave primária|),
+     * permitindo remover as entradas antigas em atualizações e remoções sem desserializar o valor anterior.
+     * A leitura da referência pode ir até as SSTables, então deve ser feita com o lock de índice da chave
+     * ({@link #indexLock(byte[])}) adquirido, mas não o {@code mutableMemtableLock}; as escritas montadas são
+     * aplicadas junto com a da chave primária por {@link ColumnFamily#writeBatch(List)}.
+     *
+     * @param currentIndexes os índices registrados.
+     * @param primaryKey     a chave primária escrita.
+     * @param value          o novo valor, ou null em remoções.
+     * @param expiresAt      o instante de expiração do novo valor, ou {@link StoredValue#NO_EXPIRY}.
+     * @return as escritas, com {@link StoredValue#TOMBSTONE} nas remoções.
+     */
+    private ObjectArrayList<ByteArrayPair> indexEntries(List<SecondaryIndex<V>> currentIndexes, byte[] primaryKey,
+                                                        V value, long expiresAt) {
+        ObjectArrayList<ByteArrayPair> batch = new ObjectArrayList<>();
+        byte[] refKey = new byte[INDEX_REF_PREFIX.length + primaryKey.length];
+        System.arraycopy(primaryKey, 0, refKey, INDEX_REF_PREFIX.length, primaryKey.length);
+
+        byte[] previous = defaultFamily.getBytes(refKey);
+        if (previous != null) {
+            ByteBuffer refs = ByteBuffer.wrap(previous);
+            while (refs.hasRemaining()) {
+                byte[] oldEntryKey = new byte[refs.getInt()];
+                refs.get(oldEntryKey);
+                batch.add(new ByteArrayPair(oldEntryKey, StoredValue.TOMBSTONE));
+            }
         }
 
-        SSTable table = new SSTable(dataDir, memtableToFlush.iterator(), mutableMemtableMaxSize * 2);
-
-        synchronized (tableLock) {
-            levels.get(0).add(0, table);
+        if (value == null) {
+            if (previous != null)
+                batch.add(new ByteArrayPair(refKey, StoredValue.TOMBSTONE));
+            return batch;
         }
 
-        synchronized (immutableMemtablesLock) {
-            immutableMemtables.removeLast();
+        ObjectArrayList<byte[]> entryKeys = new ObjectArrayList<>();
+        int refsSize = 0;
+        for (SecondaryIndex<V> index : currentIndexes) {
+            byte[] field = index.extract(value);
+            if (field == null)
+                continue;
+
+            byte[] entryKey = index.entryKey(field, primaryKey);
+            batch.add(new ByteArrayPair(entryKey, StoredValue.encode(SecondaryIndex.entryValue(field, primaryKey), expiresAt)));
+            entryKeys.add(entryKey);
+            refsSize += Integer.BYTES + entryKey.length;
         }
+
+        ByteBuffer refs = ByteBuffer.allocate(refsSize);
+        for (byte[] entryKey : entryKeys)
+            refs.putInt(entryKey.length).put(entryKey);
+        batch.add(new ByteArrayPair(refKey, StoredValue.encode(refs.array(), expiresAt)));
+        return batch;
     }
 
     /**
-     * Realiza a compactação das SSTables nos diferentes níveis, mesclando as SSTables entre os níveis
-     * e substituindo as tabelas mais antigas.
+     * Descarrega as Memtables de todas as famílias de colunas (ver {@link ColumnFamily#flush(boolean)}).
+     * A Memtable mutável é descarregada mesmo que não tenha atingido o tamanho máximo.
+     *
+     * @param wait se true, retorna só depois que todas as Memtables estiverem em SSTables.
      */
-    private void levelCompaction() {
-        synchronized (tableLock) {
-            int n = levels.size();
+    public void flush(boolean wait) {
+        for (ColumnFamily family : snapshotFamilies())
+            family.flush(wait);
+    }
 
-            int maxLevelSize = maxLevelZeroSstNumber;
-            long sstMaxSize = maxLevelZeroSstByteSize;
+    /**
+     * Compacta manualmente o intervalo [from, to] do espaço de chaves padrão até o último nível
+     * (ver {@link ColumnFamily#compactRange(Object, Object)}). Os índices secundários, gravados no mesmo espaço
+     * com outras chaves, não são compactados junto.
+     *
+     * @param from a menor chave do intervalo, ou null para começar na menor chave.
+     * @param to   a maior chave do intervalo, ou null para terminar na maior chave.
+     */
+    public void compactRange(K from, K to) throws JsonProcessingException {
+        defaultFamily.compactRange(from, to);
+    }
 
-            for (int i = 0; i < n; i++) {
-                ObjectArrayList<SSTable> level = levels.get(i);
+    /**
+     * Incorpora ao espaço de chaves padrão SSTables escritas fora da árvore, sem regravar os seus itens
+     * (ver {@link ColumnFamily#ingestFiles(List)}). Os itens devem ter sido montados por {@link #encodeItem(Object, Object)}.
+     *
+     * @param filenames os nomes base (sem extensão) das SSTables.
+     * @throws IllegalStateException se houver índices secundários, cujas entradas não existem nas tabelas.
+     */
+    public void ingestFiles(List<String> filenames) {
+        synchronized (defaultFamily.mutableMemtableLock) {
+            if (!indexes.isEmpty())
+                throw new IllegalStateException("A incorporação de SSTables não atualiza os índices secundários");
+        }
+        defaultFamily.ingestFiles(filenames);
+    }
 
-                if (level.size() > maxLevelSize) {
-                    // Adiciona um novo nível se necessário
-                    if (i == n - 1)
-                        levels.add(new ObjectArrayList<>());
+    /**
+     * Monta um item no formato gravado pela árvore, sem expiração, para a escrita de SSTables por
+     * {@link br.com.project.structs.lsm.sstable.SSTableWriter} a serem incorporadas por {@link #ingestFiles(List)}.
+     *
+     * @param key   a chave do item.
+     * @param value o valor do item.
+     * @return o item codificado.
+     */
+    public static ByteArrayPair encodeItem(Object key, Object value) throws JsonProcessingException {
+        return new ByteArrayPair(ObjectSerializer.convertToBytes(key),
+                StoredValue.encode(ObjectSerializer.convertToBytes(value), StoredValue.NO_EXPIRY));
+    }
 
-                    // Pega todas as tabelas do nível atual e do próximo
-                    ObjectArrayList<SSTable> nextLevel = levels.get(i + 1);
-                    ObjectArrayList<SSTable> merge = new ObjectArrayList<>();
-                    merge.addAll(level);
-                    merge.addAll(nextLevel);
+    /**
+     * Encerra a árvore de forma ordenada, para reinícios planejados: as execuções em segundo plano deixam de ser
+     * agendadas e as que estão em andamento terminam; em seguida, as Memtables de todas as famílias, inclusive as
+     * mutáveis, são descarregadas e as SSTables fechadas, com o manifesto atualizado. Com
+     * {@link ColumnFamilyOptions#recover(boolean)}, uma árvore aberta depois no mesmo diretório encontra todos os itens
+     * escritos antes do encerramento. A árvore não pode ser usada depois.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        memtableFlusher.shutdown();
+        tableCompactor.shutdown();
 
-                    // Realiza uma execução ordenada e substitui o próximo nível
-                    var sortedRun = SSTable.sortedRun(dataDir, sstMaxSize, merge.toArray(SSTable[]::new));
+        try {
+            memtableFlusher.awaitTermination(1, TimeUnit.MINUTES);
+            tableCompactor.awaitTermination(1, TimeUnit.MINUTES);
+            awaitIoExecutors();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
 
-                    // Exclui as tabelas anteriores
-                    level.forEach(SSTable::closeAndDelete);
-                    level.clear();
-                    nextLevel.forEach(SSTable::closeAndDelete);
-                    nextLevel.clear();
+        for (ColumnFamily family : snapshotFamilies())
+            family.close();
+    }
 
-                    nextLevel.addAll(sortedRun);
-                }
+    /**
+     * Interrompe os executores em segundo plano responsáveis pelo descarregamento da Memtable e compactação das SSTables.
+     * Um descarregamento ou compactação já em andamento é concluído antes do retorno, para que nenhum arquivo
+     * continue sendo escrito no diretório de dados depois da parada.
+     */
+    public void stop() {
+        closed = true;
+        memtableFlusher.shutdownNow();
+        tableCompactor.shutdownNow();
 
-                maxLevelSize = (int) (maxLevelSize * levelIncrFactor);
-                sstMaxSize = (int) (sstMaxSize * levelIncrFactor);
-            }
+        try {
+            memtableFlusher.awaitTermination(1, TimeUnit.MINUTES);
+            tableCompactor.awaitTermination(1, TimeUnit.MINUTES);
+            awaitIoExecutors();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Executa a coleta de lixo do log de valores de cada família de colunas que separa valores grandes.
+     *
+     * @return o número de segmentos removidos.
+     */
+    public int collectValueLogGarbage() {
+        int collected = 0;
+        for (ColumnFamily family : snapshotFamilies())
+            collected += family.collectValueLogGarbage();
+        return collected;
+    }
+
+    /**
+     * Retorna as estatísticas da família de colunas padrão. As das demais famílias são obtidas
+     * por {@link ColumnFamily#getStatistics()}.
+     */
+    public Statistics getStatistics() {
+        return defaultFamily.getStatistics();
+    }
+
+    /**
+     * Exporta as estatísticas de todas as famílias de colunas (ver {@link ColumnFamily#exportStatistics()}),
+     * com o nome da família como prefixo, por exemplo {@code default.get.p99}.
+     *
+     * @return os valores, na ordem de exportação.
+     */
+    public Map<String, Number> exportStatistics() {
+        Map<String, Number> res = new LinkedHashMap<>();
+        for (ColumnFamily family : snapshotFamilies())
+            family.exportStatistics().forEach((name, value) -> res.put(family.name + "." + name, value));
+        return res;
+    }
+
+    /**
+     * Verifica os checksums das SSTables de todas as famílias de colunas (ver {@link ColumnFamily#verifyAll()}).
+     * Feito para ser agendado periodicamente em segundo plano, como uma varredura de integridade.
+     *
+     * @return os caminhos base (sem extensão) das tabelas corrompidas.
+     */
+    public List<String> verifyAll() {
+        List<String> corrupted = new ObjectArrayList<>();
+        for (ColumnFamily family : snapshotFamilies())
+            corrupted.addAll(family.verifyAll());
+        return corrupted;
+    }
+
+    /**
+     * Descarrega uma Memtable imutável de cada família de colunas.
+     */
+    private void flushMemtables() {
+        for (ColumnFamily family : snapshotFamilies())
+            family.flushMemtable();
+    }
+
+    /**
+     * Executa a compactação de níveis de cada família de colunas.
+     */
+    private void levelCompactions() {
+        for (ColumnFamily family : snapshotFamilies())
+            family.levelCompaction();
+    }
+
+    private ObjectArrayList<ColumnFamily> snapshotFamilies() {
+        synchronized (columnFamilies) {
+            return new ObjectArrayList<>(columnFamilies.values());
+        }
+    }
 
     /**
      * Cria o diretório onde os dados serão armazenados, caso não exista.
@@ -293,15 +792,28 @@ public class LSMTree<K, V> {
         try {
             Path path = Paths.get(dataDir);
             if (Files.exists(path)) {
-                Files.walk(path)
-                        .sorted((p1, p2) -> p2.compareTo(p1))
-                        .forEach(p -> {
-                            try {
-                                Files.delete(p);
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        });
+                // uma árvore anterior ainda ativa no mesmo diretório pode criar e renomear arquivos durante a varredura
+                // (como o manifesto temporário); os que somem no meio do caminho são ignorados
+                Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        delete(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        if (!(e instanceof NoSuchFileException))
+                            e.printStackTrace();
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                        delete(dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
             }
             Files.createDirectories(path);
         } catch (IOException e) {
@@ -309,6 +821,14 @@ public class LSMTree<K, V> {
         }
     }
 
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Retorna uma representação em ‘string’ do estado atual da LSMTree.
      *
@@ -319,24 +839,16 @@ public class LSMTree<K, V> {
 
         var s = new StringBuilder();
         s.append("LSM-Tree {\n");
-        s.append("\tmemtable: ");
-        s.append(mutableMemtable.byteSize() / 1024.0 / 1024.0);
-        s.append(" mb\n");
-        s.append("\tquantity immutable memtables: ");
-        s.append(immutableMemtables.size());
-        s.append("\n\tsst levels:\n");
-
-        int i = 0;
-        for (var level : levels) {
-            s.append(String.format("\t\t-> %d: ", i));
-            level.stream()
-                    .map(st -> String.format("[ %s, size: %d ] ", st.filename, st.size))
-                    .forEach(s::append);
-            s.append("\n");
-            i += 1;
+        defaultFamily.appendTo(s);
+
+        for (ColumnFamily family : snapshotFamilies()) {
+            if (family == defaultFamily)
+                continue;
+            s.append("\tcolumn family ").append(family.name).append(":\n");
+            family.appendTo(s);
         }
 
         s.append("}");
         return s.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+import br.com.project.structs.lsm.sstable.SSTable;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Manifesto de uma família de colunas: as SSTables de cada nível, na ordem de leitura, e a compactação em andamento,
+ * com as tabelas de saída já concluídas. É regravado por inteiro a cada mudança, num arquivo temporário que substitui
+ * o anterior de uma só vez; assim, depois de uma queda, o manifesto descreve um estado consistente, e as tabelas que
+ * ele não cita são restos de trabalho interrompido.
+ * <p>
+ * Formato: número de níveis e, para cada nível, o número de tabelas e os seus nomes; depois, 0 sem compactação em
+ * andamento, ou 1 seguido do nível de destino, do tamanho máximo das tabelas, dos nomes das tabelas de entrada e das
+ * de saída e da chave de retomada (tamanho + 1, ou 0 se não houver). Os nomes são relativos ao diretório da família,
+ * e o arquivo termina com o CRC32C do conteúdo.
+ */
+class Manifest {
+
+    static final String FILENAME = "MANIFEST";
+    private static final String TEMP_FILENAME = FILENAME + ".tmp";
+
+    /**
+     * Compactação em andamento.
+     *
+     * @param targetLevel o nível que recebe as tabelas de saída.
+     * @param sstMaxSize  o tamanho máximo das tabelas de saída.
+     * @param inputs      as tabelas de entrada, da mais recente para a mais antiga.
+     * @param outputs     as tabelas de saída já concluídas, em ordem.
+     * @param checkpoint  a maior chave da última tabela de saída, ou null se nenhuma foi concluída.
+     */
+    record Job(int targetLevel, long sstMaxSize, List<String> inputs, List<String> outputs, byte[] checkpoint) {
+    }
+
+    final ObjectArrayList<ObjectArrayList<String>> levels;
+    final Job job;
+
+    private Manifest(ObjectArrayList<ObjectArrayList<String>> levels, Job job) {
+        this.levels = levels;
+        this.job = job;
+    }
+
+    /**
+     * Grava o manifesto da família.
+     *
+     * @param directory o diretório da família.
+     * @param levels    as tabelas de cada nível.
+     * @param job       a compactação em andamento, ou null.
+     */
+    static void write(String directory, List<? extends List<SSTable>> levels, Job job) {
+        String temp = Paths.get(directory, TEMP_FILENAME).toString();
+        ExtendedOutputStream os = new ExtendedOutputStream(temp);
+        os.writeVByteInt(levels.size());
+        for (List<SSTable> level : levels) {
+            os.writeVByteInt(level.size());
+            for (SSTable table : level)
+                writeString(os, new File(table.filename).getName());
+        }
+
+        if (job == null) {
+            os.writeVByteInt(0);
+        } else {
+            os.writeVByteInt(1);
+            os.writeVByteInt(job.targetLevel());
+            os.writeVByteLong(job.sstMaxSize());
+            writeNames(os, job.inputs());
+            writeNames(os, job.outputs());
+            os.writeVByteInt(job.checkpoint() == null ? 0 : job.checkpoint().length + 1);
+            if (job.checkpoint() != null)
+                os.write(job.checkpoint());
+        }
+        os.writeChecksum();
+        os.close();
+
+        try {
+            Path path = Paths.get(temp);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(path, Paths.get(directory, FILENAME), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        syncDirectory(Paths.get(directory));
+    }
+
+    /**
+     * Grava em disco a entrada do diretório, para que a troca do manifesto não se perca numa queda: sem isso, a
+     * recuperação poderia ler o manifesto anterior e apagar, como restos, tabelas que ele não cita.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // alguns sistemas (como o Windows) não permitem abrir ou sincronizar diretórios
+        }
+    }
+
+    /**
+     * Lê o manifesto da família.
+     *
+     * @param directory o diretório da família.
+     * @return o manifesto, ou null se a família ainda não tiver um.
+     * @throws IllegalStateException se o checksum do manifesto não conferir.
+     */
+    static Manifest read(String directory) {
+        String filename = Paths.get(directory, FILENAME).toString();
+        if (!new File(filename).exists())
+            return null;
+        if (!ExtendedInputStream.verifyChecksum(filename))
+            throw new IllegalStateException("Manifesto " + filename + " corrompido");
+
+        ExtendedInputStream is = new ExtendedInputStream(filename);
+        try {
+            ObjectArrayList<ObjectArrayList<String>> levels = new ObjectArrayList<>();
+            int n = is.readVByteInt();
+            for (int i = 0; i < n; i++)
+                levels.add(readNames(is));
+
+            Job job = null;
+            if (is.readVByteInt() == 1) {
+                int targetLevel = is.readVByteInt();
+                long sstMaxSize = is.readVByteLong();
+                ObjectArrayList<String> inputs = readNames(is);
+                ObjectArrayList<String> outputs = readNames(is);
+                int checkpointLength = is.readVByteInt();
+                byte[] checkpoint = checkpointLength == 0 ? null : is.readNBytes(checkpointLength - 1);
+                job = new Job(targetLevel, sstMaxSize, inputs, outputs, checkpoint);
+            }
+            return new Manifest(levels, job);
+        } finally {
+            is.close();
+        }
+    }
+
+    private static void writeNames(ExtendedOutputStream os, List<String> names) {
+        os.writeVByteInt(names.size());
+        for (String name : names)
+            writeString(os, name);
+    }
+
+    private static void writeString(ExtendedOutputStream os, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        os.writeVByteInt(bytes.length);
+        os.write(bytes);
+    }
+
+    private static ObjectArrayList<String> readNames(ExtendedInputStream is) {
+        int n = is.readVByteInt();
+        ObjectArrayList<String> res = new ObjectArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            res.add(new String(is.readNBytes(is.readVByteInt()), StandardCharsets.UTF_8));
+        return res;
+    }
+}
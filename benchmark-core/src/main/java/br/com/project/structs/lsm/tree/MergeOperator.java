@@ -0,0 +1,45 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.BinaryOperator;
+
+/**
+ * Operador associativo usado por {@link LSMTree#merge(Object, Object)} para combinar um valor existente com um operando
+ * sem a leitura prévia do valor. Os operandos são combinados de forma preguiçosa nas leituras e antecipadamente
+ * na compactação, então o operador deve ser associativo: {@code merge(merge(a, b), c) == merge(a, merge(b, c))}.
+ * Quando não existe valor anterior, o próprio operando é usado como valor.
+ */
+@FunctionalInterface
+public interface MergeOperator {
+
+    /**
+     * Combina o valor existente (ou um operando mais antigo) com um operando mais recente.
+     *
+     * @param existing o valor existente, serializado.
+     * @param operand  o operando, serializado.
+     * @return o valor combinado, serializado.
+     */
+    byte[] merge(byte[] existing, byte[] operand);
+
+    /**
+     * Cria um operador sobre objetos, serializados com o {@link ObjectSerializer}.
+     *
+     * @param type     a classe dos valores e operandos.
+     * @param operator a função de combinação.
+     * @return o operador.
+     */
+    static <T> MergeOperator of(Class<T> type, BinaryOperator<T> operator) {
+        return (existing, operand) -> {
+            try {
+                T merged = operator.apply(ObjectSerializer.convertBytesToObject(existing, type),
+                        ObjectSerializer.convertBytesToObject(operand, type));
+                return ObjectSerializer.convertToBytes(merged);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.sstable.TableProbe;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.util.List;
+
+/**
+ * Rastro de uma busca pontual, passado a {@link LSMTree#get(Object, ReadTrace)} ou
+ * {@link ColumnFamily#get(Object, ReadTrace)}: as estruturas consultadas em ordem, com o resultado e a duração de cada
+ * uma, e o tempo gasto esperando os locks. Serve para investigar buscas lentas sem um profiler; as buscas sem rastro
+ * não pagam nada por ele. Um rastro registra uma única busca e não deve ser compartilhado entre threads.
+ */
+public class ReadTrace {
+
+    /**
+     * Tipo da estrutura consultada.
+     */
+    public enum Source {
+        MUTABLE_MEMTABLE,
+        IMMUTABLE_MEMTABLE,
+        SSTABLE
+    }
+
+    /**
+     * Uma consulta a uma estrutura.
+     *
+     * @param source   o tipo da estrutura.
+     * @param level    a posição da Memtable imutável (0 é a mais recente) ou o nível da SSTable; 0 para a Memtable mutável.
+     * @param filename o nome da SSTable, ou null para as Memtables.
+     * @param found    se uma versão da chave foi encontrada (possivelmente um tombstone ou um operando de merge).
+     * @param nanos    a duração da consulta, em nanossegundos.
+     * @param table    os detalhes da busca na SSTable, ou null para as Memtables.
+     */
+    public record Step(Source source, int level, String filename, boolean found, long nanos, TableProbe table) {
+        @Override
+        public String toString() {
+            if (table != null)
+                return source + " L" + level + " " + filename + ": " + table;
+            return source + (source == Source.IMMUTABLE_MEMTABLE ? " #" + level : "") + ": "
+                    + (found ? "FOUND" : "NOT_FOUND") + " (" + nanos / 1000 + "us)";
+        }
+    }
+
+    private final ObjectArrayList<Step> steps = new ObjectArrayList<>();
+    long lockWaitNanos;
+    int retries;
+    long totalNanos;
+    boolean found;
+
+    void add(Source source, int level, boolean found, long nanos) {
+        steps.add(new Step(source, level, null, found, nanos, null));
+    }
+
+    void add(int level, String filename, TableProbe probe) {
+        steps.add(new Step(Source.SSTABLE, level, filename, probe.getOutcome() == TableProbe.Outcome.FOUND,
+                probe.getNanos(), probe));
+    }
+
+    /**
+     * Retorna as consultas, na ordem em que foram feitas; inclui as das tentativas repetidas.
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Retorna o número de SSTables consultadas, descartadas ou não pelo intervalo e pelo filtro.
+     */
+    public int getTablesProbed() {
+        int res = 0;
+        for (Step step : steps)
+            if (step.source() == Source.SSTABLE)
+                res++;
+        return res;
+    }
+
+    /**
+     * Retorna o total de bytes lidos do disco pela busca.
+     */
+    public long getBytesRead() {
+        long res = 0;
+        for (Step step : steps)
+            if (step.table() != null)
+                res += step.table().getDataBytesRead() + step.table().getIndexBytesRead();
+        return res;
+    }
+
+    /**
+     * Tempo gasto esperando os locks das Memtables e das SSTables, em nanossegundos.
+     */
+    public long getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    /**
+     * Número de vezes que a busca recomeçou porque um descarregamento ou uma compactação moveu a versão que estava
+     * sendo combinada, ou porque o valor apontado no log de valores foi coletado.
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Duração total da busca, em nanossegundos.
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * Retorna se a busca encontrou um valor vivo.
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append(found ? "FOUND" : "NOT_FOUND")
+                .append(" em ").append(totalNanos / 1000).append("us")
+                .append(", locks ").append(lockWaitNanos / 1000).append("us")
+                .append(", ").append(retries).append(" repetição(ões)");
+        for (Step step : steps)
+            sb.append("\n  ").append(step);
+        return sb.toString();
+    }
+}
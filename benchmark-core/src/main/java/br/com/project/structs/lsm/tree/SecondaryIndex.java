@@ -0,0 +1,189 @@
+package br.com.project.structs.lsm.tree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Definição declarativa de um índice secundário mantido pela {@link LSMTree}.
+ * O índice extrai um campo do valor (por exemplo, {@code Pessoa::getTelefone}) e, a cada escrita,
+ * a árvore grava uma entrada extra no mesmo armazenamento, no formato:
+ * |0x00|nome do índice|0x00|campo codificado (largura fixa)|chave primária|
+ * A chave primária completa torna a entrada única mesmo para registros com o mesmo campo. Na ordem de
+ * {@code ByteArrayWrapper} (tamanho e depois bytes), as entradas de um índice com o mesmo tamanho de chave primária
+ * ficam contíguas e ordenadas pelo campo, então as buscas por igualdade e por intervalo leem um intervalo para cada
+ * tamanho de chave.
+ * O valor da entrada guarda a chave primária e o campo completo, usado para descartar falsos candidatos
+ * quando o campo é maior que a largura do índice.
+ * Só as escritas feitas depois de o índice ser registrado ({@link LSMTree#addIndex(SecondaryIndex)}) são indexadas;
+ * os itens já existentes não são incluídos.
+ *
+ * @param <V> tipo dos valores indexados.
+ */
+public class SecondaryIndex<V> {
+
+    static final int DEFAULT_WIDTH = 32;
+    static final byte PADDING = Byte.MIN_VALUE;
+
+    public final String name;
+    final Function<V, ?> extractor;
+    final int width;
+    final byte[] prefix;
+
+    /**
+     * Cria um índice com a largura padrão de 32 bytes para o campo.
+     *
+     * @param name      nome único do índice.
+     * @param extractor função que extrai o campo indexado do valor.
+     */
+    public SecondaryIndex(String name, Function<V, ?> extractor) {
+        this(name, extractor, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Cria um índice com a largura informada para o campo.
+     * Campos maiores que a largura são truncados na chave, mas continuam corretos nas consultas.
+     *
+     * @param name      nome único do índice.
+     * @param extractor função que extrai o campo indexado do valor.
+     * @param width     quantidade de bytes do campo armazenada na chave.
+     */
+    public SecondaryIndex(String name, Function<V, ?> extractor, int width) {
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException("O nome do índice não pode ser vazio");
+        if (width <= 0)
+            throw new IllegalArgumentException("A largura do índice deve ser maior que 0");
+
+        this.name = name;
+        this.extractor = extractor;
+        this.width = width;
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        this.prefix = new byte[nameBytes.length + 2];
+        System.arraycopy(nameBytes, 0, prefix, 1, nameBytes.length);
+    }
+
+    /**
+     * Extrai e codifica o campo indexado de um valor.
+     *
+     * @param value o valor escrito na árvore.
+     * @return o campo codificado, ou null se o campo for nulo (não indexado).
+     */
+    byte[] extract(V value) {
+        Object field = extractor.apply(value);
+        return field == null ? null : encodeField(field);
+    }
+
+    /**
+     * Codifica um campo de forma que a comparação lexicográfica com sinal dos bytes
+     * (a mesma usada por {@code ByteArrayWrapper}) preserve a ordem natural do campo.
+     * Long, Integer, Short e Byte viram 8 bytes big-endian, e Double e Float os 8 bytes do double, com o sinal e, nos
+     * negativos, os demais bits invertidos (-0.0 vem antes de 0.0, e NaN depois do infinito); só campos do mesmo
+     * grupo são comparáveis entre si. Os demais tipos usam o texto em UTF-8, comparado como bytes sem sinal, ou seja,
+     * pelos pontos de código.
+     */
+    static byte[] encodeField(Object field) {
+        if (field instanceof Long || field instanceof Integer || field instanceof Short || field instanceof Byte)
+            return signedOrder(((Number) field).longValue() ^ Long.MIN_VALUE);
+        if (field instanceof Double || field instanceof Float) {
+            long bits = Double.doubleToLongBits(((Number) field).doubleValue());
+            return signedOrder(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+        }
+        return signedOrder(field.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Converte um número comparado sem sinal em bytes que preservam a ordem na comparação com sinal.
+     */
+    private static byte[] signedOrder(long unsigned) {
+        return signedOrder(ByteBuffer.allocate(Long.BYTES).putLong(unsigned).array());
+    }
+
+    /**
+     * Inverte o bit mais alto de cada byte, levando a ordem sem sinal dos bytes para a ordem com sinal.
+     */
+    private static byte[] signedOrder(byte[] unsigned) {
+        for (int i = 0; i < unsigned.length; i++)
+            unsigned[i] ^= (byte) 0x80;
+        return unsigned;
+    }
+
+    /**
+     * Monta a chave da entrada de índice para um campo e uma chave primária.
+     */
+    byte[] entryKey(byte[] field, byte[] primaryKey) {
+        return ByteBuffer.allocate(prefix.length + width + primaryKey.length)
+                .put(prefix)
+                .put(padded(field))
+                .put(primaryKey)
+                .array();
+    }
+
+    /**
+     * Tamanho da chave das entradas com chave primária de {@code primaryKeyLength} bytes.
+     */
+    int entryKeyLength(int primaryKeyLength) {
+        return prefix.length + width + primaryKeyLength;
+    }
+
+    /**
+     * Menor chave possível, com o tamanho informado, para entradas cujo campo é {@code field}.
+     */
+    byte[] lowerBound(byte[] field, int keyLength) {
+        return bound(field, keyLength, Byte.MIN_VALUE);
+    }
+
+    /**
+     * Maior chave possível, com o tamanho informado, para entradas cujo campo é {@code field}.
+     */
+    byte[] upperBound(byte[] field, int keyLength) {
+        return bound(field, keyLength, Byte.MAX_VALUE);
+    }
+
+    private byte[] bound(byte[] field, int keyLength, byte keyFill) {
+        byte[] res = ByteBuffer.allocate(keyLength)
+                .put(prefix)
+                .put(padded(field))
+                .array();
+        Arrays.fill(res, prefix.length + width, res.length, keyFill);
+        return res;
+    }
+
+    /**
+     * Compara duas chaves de entrada pelo campo codificado (truncado na largura do índice), ignorando a chave primária.
+     */
+    int compareFields(byte[] entryKey, byte[] otherEntryKey) {
+        return Arrays.compare(entryKey, prefix.length, prefix.length + width,
+                otherEntryKey, prefix.length, prefix.length + width);
+    }
+
+    private byte[] padded(byte[] field) {
+        byte[] res = new byte[width];
+        int n = Math.min(width, field.length);
+        System.arraycopy(field, 0, res, 0, n);
+        Arrays.fill(res, n, width, PADDING);
+        return res;
+    }
+
+    /**
+     * Valor da entrada de índice: |tamanho da chave primária (4 bytes)|chave primária|campo completo|.
+     */
+    static byte[] entryValue(byte[] field, byte[] primaryKey) {
+        return ByteBuffer.allocate(Integer.BYTES + primaryKey.length + field.length)
+                .putInt(primaryKey.length)
+                .put(primaryKey)
+                .put(field)
+                .array();
+    }
+
+    static byte[] primaryKeyOf(byte[] entryValue) {
+        int len = ByteBuffer.wrap(entryValue).getInt();
+        return Arrays.copyOfRange(entryValue, Integer.BYTES, Integer.BYTES + len);
+    }
+
+    static byte[] fieldOf(byte[] entryValue) {
+        int len = ByteBuffer.wrap(entryValue).getInt();
+        return Arrays.copyOfRange(entryValue, Integer.BYTES + len, entryValue.length);
+    }
+}
@@ -0,0 +1,147 @@
+package br.com.project.structs.lsm.tree;
+
+import br.com.project.structs.lsm.sstable.TableStatistics;
+import br.com.project.structs.lsm.utils.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estatísticas de uma família de colunas, atualizadas sem locks pelas operações e pelos trabalhos em segundo plano.
+ * As durações e latências são registradas em nanossegundos. O estado dos níveis (tabelas e bytes) é calculado
+ * no momento da exportação, em {@link ColumnFamily#exportStatistics()}.
+ */
+public class Statistics {
+
+    final LatencyHistogram getLatency = new LatencyHistogram();
+    final LatencyHistogram writeLatency = new LatencyHistogram();
+    final LatencyHistogram flushDuration = new LatencyHistogram();
+    final LatencyHistogram compactionDuration = new LatencyHistogram();
+
+    final LongAdder mutableMemtableHits = new LongAdder();
+    final LongAdder immutableMemtableHits = new LongAdder();
+    final LongAdder notFound = new LongAdder();
+
+    final LongAdder backgroundBytesWritten = new LongAdder();
+    final LongAdder backgroundBytesRead = new LongAdder();
+    final LongAdder stallNanos = new LongAdder();
+    final LongAdder readCompactions = new LongAdder();
+
+    final TableStatistics tables = new TableStatistics();
+
+    /**
+     * Latência das buscas pontuais.
+     */
+    public LatencyHistogram getGetLatency() {
+        return getLatency;
+    }
+
+    /**
+     * Latência das escritas (inserções, merges e remoções).
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * Duração dos descarregamentos; o número de descarregamentos é {@code getCount()}.
+     */
+    public LatencyHistogram getFlushDuration() {
+        return flushDuration;
+    }
+
+    /**
+     * Duração das compactações (entre níveis ou de tabelas com muitos itens expirados).
+     */
+    public LatencyHistogram getCompactionDuration() {
+        return compactionDuration;
+    }
+
+    public long getMutableMemtableHits() {
+        return mutableMemtableHits.sum();
+    }
+
+    public long getImmutableMemtableHits() {
+        return immutableMemtableHits.sum();
+    }
+
+    public long getTableHits() {
+        return tables.getTableHits();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    /**
+     * Bytes de dados escritos pelos descarregamentos e compactações.
+     */
+    public long getBackgroundBytesWritten() {
+        return backgroundBytesWritten.sum();
+    }
+
+    /**
+     * Bytes de dados lidos pelas compactações.
+     */
+    public long getBackgroundBytesRead() {
+        return backgroundBytesRead.sum();
+    }
+
+    /**
+     * Tempo que as escritas passaram esperando a Memtable mutável, ocupada por outras escritas ou por uma troca
+     * de Memtable, em nanossegundos. A árvore não limita as escritas de outra forma.
+     */
+    public long getStallNanos() {
+        return stallNanos.sum();
+    }
+
+    /**
+     * Número de compactações de intervalos disparadas por buscas que consultaram tabelas demais.
+     */
+    public long getReadCompactions() {
+        return readCompactions.sum();
+    }
+
+    /**
+     * Uso dos filtros de chaves das SSTables.
+     */
+    public TableStatistics getTableStatistics() {
+        return tables;
+    }
+
+    /**
+     * Exporta os contadores com nomes hierárquicos (por exemplo {@code get.p99}), para sistemas de monitoramento.
+     */
+    Map<String, Number> export() {
+        Map<String, Number> res = new LinkedHashMap<>();
+        exportHistogram(res, "get", getLatency);
+        exportHistogram(res, "write", writeLatency);
+        exportHistogram(res, "flush", flushDuration);
+        exportHistogram(res, "compaction", compactionDuration);
+
+        res.put("memtable.mutable.hits", getMutableMemtableHits());
+        res.put("memtable.immutable.hits", getImmutableMemtableHits());
+        res.put("table.hits", getTableHits());
+        res.put("get.notFound", getNotFound());
+
+        res.put("filter.checks", tables.getFilterChecks());
+        res.put("filter.useful", tables.getFilterUseful());
+        res.put("filter.falsePositives", tables.getFilterFalsePositives());
+
+        res.put("background.bytesWritten", getBackgroundBytesWritten());
+        res.put("background.bytesRead", getBackgroundBytesRead());
+        res.put("stall.nanos", getStallNanos());
+        res.put("compaction.readTriggered", getReadCompactions());
+        return res;
+    }
+
+    private static void exportHistogram(Map<String, Number> res, String name, LatencyHistogram histogram) {
+        res.put(name + ".count", histogram.getCount());
+        res.put(name + ".mean", histogram.getMean());
+        res.put(name + ".p50", histogram.getValueAtPercentile(50));
+        res.put(name + ".p99", histogram.getValueAtPercentile(99));
+        res.put(name + ".p999", histogram.getValueAtPercentile(99.9));
+        res.put(name + ".max", histogram.getMax());
+    }
+}
@@ -1,5 +1,7 @@
 package br.com.project.structs.lsm.types;
 
+import java.util.Comparator;
+
 /**
  * Representa um par de chave-valor, onde tanto a chave quanto o valor são armazenados como arrays de bytes.
  * A chave é utilizada para ordenação e busca eficiente, enquanto o valor contém os dados associados à chave.
@@ -10,6 +12,14 @@ package br.com.project.structs.lsm.types;
  */
 public record ByteArrayPair(byte[] key, byte[] value) implements Comparable<ByteArrayPair> {
 
+    /**
+     * Ordena os pares pela chave, na mesma ordem de {@link #compareTo(ByteArrayPair)}, mas comparando os arrays
+     * diretamente, sem criar um {@link ByteArrayWrapper} para cada lado. Usado nas combinações de iteradores, que
+     * comparam chaves a cada item.
+     */
+    public static final Comparator<ByteArrayPair> KEY_ORDER = (a, b) ->
+            ByteArrayWrapper.compare(a.key, a.key.length, b.key, b.key.length);
+
     public int size() {
         return key.length + value.length;
     }
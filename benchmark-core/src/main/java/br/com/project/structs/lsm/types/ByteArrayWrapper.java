@@ -31,20 +31,61 @@ public class ByteArrayWrapper implements Comparable<ByteArrayWrapper> {
         return data;
     }
 
+    /**
+     * Retorna a menor chave com o tamanho informado que começa com o prefixo.
+     * Como a comparação ordena primeiro pelo tamanho, as chaves com um prefixo formam um intervalo contínuo
+     * para cada tamanho, entre {@code prefixLowerBound} e {@code prefixUpperBound}.
+     *
+     * @param prefix o prefixo.
+     * @param length o tamanho da chave (maior ou igual ao do prefixo).
+     * @return o limite inferior do intervalo.
+     */
+    public static byte[] prefixLowerBound(byte[] prefix, int length) {
+        return padPrefix(prefix, length, Byte.MIN_VALUE);
+    }
+
+    /**
+     * Retorna a maior chave com o tamanho informado que começa com o prefixo.
+     *
+     * @param prefix o prefixo.
+     * @param length o tamanho da chave (maior ou igual ao do prefixo).
+     * @return o limite superior do intervalo.
+     */
+    public static byte[] prefixUpperBound(byte[] prefix, int length) {
+        return padPrefix(prefix, length, Byte.MAX_VALUE);
+    }
+
+    private static byte[] padPrefix(byte[] prefix, int length, byte fill) {
+        byte[] res = Arrays.copyOf(prefix, length);
+        Arrays.fill(res, prefix.length, length, fill);
+        return res;
+    }
+
     @Override
     public int compareTo(ByteArrayWrapper other) {
         if (data == null)
             return other.data == null ? 0 : -1;
 
-        int aLen = data.length;
-        int bLen = other.data.length;
+        return compare(data, data.length, other.data, other.data.length);
+    }
 
+    /**
+     * Compara os primeiros bytes de dois arrays na ordem de {@code compareTo}: primeiro pelo tamanho,
+     * depois pelos bytes com sinal. Permite comparar chaves em buffers reutilizáveis sem encapsulá-las.
+     *
+     * @param a    o primeiro array.
+     * @param aLen o tamanho da chave em {@code a}.
+     * @param b    o segundo array.
+     * @param bLen o tamanho da chave em {@code b}.
+     * @return negativo, zero ou positivo se a primeira chave for menor, igual ou maior que a segunda.
+     */
+    public static int compare(byte[] a, int aLen, byte[] b, int bLen) {
         if (aLen != bLen)
             return aLen < bLen ? -1 : 1;
 
         for (int i = 0; i < aLen; i++) {
-            byte aByte = data[i];
-            byte bByte = other.data[i];
+            byte aByte = a[i];
+            byte bByte = b[i];
             if (aByte != bByte)
                 return aByte < bByte ? -1 : 1;
         }
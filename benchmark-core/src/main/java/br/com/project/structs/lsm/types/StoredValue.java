@@ -0,0 +1,130 @@
+package br.com.project.structs.lsm.types;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Codificação dos valores gravados pela LSMTree nas Memtables e SSTables.
+ * Cada valor é precedido por um cabeçalho com metadados da escrita:
+ * |flags (1 byte)|instante de expiração (8 bytes, se houver)|conteúdo|
+ * O tombstone continua sendo o array vazio, sem cabeçalho.
+ * Valores com a flag de operando ({@link #encodeOperand(byte[])}) não são versões completas: precisam ser combinados
+ * com a versão anterior da chave pelo operador de merge.
+ * Valores com a flag de ponteiro ({@link #encodePointer(byte[], long)}) guardam, no lugar do conteúdo,
+ * a posição do conteúdo num log de valores.
+ */
+public final class StoredValue {
+
+    public static final long NO_EXPIRY = -1L;
+    public static final byte[] TOMBSTONE = new byte[]{};
+
+    static final byte FLAG_EXPIRES = 1;
+    static final byte FLAG_MERGE_OPERAND = 2;
+    static final byte FLAG_VALUE_POINTER = 4;
+
+    private StoredValue() {
+    }
+
+    /**
+     * Codifica um valor com o cabeçalho.
+     *
+     * @param payload   o conteúdo do valor.
+     * @param expiresAt o instante de expiração (em milissegundos desde a época), ou {@link #NO_EXPIRY}.
+     * @return o valor codificado.
+     */
+    public static byte[] encode(byte[] payload, long expiresAt) {
+        if (expiresAt == NO_EXPIRY) {
+            byte[] res = new byte[payload.length + 1];
+            System.arraycopy(payload, 0, res, 1, payload.length);
+            return res;
+        }
+
+        return ByteBuffer.allocate(1 + Long.BYTES + payload.length)
+                .put(FLAG_EXPIRES)
+                .putLong(expiresAt)
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * Codifica um operando de merge, que não expira.
+     *
+     * @param operand o conteúdo do operando.
+     * @return o operando codificado.
+     */
+    public static byte[] encodeOperand(byte[] operand) {
+        byte[] res = new byte[operand.length + 1];
+        res[0] = FLAG_MERGE_OPERAND;
+        System.arraycopy(operand, 0, res, 1, operand.length);
+        return res;
+    }
+
+    /**
+     * Verifica se um valor codificado é um operando de merge.
+     */
+    public static boolean isOperand(byte[] stored) {
+        return stored.length > 0 && (stored[0] & FLAG_MERGE_OPERAND) != 0;
+    }
+
+    /**
+     * Codifica um ponteiro para o conteúdo de um valor gravado fora da SSTable.
+     * A expiração continua no cabeçalho, então itens expirados são identificados sem a leitura do conteúdo.
+     *
+     * @param pointer   o ponteiro codificado.
+     * @param expiresAt o instante de expiração do valor, ou {@link #NO_EXPIRY}.
+     * @return o ponteiro codificado com o cabeçalho.
+     */
+    public static byte[] encodePointer(byte[] pointer, long expiresAt) {
+        byte[] res = encode(pointer, expiresAt);
+        res[0] |= FLAG_VALUE_POINTER;
+        return res;
+    }
+
+    /**
+     * Verifica se um valor codificado é um ponteiro para um log de valores.
+     */
+    public static boolean isPointer(byte[] stored) {
+        return stored.length > 0 && (stored[0] & FLAG_VALUE_POINTER) != 0;
+    }
+
+    /**
+     * Retorna o instante de expiração de um valor codificado.
+     *
+     * @param stored o valor codificado.
+     * @return o instante de expiração, ou {@link #NO_EXPIRY} se o valor não expira (ou for um tombstone).
+     */
+    public static long expiresAt(byte[] stored) {
+        if (stored.length == 0 || (stored[0] & FLAG_EXPIRES) == 0)
+            return NO_EXPIRY;
+        return ByteBuffer.wrap(stored, 1, Long.BYTES).getLong();
+    }
+
+    /**
+     * Verifica se um valor codificado já expirou no instante informado.
+     */
+    public static boolean isExpired(byte[] stored, long now) {
+        long expiresAt = expiresAt(stored);
+        return expiresAt != NO_EXPIRY && expiresAt <= now;
+    }
+
+    /**
+     * Verifica se o valor representa uma remoção: um tombstone ou um valor expirado.
+     */
+    public static boolean isDead(byte[] stored, long now) {
+        return stored.length == 0 || isExpired(stored, now);
+    }
+
+    /**
+     * Extrai o conteúdo de um valor codificado.
+     *
+     * @param stored o valor codificado (não pode ser um tombstone).
+     * @return o conteúdo, sem o cabeçalho.
+     */
+    public static byte[] payload(byte[] stored) {
+        return Arrays.copyOfRange(stored, headerSize(stored), stored.length);
+    }
+
+    static int headerSize(byte[] stored) {
+        return (stored[0] & FLAG_EXPIRES) == 0 ? 1 : 1 + Long.BYTES;
+    }
+}
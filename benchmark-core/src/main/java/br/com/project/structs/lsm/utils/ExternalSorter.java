@@ -0,0 +1,205 @@
+package br.com.project.structs.lsm.utils;
+
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Ordenação externa de itens, para conjuntos maiores que a memória disponível. Os itens adicionados são acumulados em
+ * memória até um orçamento de bytes; ao atingi-lo, são ordenados e gravados num arquivo temporário (uma execução),
+ * com {@link ExtendedOutputStream}. No final, as execuções e os itens ainda em memória são combinados por um
+ * {@link IteratorMerger} e entregues em ordem de chave, lidos do disco aos poucos, sem carregar as execuções inteiras.
+ * <p>
+ * A ordenação é estável: itens com a mesma chave saem na ordem em que foram adicionados. Com {@code distinct}, só o
+ * último item adicionado com cada chave é mantido.
+ * <p>
+ * Uso: {@link #add(ByteArrayPair)} para cada item, depois um único {@link #iterator()}, e por fim {@link #close()}
+ * para excluir as execuções.
+ */
+public class ExternalSorter implements Iterable<ByteArrayPair>, AutoCloseable {
+
+    static final String RUN_PREFIX = "run_";
+    static final String RUN_EXTENSION = ".sort";
+
+    private final String directory;
+    private final long memoryBudget;
+    private final boolean distinct;
+
+    private ObjectArrayList<ByteArrayPair> buffer = new ObjectArrayList<>();
+    private long bufferByteSize;
+    // execuções gravadas, da mais antiga para a mais recente
+    private final ObjectArrayList<Path> runs = new ObjectArrayList<>();
+    private final ObjectArrayList<ExtendedInputStream> openRuns = new ObjectArrayList<>();
+    private boolean iterated;
+
+    /**
+     * @param directory    o diretório dos arquivos temporários.
+     * @param memoryBudget o total de bytes de itens (chaves e valores) mantidos em memória antes de uma gravação.
+     * @param distinct     se só o último item de cada chave deve ser mantido.
+     */
+    public ExternalSorter(String directory, long memoryBudget, boolean distinct) {
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("O orçamento de memória deve ser positivo");
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        this.distinct = distinct;
+    }
+
+    /**
+     * Adiciona um item. Se o orçamento de memória for atingido, os itens em memória são gravados numa execução.
+     *
+     * @param item o item.
+     */
+    public void add(ByteArrayPair item) {
+        if (iterated)
+            throw new IllegalStateException("Itens não podem ser adicionados depois da leitura");
+
+        buffer.add(item);
+        bufferByteSize += item.size();
+        if (bufferByteSize >= memoryBudget)
+            spill();
+    }
+
+    /**
+     * Adiciona todos os itens de um iterador.
+     *
+     * @param items os itens.
+     */
+    public void addAll(Iterator<ByteArrayPair> items) {
+        while (items.hasNext())
+            add(items.next());
+    }
+
+    /**
+     * Retorna o número de execuções gravadas até agora.
+     */
+    public int runCount() {
+        return runs.size();
+    }
+
+    /**
+     * Retorna os itens em ordem de chave. Só pode ser chamado uma vez; os itens em memória não são gravados.
+     */
+    @Override
+    public Iterator<ByteArrayPair> iterator() {
+        if (iterated)
+            throw new IllegalStateException("Os itens ordenados só podem ser lidos uma vez");
+        iterated = true;
+
+        sortBuffer();
+        if (runs.isEmpty())
+            return buffer.iterator();
+
+        // as fontes vão da execução mais antiga para os itens em memória; o IteratorMerger entrega chaves iguais pela
+        // ordem das fontes, preservando a ordem de inserção, e com distinct o VersionMerger mantém a fonte mais recente
+        ObjectArrayList<Iterator<ByteArrayPair>> sources = new ObjectArrayList<>(runs.size() + 1);
+        for (Path run : runs) {
+            ExtendedInputStream is = new ExtendedInputStream(run.toString());
+            openRuns.add(is);
+            sources.add(new RunIterator(is));
+        }
+        sources.add(buffer.iterator());
+
+        @SuppressWarnings("unchecked")
+        Iterator<ByteArrayPair>[] array = (Iterator<ByteArrayPair>[]) sources.toArray(new Iterator<?>[0]);
+        if (!distinct)
+            return new IteratorMerger<>(ByteArrayPair.KEY_ORDER, array);
+
+        int[] priorities = new int[array.length];
+        for (int i = 0; i < priorities.length; i++)
+            priorities[i] = i;
+        return new VersionMerger<>(ByteArrayPair.KEY_ORDER, priorities, null, null, array);
+    }
+
+    /**
+     * Fecha e exclui as execuções gravadas.
+     */
+    @Override
+    public void close() {
+        openRuns.forEach(ExtendedInputStream::close);
+        openRuns.clear();
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        runs.clear();
+        buffer = new ObjectArrayList<>();
+        bufferByteSize = 0;
+    }
+
+    /**
+     * Ordena os itens em memória e, com {@code distinct}, remove as versões substituídas por itens posteriores.
+     */
+    private void sortBuffer() {
+        // a ordenação de ObjectArrayList é estável
+        buffer.sort(ByteArrayPair.KEY_ORDER);
+        if (!distinct || buffer.size() < 2)
+            return;
+
+        int kept = 0;
+        for (int i = 0; i < buffer.size(); i++) {
+            if (i + 1 < buffer.size() && ByteArrayPair.KEY_ORDER.compare(buffer.get(i), buffer.get(i + 1)) == 0)
+                continue;
+            buffer.set(kept++, buffer.get(i));
+        }
+        buffer.size(kept);
+    }
+
+    private void spill() {
+        sortBuffer();
+        Path run;
+        try {
+            run = Files.createTempFile(Paths.get(directory), RUN_PREFIX, RUN_EXTENSION);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ExtendedOutputStream os = new ExtendedOutputStream(run.toString());
+        for (ByteArrayPair item : buffer)
+            os.writeByteArrayPair(item);
+        os.close();
+        runs.add(run);
+
+        buffer = new ObjectArrayList<>();
+        bufferByteSize = 0;
+    }
+
+    /**
+     * Lê os itens de uma execução em sequência.
+     */
+    private static class RunIterator implements Iterator<ByteArrayPair> {
+
+        private final ExtendedInputStream is;
+        private ByteArrayPair next;
+
+        RunIterator(ExtendedInputStream is) {
+            this.is = is;
+            next = is.readBytePair();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public ByteArrayPair next() {
+            if (next == null)
+                throw new NoSuchElementException("Nenhum elemento restante na iteração.");
+
+            ByteArrayPair result = next;
+            next = is.readBytePair();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package br.com.project.structs.lsm.utils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Aplica uma transformação a cada elemento de um Iterator, descartando os elementos para os quais ela retorna null.
+ * O próximo elemento é calculado antecipadamente, de forma que {@code hasNext()} só retorna verdadeiro
+ * se ainda existir algum elemento não descartado.
+ *
+ * @param <T> O tipo dos elementos contidos no Iterator.
+ */
+public class FilterIterator<T> implements Iterator<T> {
+
+    private final Iterator<T> iterator;
+    private final UnaryOperator<T> filter;
+    private T next;
+
+    public FilterIterator(Iterator<T> iterator, UnaryOperator<T> filter) {
+        this.iterator = iterator;
+        this.filter = filter;
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (next == null) {
+            throw new NoSuchElementException("Nenhum elemento restante na iteração.");
+        }
+
+        T result = next;
+        advance();
+        return result;
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null && iterator.hasNext()) {
+            next = filter.apply(iterator.next());
+        }
+    }
+}
@@ -1,43 +1,145 @@
 package br.com.project.structs.lsm.utils;
 
-import it.unimi.dsi.fastutil.Pair;
-import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
-import it.unimi.dsi.fastutil.objects.ObjectIntMutablePair;
-
+import java.util.Comparator;
 import java.util.Iterator;
 
-import static java.util.Comparator.comparing;
-
 /**
  * Combina vários iteradores ordenados em um único iterador também ordenado.
- * A complexidade para acessar um único elemento é O(log n), sendo n o número de iteradores.
+ * Usa uma árvore de perdedores (torneio): cada nó interno guarda o índice do iterador que perdeu a disputa naquele
+ * nó, e a raiz o do vencedor. Depois de entregar um elemento, só o caminho do iterador vencedor até a raiz é
+ * disputado de novo, com exatamente ⌈log n⌉ comparações por elemento (n sendo o número de iteradores), contra até
+ * 2 log n de um heap, e sem criar objetos: os índices dos iteradores são inteiros primitivos.
+ * Elementos iguais saem em ordem decrescente de prioridade dos iteradores; sem prioridades explícitas, na ordem dos
+ * iteradores (o de menor índice primeiro). {@link #lastSource()} informa de qual iterador veio o último elemento.
  * Depois que todos os elementos dos iteradores forem processados, chamadas subsequentes ao método {@code next()} retornarão {@code null}.
  *
  * @param <T> O tipo dos itens armazenados nos iteradores.
  */
 public class IteratorMerger<T extends Comparable<T>> implements Iterator<T> {
 
-    Iterator<T>[] iterators;
-    ObjectHeapPriorityQueue<Pair<T, Integer>> queue;
+    private final Iterator<?>[] iterators;
+    private final Comparator<? super T> comparator;
+    // prioridade de cada iterador nos empates, ou null para a ordem dos iteradores
+    private final int[] priorities;
+    // elemento atual de cada iterador, ou null se ele terminou
+    private final Object[] heads;
+    // tree[0] é o vencedor; tree[1..n-1] são os perdedores dos nós internos; o iterador i é a folha n + i
+    private final int[] tree;
+    private int lastSource = -1;
 
     /**
-     * Constrói um {@code IteratorMerger} a partir de uma lista de Iterators ordenados.
-     * Os elementos serão extraídos de forma ordenada a partir dos Iterators fornecidos.
+     * Constrói um {@code IteratorMerger} a partir de uma lista de Iterators ordenados pela ordem natural dos elementos.
      *
      * @param iterators Lista de Iterators ordenados a serem mesclados.
      */
     @SafeVarargs
     public IteratorMerger(Iterator<T>... iterators) {
-        this.iterators = iterators;
-        queue = new ObjectHeapPriorityQueue<>(
-                comparing((Pair<T, Integer> a) -> a.first())
-                        .thenComparingInt(Pair::second)
-        );
-
-        for (int i = 0; i < iterators.length; i++) {
-            if (iterators[i].hasNext())
-                queue.enqueue(new ObjectIntMutablePair<>(iterators[i].next(), i));
+        this(Comparator.naturalOrder(), iterators);
+    }
+
+    /**
+     * Constrói um {@code IteratorMerger} a partir de uma lista de Iterators ordenados pelo comparador informado.
+     * Um comparador direto (como {@link br.com.project.structs.lsm.types.ByteArrayPair#KEY_ORDER}) evita os objetos
+     * criados por {@code compareTo}.
+     *
+     * @param comparator A ordem dos elementos nos Iterators.
+     * @param iterators  Lista de Iterators ordenados a serem mesclados.
+     */
+    @SafeVarargs
+    public IteratorMerger(Comparator<? super T> comparator, Iterator<T>... iterators) {
+        this(comparator, null, iterators);
+    }
+
+    /**
+     * Constrói um {@code IteratorMerger} que desempata elementos iguais pela prioridade de cada Iterator: o de maior
+     * prioridade sai primeiro, independentemente da posição dele na lista. Prioridades iguais são desempatadas pela
+     * ordem dos Iterators.
+     *
+     * @param comparator A ordem dos elementos nos Iterators.
+     * @param priorities A prioridade de cada Iterator, ou null para a ordem dos Iterators.
+     * @param iterators  Lista de Iterators ordenados a serem mesclados.
+     */
+    @SafeVarargs
+    public IteratorMerger(Comparator<? super T> comparator, int[] priorities, Iterator<T>... iterators) {
+        if (priorities != null && priorities.length != iterators.length)
+            throw new IllegalArgumentException("Deve haver uma prioridade para cada iterador");
+        int n = iterators.length;
+        this.iterators = new Iterator<?>[n];
+        this.comparator = comparator;
+        this.priorities = priorities;
+        heads = new Object[n];
+        tree = new int[Math.max(n, 1)];
+
+        for (int i = 0; i < n; i++) {
+            this.iterators[i] = iterators[i];
+            heads[i] = iterators[i].hasNext() ? iterators[i].next() : null;
         }
+        if (n > 0)
+            tree[0] = build(1);
+    }
+
+    /**
+     * Disputa o torneio da subárvore do nó, guardando os perdedores, e retorna o vencedor.
+     */
+    private int build(int node) {
+        int n = iterators.length;
+        if (node >= n)
+            return node - n;
+
+        int left = build(2 * node);
+        int right = build(2 * node + 1);
+        if (beats(left, right)) {
+            tree[node] = right;
+            return left;
+        }
+        tree[node] = left;
+        return right;
+    }
+
+    /**
+     * Retorna se o elemento atual do iterador a vem antes do de b; iteradores terminados perdem para todos.
+     */
+    private boolean beats(int a, int b) {
+        T x = head(a);
+        T y = head(b);
+        if (x == null)
+            return y == null && a < b;
+        if (y == null)
+            return true;
+
+        int cmp = comparator.compare(x, y);
+        if (cmp != 0)
+            return cmp < 0;
+        if (priorities != null && priorities[a] != priorities[b])
+            return priorities[a] > priorities[b];
+        return a < b;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T head(int i) {
+        return (T) heads[i];
+    }
+
+    /**
+     * Retorna o índice do Iterator de onde veio o último elemento retornado por {@link #next()}, ou -1 se nenhum
+     * elemento foi retornado.
+     */
+    public int lastSource() {
+        return lastSource;
+    }
+
+    /**
+     * Retorna o próximo elemento sem avançar nenhum Iterator, ou null se não houver mais elementos.
+     */
+    public T peek() {
+        return hasNext() ? head(tree[0]) : null;
+    }
+
+    /**
+     * Retorna o índice do Iterator de onde virá o próximo elemento, ou -1 se não houver mais elementos.
+     */
+    public int peekSource() {
+        return hasNext() ? tree[0] : -1;
     }
 
     /**
@@ -47,7 +149,7 @@ public class IteratorMerger<T extends Comparable<T>> implements Iterator<T> {
      */
     @Override
     public boolean hasNext() {
-        return !queue.isEmpty();
+        return heads.length > 0 && heads[tree[0]] != null;
     }
 
     /**
@@ -58,20 +160,23 @@ public class IteratorMerger<T extends Comparable<T>> implements Iterator<T> {
      */
     @Override
     public T next() {
-        if (queue.isEmpty())
+        if (!hasNext())
             return null;
 
-        Pair<T, Integer> top = queue.dequeue();
-
-        T result = top.first();
+        int winner = tree[0];
+        T result = head(winner);
+        lastSource = winner;
+        heads[winner] = iterators[winner].hasNext() ? iterators[winner].next() : null;
 
-        int index = top.second();
-        if (index == -1)
-            return result;
-
-        T next = iterators[index].next();
-        int newIndex = iterators[index].hasNext() ? index : -1;
-        queue.enqueue(top.first(next).second(newIndex));
+        // só o caminho da folha do vencedor até a raiz muda
+        for (int node = (winner + heads.length) >> 1; node > 0; node >>= 1) {
+            int loser = tree[node];
+            if (beats(loser, winner)) {
+                tree[node] = winner;
+                winner = loser;
+            }
+        }
+        tree[0] = winner;
 
         return result;
     }
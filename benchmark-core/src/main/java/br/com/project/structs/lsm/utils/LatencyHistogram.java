@@ -0,0 +1,94 @@
+package br.com.project.structs.lsm.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências com faixas log-lineares, no estilo do HdrHistogram: cada potência de 2 é dividida em
+ * 32 faixas de mesma largura, o que limita o erro relativo dos percentis a cerca de 3% para qualquer valor.
+ * O registro não usa locks (um incremento atômico na faixa e contadores {@link LongAdder}), e pode ser feito
+ * por várias threads ao mesmo tempo; as leituras são aproximadas enquanto houver registros concorrentes.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int HALF_SUB_BUCKETS = 1 << (SUB_BUCKET_BITS - 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(Long.MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Registra um valor (normalmente uma duração em nanossegundos). Valores negativos contam como 0.
+     *
+     * @param value o valor registrado.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get())
+            max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Retorna o valor do percentil: o maior valor da faixa que contém o item da posição correspondente.
+     *
+     * @param percentile o percentil, entre 0 e 100.
+     * @return o valor, ou 0 se nada foi registrado.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("O percentil deve estar entre 0 e 100");
+
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++)
+            total += counts.get(i);
+        if (total == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestValueOf(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Faixa do valor: valores menores que 2^SUB_BUCKET_BITS têm faixa própria; os demais são deslocados
+     * até caberem em SUB_BUCKET_BITS bits, e o deslocamento escolhe o grupo de faixas.
+     */
+    private static int index(long value) {
+        if (value < 2 * HALF_SUB_BUCKETS)
+            return (int) value;
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueOf(int index) {
+        if (index < 2 * HALF_SUB_BUCKETS)
+            return index;
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long top = index - (long) shift * HALF_SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
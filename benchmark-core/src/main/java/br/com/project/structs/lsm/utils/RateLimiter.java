@@ -0,0 +1,143 @@
+package br.com.project.structs.lsm.utils;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limitador de taxa do tipo token bucket, usado para controlar a vazão de I/O das execuções em segundo plano
+ * (descarregamento e compactação). As requisições consomem bytes do balde, que é reabastecido continuamente
+ * na taxa configurada; quando o saldo fica negativo, a thread que fez a requisição espera até quitá-lo.
+ * Esperas curtas são acumuladas no saldo em vez de executadas, de forma que requisições pequenas e frequentes
+ * não pagam o custo de uma suspensão cada.
+ * No modo de ajuste automático, a latência das leituras em primeiro plano é registrada com
+ * {@link #recordForegroundLatency(long)}: a cada intervalo de ajuste, a taxa é reduzida se a média do intervalo passa
+ * do alvo e volta a subir, até o valor configurado, quando a latência se normaliza. As latências são acumuladas sem
+ * lock, já que todas as leituras das famílias que compartilham o limitador passam por ali.
+ */
+public class RateLimiter {
+
+    static final long MIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    static final long TUNE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final double DECREASE_FACTOR = 0.8;
+    static final double INCREASE_FACTOR = 1.05;
+
+    private final long maxBytesPerSecond;
+    private double bytesPerSecond;
+    private double available;
+    private long lastRefill;
+
+    private volatile boolean autoTune;
+    private long targetLatencyNanos;
+    private long minBytesPerSecond;
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private volatile long lastTune;
+
+    /**
+     * Cria um limitador com a taxa informada. O balde comporta até um segundo de vazão.
+     *
+     * @param bytesPerSecond a taxa máxima, em bytes por segundo.
+     */
+    public RateLimiter(long bytesPerSecond) {
+        if (bytesPerSecond <= 0)
+            throw new IllegalArgumentException("A taxa deve ser maior que 0");
+        this.maxBytesPerSecond = bytesPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+        this.available = bytesPerSecond;
+        this.lastRefill = System.nanoTime();
+        this.lastTune = lastRefill;
+    }
+
+    /**
+     * Ativa o ajuste automático da taxa pela latência em primeiro plano.
+     *
+     * @param targetLatency     a latência média aceitável para as leituras em primeiro plano.
+     * @param minBytesPerSecond a menor taxa a que o limitador pode chegar.
+     * @return esta instância.
+     */
+    public synchronized RateLimiter autoTune(Duration targetLatency, long minBytesPerSecond) {
+        if (minBytesPerSecond <= 0 || minBytesPerSecond > maxBytesPerSecond)
+            throw new IllegalArgumentException("A taxa mínima deve estar entre 1 e a taxa máxima");
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.minBytesPerSecond = minBytesPerSecond;
+        this.autoTune = true;
+        return this;
+    }
+
+    /**
+     * Consome bytes do balde, esperando se o saldo ficar negativo.
+     * Se a thread for interrompida durante a espera, o retorno é imediato e a interrupção é preservada.
+     *
+     * @param bytes o número de bytes lidos ou escritos.
+     */
+    public void request(long bytes) {
+        long waitNanos;
+        synchronized (this) {
+            refill(System.nanoTime());
+            available -= bytes;
+            waitNanos = available >= 0 ? 0 : (long) (-available / bytesPerSecond * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        if (waitNanos < MIN_WAIT_NANOS)
+            return;
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registra a latência de uma operação em primeiro plano. Sem o ajuste automático, não faz nada. Só a operação
+     * que encerra um intervalo de ajuste adquire o lock do limitador.
+     *
+     * @param latencyNanos a latência, em nanossegundos.
+     */
+    public void recordForegroundLatency(long latencyNanos) {
+        if (!autoTune)
+            return;
+
+        latencySum.add(latencyNanos);
+        latencyCount.increment();
+
+        long now = System.nanoTime();
+        if (now - lastTune >= TUNE_INTERVAL_NANOS)
+            tune(now);
+    }
+
+    /**
+     * Ajusta a taxa pela latência média do intervalo que termina agora.
+     */
+    private synchronized void tune(long now) {
+        // outra thread pode ter encerrado o intervalo enquanto esta esperava o lock
+        if (now - lastTune < TUNE_INTERVAL_NANOS)
+            return;
+
+        lastTune = now;
+        // uma latência registrada entre as duas leituras pode ter soma e contagem em intervalos diferentes; o desvio é desprezível
+        long count = latencyCount.sumThenReset();
+        long sum = latencySum.sumThenReset();
+        if (count == 0)
+            return;
+
+        refill(now);
+        if ((double) sum / count > targetLatencyNanos)
+            bytesPerSecond = Math.max(minBytesPerSecond, bytesPerSecond * DECREASE_FACTOR);
+        else
+            bytesPerSecond = Math.min(maxBytesPerSecond, bytesPerSecond * INCREASE_FACTOR);
+    }
+
+    /**
+     * Retorna a taxa atual, em bytes por segundo.
+     */
+    public synchronized long getBytesPerSecond() {
+        return (long) bytesPerSecond;
+    }
+
+    private void refill(long now) {
+        available = Math.min(bytesPerSecond, available + (now - lastRefill) * bytesPerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,110 @@
+package br.com.project.structs.lsm.utils;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Combina vários iteradores ordenados em um único iterador com uma só versão de cada valor.
+ * As versões de um mesmo valor são ordenadas pela prioridade explícita de cada fonte (a maior é a mais recente), e
+ * não pela posição das fontes na lista, então reordenar as fontes não faz uma versão antiga reaparecer. Enquanto a
+ * versão acumulada for parcial ({@link Combiner}), ela é combinada com a próxima mais antiga; a partir da primeira
+ * versão completa, as demais são ignoradas. Opcionalmente, valores cuja versão final é uma remoção são omitidos.
+ * <p>
+ * Cada fonte deve estar em ordem estritamente crescente, sem valores repetidos (como Memtables e SSTables). Assim,
+ * um elemento que vem da mesma fonte que o anterior é sempre um valor novo, e só elementos de fontes diferentes
+ * precisam ser comparados para detectar versões. A comparação usa o comparador informado, sem passar por
+ * {@code compareTo}.
+ * <p>
+ * O próximo valor só é resolvido quando pedido, e as versões seguintes são consultadas sem avançar as fontes. Assim,
+ * quando um valor é retornado, cada fonte foi lida no máximo um elemento além dele, e uma fonte pode reutilizar os
+ * seus objetos: o elemento retornado só precisa continuar válido até a próxima chamada a {@code hasNext()} ou
+ * {@code next()}.
+ *
+ * @param <T> O tipo dos elementos contidos nos Iterators.
+ */
+public class VersionMerger<T extends Comparable<T>> implements Iterator<T> {
+
+    /**
+     * Regras de combinação das versões de um mesmo valor.
+     */
+    public interface Combiner<T> {
+
+        /**
+         * Verifica se a versão precisa ser combinada com as versões mais antigas.
+         */
+        boolean isPartial(T item);
+
+        /**
+         * Combina uma versão parcial com a versão imediatamente mais antiga.
+         */
+        T combine(T newer, T older);
+    }
+
+    private final IteratorMerger<T> merger;
+    private final Comparator<? super T> comparator;
+    private final Combiner<T> combiner;
+    private final Predicate<? super T> removed;
+    private T next;
+    private boolean resolved;
+
+    /**
+     * Constrói um {@code VersionMerger} com a prioridade de cada fonte.
+     *
+     * @param comparator A ordem dos elementos nas fontes.
+     * @param priorities A prioridade de cada fonte: entre versões de um mesmo valor, prevalece a da fonte de maior
+     *                   prioridade. Fontes que podem ter valores em comum devem ter prioridades diferentes.
+     * @param combiner   As regras de combinação das versões, ou null para manter apenas a mais recente.
+     * @param removed    Identifica as versões que representam remoções, a serem omitidas, ou null para manter todas.
+     * @param sources    As fontes.
+     */
+    @SafeVarargs
+    @SuppressWarnings("varargs") // o IteratorMerger copia as fontes e não guarda o array
+    public VersionMerger(Comparator<? super T> comparator, int[] priorities, Combiner<T> combiner,
+                         Predicate<? super T> removed, Iterator<T>... sources) {
+        if (priorities == null)
+            throw new IllegalArgumentException("As prioridades das fontes são obrigatórias");
+        this.merger = new IteratorMerger<>(comparator, priorities, sources);
+        this.comparator = comparator;
+        this.combiner = combiner;
+        this.removed = removed;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!resolved) {
+            next = resolve();
+            resolved = true;
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("Nenhum elemento restante na iteração.");
+        }
+
+        resolved = false;
+        return next;
+    }
+
+    private T resolve() {
+        while (merger.hasNext()) {
+            // o merger entrega as versões de um valor da fonte de maior prioridade para a de menor
+            T version = merger.next();
+            int source = merger.lastSource();
+            while (merger.hasNext() && merger.peekSource() != source
+                    && comparator.compare(version, merger.peek()) == 0) {
+                T older = merger.next();
+                if (combiner != null && combiner.isPartial(version))
+                    version = combiner.combine(version, older);
+            }
+
+            if (removed == null || !removed.test(version))
+                return version;
+        }
+        return null;
+    }
+}
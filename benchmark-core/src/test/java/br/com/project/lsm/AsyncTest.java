@@ -0,0 +1,175 @@
+package br.com.project.lsm;
+
+import br.com.project.entities.Pessoa;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.SecondaryIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    // intervalos longos: só as chamadas manuais descarregam e compactam
+    private static final long NEVER = 60 * 60 * 1000;
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static String text(byte[] value) {
+        return value == null ? null : new String(value);
+    }
+
+    @Test
+    void testMemtableHitsCompleteInline() throws IOException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("assincrono-memtable").toString(),
+                new ColumnFamilyOptions().memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            CompletableFuture<Void> put = lsm.putAsync("chave", "valor");
+            assertTrue(put.isDone());
+            assertFalse(put.isCompletedExceptionally());
+
+            CompletableFuture<byte[]> get = lsm.getAsync("chave");
+            assertTrue(get.isDone());
+            assertEquals("valor", text(get.join()));
+
+            // uma remoção na Memtable também resolve a busca sem acessar o disco
+            lsm.delete("chave");
+            get = lsm.getAsync("chave");
+            assertTrue(get.isDone());
+            assertNull(get.join());
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testDiskReadsCompleteOnIoExecutor() throws IOException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("assincrono-disco").toString(),
+                new ColumnFamilyOptions().memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            for (int i = 0; i < 100; i++)
+                lsm.add(String.format("chave-%03d", i), "disco-" + i);
+            lsm.flush(true);
+            lsm.add("chave-010", "memtable");
+
+            assertEquals("disco-20", text(lsm.getAsync("chave-020").join()));
+            assertNull(lsm.getAsync("ausente").join());
+
+            List<String> keys = List.of("chave-010", "ausente", "chave-099", "chave-000");
+            List<String> values = new ArrayList<>();
+            for (byte[] value : lsm.multiGetAsync(keys).join())
+                values.add(text(value));
+            assertEquals(Arrays.asList("memtable", null, "disco-99", "disco-0"), values);
+        } finally {
+            lsm.close();
+        }
+    }
+
+    @Test
+    void testIndexedPutsApplyInCallOrder() throws IOException {
+        LSMTree<String, Pessoa> lsm = new LSMTree<>(dataDir.resolve("assincrono-indice").toString(),
+                new ColumnFamilyOptions().memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            lsm.addIndex(new SecondaryIndex<>("idade", Pessoa::getIdade));
+
+            // escritas indexadas da mesma chave, uma logo depois da outra: a última chamada deve prevalecer
+            List<CompletableFuture<Void>> puts = new ArrayList<>();
+            for (int idade = 1; idade <= 500; idade++)
+                puts.add(lsm.putAsync("111.111.111-11", new Pessoa("João Silva", "111.111.111-11", idade,
+                        "+55 83 9 8888-8888", "15/05/1999")));
+            CompletableFuture.allOf(puts.toArray(new CompletableFuture[0])).join();
+
+            Pessoa atual = ObjectSerializer.convertBytesToObject(lsm.getAsync("111.111.111-11").join(), Pessoa.class);
+            assertEquals(500, atual.getIdade());
+            assertEquals(1, lsm.getByIndex("idade", 500).size());
+            assertTrue(lsm.getByIndexRange("idade", 1, 499).isEmpty());
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testMultiGetDuringCompaction() throws Exception {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("assincrono-compactacao").toString(),
+                new ColumnFamilyOptions().memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            // quatro tabelas sobrepostas: as buscas leem várias delas enquanto a compactação as substitui
+            List<String> keys = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < 200; i++) {
+                    if (i % 4 >= round) {
+                        lsm.add(String.format("chave-%03d", i), "valor-" + round + "-" + i);
+                        if (round == 0)
+                            keys.add(String.format("chave-%03d", i));
+                    }
+                }
+                lsm.flush(true);
+            }
+
+            Thread compaction = new Thread(() -> {
+                try {
+                    lsm.compactRange(null, null);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            compaction.start();
+            for (int attempt = 0; attempt < 5; attempt++) {
+                List<byte[]> values = lsm.multiGetAsync(keys).join();
+                for (int i = 0; i < 200; i++)
+                    assertEquals("valor-" + i % 4 + "-" + i, text(values.get(i)));
+            }
+            compaction.join();
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testCallsAfterCloseFail() throws IOException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("assincrono-encerrado").toString(),
+                new ColumnFamilyOptions().memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        lsm.add("chave", "valor");
+        assertEquals("valor", text(lsm.getAsync("chave").join()));
+        lsm.close();
+
+        // as chamadas não lançam exceções: os futuros é que falham
+        CompletableFuture<byte[]> get = lsm.getAsync("chave");
+        CompletableFuture<Void> put = lsm.putAsync("outra", "valor");
+        CompletableFuture<List<byte[]>> multiGet = lsm.multiGetAsync(List.of("chave", "outra"));
+        for (CompletableFuture<?> future : List.of(get, put, multiGet)) {
+            assertTrue(future.isCompletedExceptionally());
+            CompletionException e = assertThrows(CompletionException.class, future::join);
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.sstable.SSTableWriter;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.ReadTrace;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkLoadTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    private static final long NEVER = 60 * 60 * 1000;
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static ByteArrayPair item(int i, String value) {
+        return new ByteArrayPair(String.format("%05d", i).getBytes(), value.getBytes());
+    }
+
+    private static List<String> contents(List<SSTable> tables) {
+        List<String> res = new ArrayList<>();
+        for (SSTable table : tables)
+            table.forEach(item -> res.add(new String(item.key()) + "=" + new String(item.value())));
+        return res;
+    }
+
+    private static int fileCount(Path dir) {
+        String[] files = dir.toFile().list();
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    void testWriterChecksOrderAndSplitsTables() throws IOException {
+        Path dir = dataDir.resolve("escrita-ordenada");
+        Files.createDirectories(dir);
+        SSTableWriter writer = new SSTableWriter(dir.toString(), 4096, new SSTableOptions());
+
+        List<ByteArrayPair> items = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            items.add(item(i, "v" + i));
+            expected.add(String.format("%05d", i) + "=v" + i);
+        }
+        List<SSTable> tables = writer.writeSorted(items.iterator());
+        assertTrue(tables.size() > 1);
+        assertEquals(expected, contents(tables));
+
+        // uma chave repetida interrompe a escrita e não deixa arquivos para trás
+        int files = fileCount(dir);
+        items.add(1500, item(1499, "repetida"));
+        assertThrows(IllegalArgumentException.class, () -> writer.writeSorted(items.iterator()));
+        assertEquals(files, fileCount(dir));
+    }
+
+    @Test
+    void testUnsortedInputIsSortedExternally() throws IOException {
+        Path dir = dataDir.resolve("escrita-desordenada");
+        Files.createDirectories(dir);
+        SSTableWriter writer = new SSTableWriter(dir.toString(), 8192, new SSTableOptions());
+
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            items.add(item(i, "velho" + i));
+        Collections.shuffle(items, new Random(42));
+        // as versões escritas depois prevalecem, mesmo em outra execução
+        for (int i = 0; i < 3000; i += 7)
+            items.add(item(i, "novo" + i));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            expected.add(String.format("%05d", i) + "=" + (i % 7 == 0 ? "novo" : "velho") + i);
+
+        List<SSTable> tables = writer.writeUnsorted(items.iterator(), 4096);
+        assertEquals(expected, contents(tables));
+        // as execuções temporárias são excluídas
+        for (File file : dir.toFile().listFiles())
+            assertTrue(tables.stream().anyMatch(table -> file.getPath().startsWith(table.filename + ".")));
+    }
+
+    @Test
+    void testIngestFilesIntoTree() throws IOException {
+        Path external = dataDir.resolve("carga");
+        Files.createDirectories(external);
+        SSTableWriter writer = new SSTableWriter(external.toString(), 1024 * 1024, new SSTableOptions());
+
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("incorporacao").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            for (int i = 0; i < 100; i++)
+                lsm.add(String.format("a-%03d", i), "antigo-" + i);
+            lsm.flush(true);
+            lsm.add("a-050", "memtable");
+
+            List<ByteArrayPair> disjoint = new ArrayList<>();
+            List<ByteArrayPair> overlapping = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                disjoint.add(LSMTree.encodeItem(String.format("b-%03d", i), "carga-" + i));
+                if (i % 2 == 0)
+                    overlapping.add(LSMTree.encodeItem(String.format("a-%03d", i), "carga-" + i));
+            }
+            SSTable disjointTable = writer.writeSorted(disjoint.iterator()).get(0);
+            SSTable overlappingTable = writer.writeSorted(overlapping.iterator()).get(0);
+
+            // as duas tabelas de uma só vez não podem ter interseção entre si
+            assertThrows(IllegalArgumentException.class, () -> lsm.ingestFiles(List.of(overlappingTable.filename,
+                    writer.writeSorted(overlapping.iterator()).get(0).filename)));
+
+            lsm.ingestFiles(List.of(disjointTable.filename, overlappingTable.filename));
+            assertTrue(Files.exists(Paths.get(disjointTable.filename + SSTable.DATA_FILE_EXTENSION)));
+
+            for (int i = 0; i < 100; i++) {
+                assertEquals("carga-" + i, new String(lsm.get(String.format("b-%03d", i))));
+                assertEquals((i % 2 == 0 ? "carga-" : "antigo-") + i, new String(lsm.get(String.format("a-%03d", i))));
+            }
+
+            // sem interseção, a tabela vai para o último nível; com ela, fica acima da tabela descarregada
+            ReadTrace trace = new ReadTrace();
+            lsm.get("b-010", trace);
+            assertEquals(1, trace.getSteps().get(trace.getSteps().size() - 1).level());
+            trace = new ReadTrace();
+            lsm.get("a-010", trace);
+            assertEquals(0, trace.getSteps().get(trace.getSteps().size() - 1).level());
+        } finally {
+            lsm.stop();
+        }
+    }
+}
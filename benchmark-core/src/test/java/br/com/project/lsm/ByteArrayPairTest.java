@@ -40,6 +40,18 @@ public class ByteArrayPairTest {
         assertEquals(0, a.compareTo(new ByteArrayPair("a".getBytes(), new byte[]{99})));
     }
 
+    @Test
+    void testKeyOrderMatchesCompareTo() {
+        byte[][] keys = {"a".getBytes(), "b".getBytes(), "ab".getBytes(), new byte[]{-1}, new byte[]{1, -1}, {}};
+        for (byte[] x : keys) {
+            for (byte[] y : keys) {
+                ByteArrayPair a = new ByteArrayPair(x, new byte[]{1});
+                ByteArrayPair b = new ByteArrayPair(y, new byte[]{2});
+                assertEquals(Integer.signum(a.compareTo(b)), Integer.signum(ByteArrayPair.KEY_ORDER.compare(a, b)));
+            }
+        }
+    }
+
     @Test
     void testHashCodeUsesKeyOnly() {
         ByteArrayPair p1 = new ByteArrayPair("key".getBytes(), "value1".getBytes());
@@ -0,0 +1,150 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.CorruptedTableException;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChecksumTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static List<ByteArrayPair> items(int n) {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            items.add(new ByteArrayPair(String.format("%05d", i).getBytes(), ("valor-" + i).getBytes()));
+        return items;
+    }
+
+    /**
+     * Inverte os bits de um byte do arquivo.
+     */
+    private static void flipByte(String filename, long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(~b);
+        }
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testVerifyOnReadDetectsCorruptedBlock() throws IOException {
+        Path dir = dataDir.resolve("crc-leitura");
+        Files.createDirectories(dir);
+        SSTable table = new SSTable(dir.toString(), items(2000).iterator(), Long.MAX_VALUE,
+                new SSTableOptions().sampleSize(100).verifyChecksums(true));
+        table.verify();
+        for (int i = 0; i < 2000; i += 7)
+            assertArrayEquals(("valor-" + i).getBytes(), table.get(String.format("%05d", i).getBytes()));
+
+        // corrompe o valor do primeiro item: o primeiro bloco falha, os demais continuam legíveis
+        flipByte(table.filename + SSTable.DATA_FILE_EXTENSION, 10);
+        assertThrows(CorruptedTableException.class, () -> table.get("00050".getBytes()));
+        assertThrows(CorruptedTableException.class, () -> table.scan("00000".getBytes(), "00010".getBytes()));
+        assertArrayEquals("valor-1500".getBytes(), table.get("01500".getBytes()));
+        assertEquals(11, table.scan("01500".getBytes(), "01510".getBytes()).size());
+
+        CorruptedTableException e = assertThrows(CorruptedTableException.class, table::verify);
+        assertEquals(table.filename, e.getFilename());
+        table.close();
+    }
+
+    @Test
+    void testMetadataFilesAreVerified() throws IOException {
+        Path dir = dataDir.resolve("crc-metadados");
+        Files.createDirectories(dir);
+        SSTable table = new SSTable(dir.toString(), items(500).iterator(), Long.MAX_VALUE,
+                new SSTableOptions().hashIndex(true));
+        table.close();
+
+        // intacta, a tabela é aberta do disco normalmente
+        new SSTable(table.filename).close();
+
+        flipByte(table.filename + SSTable.BLOOM_FILE_EXTENSION, 20);
+        assertThrows(CorruptedTableException.class, () -> new SSTable(table.filename));
+    }
+
+    @Test
+    void testCompactionRejectsCorruptedInput() throws IOException {
+        Path dir = dataDir.resolve("crc-compactacao");
+        Files.createDirectories(dir);
+        // sem a verificação nas leituras, a compactação verifica mesmo assim
+        SSTable first = new SSTable(dir.toString(), items(1000).iterator(), Long.MAX_VALUE, new SSTableOptions());
+        SSTable second = new SSTable(dir.toString(), items(1000).iterator(), Long.MAX_VALUE, new SSTableOptions());
+        flipByte(second.filename + SSTable.DATA_FILE_EXTENSION, 5000);
+        long files = countFiles(dir);
+
+        assertThrows(CorruptedTableException.class,
+                () -> SSTable.sortedRun(dir.toString(), 4096, new SSTableOptions(), first, second));
+        // as tabelas parcialmente escritas são descartadas e as de entrada continuam no disco
+        assertEquals(files, countFiles(dir));
+        assertNotNull(first.get("00999".getBytes()));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void testVerifyAllReportsCorruptedTables() throws IOException, InterruptedException {
+        Path dir = dataDir.resolve("crc-arvore");
+        LSMTree<String, String> lsm = new LSMTree<>(dir.toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .maxLevelZeroSstNumber(1000), 10, 60_000);
+        try {
+            for (int i = 0; i < 100; i++)
+                lsm.add(String.format("chave-%04d", i), "valor-" + i);
+
+            // esperando os descarregamentos
+            Thread.sleep(300);
+            assertTrue(lsm.verifyAll().isEmpty());
+
+            String data;
+            try (Stream<Path> files = Files.list(dir)) {
+                data = files.map(Path::toString).filter(f -> f.endsWith(SSTable.DATA_FILE_EXTENSION)).findFirst().orElseThrow();
+            }
+            flipByte(data, 3);
+            String filename = data.substring(0, data.length() - SSTable.DATA_FILE_EXTENSION.length());
+            assertEquals(List.of(filename), lsm.verifyAll());
+        } finally {
+            lsm.stop();
+        }
+    }
+}
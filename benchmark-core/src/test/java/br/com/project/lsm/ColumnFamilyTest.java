@@ -0,0 +1,96 @@
+package br.com.project.lsm;
+
+import br.com.project.entities.Pessoa;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamily;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnFamilyTest {
+    private static LSMTree<String, Pessoa> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeEach
+    void setup() {
+        lsm = new LSMTree<>(dataDir.toString(), 300, 2, 1.75, 10, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testFamiliesAreIsolated() throws IOException {
+        ColumnFamily auditoria = lsm.createColumnFamily("auditoria", new ColumnFamilyOptions().memtableMaxByteSize(1000));
+        Pessoa pessoa = new Pessoa("Maria Souza", "123.456.789-00", 30, "+55 83 9 9999-9999", "10/10/1994");
+
+        lsm.add(pessoa.getCpf(), pessoa);
+        auditoria.add(pessoa.getCpf(), "cadastro");
+
+        assertEquals(pessoa.toString(), ObjectSerializer.convertBytesToObject(lsm.get(pessoa.getCpf()), Pessoa.class).toString());
+        assertEquals("cadastro", ObjectSerializer.convertBytesToObject(auditoria.get(pessoa.getCpf()), String.class));
+
+        auditoria.delete(pessoa.getCpf());
+        assertNull(auditoria.get(pessoa.getCpf()));
+        assertNotNull(lsm.get(pessoa.getCpf()));
+
+        assertSame(auditoria, lsm.getColumnFamily("auditoria"));
+        assertNull(lsm.getColumnFamily("inexistente"));
+        assertThrows(IllegalArgumentException.class, () -> lsm.createColumnFamily("auditoria", new ColumnFamilyOptions()));
+    }
+
+    @Test
+    void testFamilyFlushesToOwnDirectory() throws IOException, InterruptedException {
+        ColumnFamily eventos = lsm.createColumnFamily("eventos", new ColumnFamilyOptions()
+                .memtableMaxByteSize(100)
+                .tableOptions(new SSTableOptions().sampleSize(2).bloomFalsePositiveRate(0.01)));
+
+        for (int i = 0; i < 50; i++) {
+            eventos.add("evento-" + i, "detalhe do evento " + i);
+        }
+
+        // esperando para que o temporizador compartilhado chame o flush e o levelCompaction
+        Thread.sleep(300);
+
+        try (Stream<Path> stream = Files.list(dataDir.resolve("eventos"))) {
+            assertNotEquals(0, stream.count());
+        }
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals("detalhe do evento " + i, ObjectSerializer.convertBytesToObject(eventos.get("evento-" + i), String.class));
+        }
+        assertNull(lsm.get("evento-1"));
+    }
+}
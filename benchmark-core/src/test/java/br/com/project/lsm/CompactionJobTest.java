@@ -0,0 +1,169 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.CompactionFilter;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactionJobTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static List<ByteArrayPair> items(int from, int to, int step, String prefix) {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = from; i < to; i += step)
+            items.add(new ByteArrayPair(String.format("%05d", i).getBytes(), (prefix + i).getBytes()));
+        return items;
+    }
+
+    private static List<String> contents(List<SSTable> tables) {
+        List<String> res = new ArrayList<>();
+        for (SSTable table : tables)
+            table.forEach(item -> res.add(new String(item.key()) + "=" + new String(item.value())));
+        return res;
+    }
+
+    @Test
+    void testReopenedTableIsReadable() throws IOException {
+        Path dir = dataDir.resolve("reabertura");
+        Files.createDirectories(dir);
+        for (SSTableOptions options : List.of(new SSTableOptions().sampleSize(10),
+                new SSTableOptions().sampleSize(10).indexPartitionSize(4))) {
+            SSTable written = new SSTable(dir.toString(), items(10, 2000, 3, "v").iterator(), Long.MAX_VALUE, options);
+            written.close();
+
+            SSTable table = new SSTable(written.filename);
+            assertArrayEquals("00010".getBytes(), table.getMinKey());
+            assertArrayEquals("01999".getBytes(), table.getMaxKey());
+            assertArrayEquals("v1000".getBytes(), table.get("01000".getBytes()));
+            assertNull(table.get("01001".getBytes()));
+            assertNull(table.get("00001".getBytes()));
+            assertEquals(4, table.scan("00100".getBytes(), "00110".getBytes()).size());
+            assertEquals(664, contents(List.of(table)).size());
+            assertEquals("01000=v1000", contents(List.of(table)).get(330));
+            table.verify();
+            table.close();
+        }
+    }
+
+    @Test
+    void testInterruptedMergeResumesFromCheckpoint() throws IOException {
+        Path dir = dataDir.resolve("retomada");
+        Files.createDirectories(dir);
+        SSTable newer = new SSTable(dir.toString(), items(0, 3000, 2, "novo").iterator(), Long.MAX_VALUE, new SSTableOptions().sampleSize(20));
+        SSTable older = new SSTable(dir.toString(), items(0, 3000, 3, "velho").iterator(), Long.MAX_VALUE, new SSTableOptions().sampleSize(20));
+
+        List<String> expected = contents(SSTable.sortedRun(dir.toString(), 4096, new SSTableOptions(),
+                newer, older));
+
+        // a primeira tentativa cai depois de concluir duas tabelas
+        ObjectArrayList<SSTable> done = new ObjectArrayList<>();
+        assertThrows(IllegalStateException.class, () -> SSTable.sortedRun(dir.toString(), 4096, new SSTableOptions(), null,
+                CompactionFilter.KEEP_ALL, null, table -> {
+                    done.add(table);
+                    if (done.size() == 2)
+                        throw new IllegalStateException("queda simulada");
+                }, new int[]{2, 1}, newer, older));
+        assertEquals(2, done.size());
+
+        // a retomada continua depois da maior chave já escrita, sem repetir nem perder itens; a versão de cada chave
+        // vem da prioridade das tabelas, e não da ordem em que são passadas
+        List<SSTable> rest = SSTable.sortedRun(dir.toString(), 4096, new SSTableOptions(), null, CompactionFilter.KEEP_ALL,
+                done.get(1).getMaxKey(), table -> {
+                }, new int[]{1, 2}, older, newer);
+        List<SSTable> all = new ArrayList<>(done);
+        all.addAll(rest);
+        assertEquals(expected, contents(all));
+    }
+
+    @Test
+    void testTreeRecoversTablesAfterRestart() throws IOException, InterruptedException {
+        Path dir = dataDir.resolve("recuperacao");
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .maxLevelZeroSstNumber(2)
+                .recover(true);
+
+        LSMTree<String, String> lsm = new LSMTree<>(dir.toString(), options, 10, 50);
+        try {
+            for (int i = 0; i < 300; i++)
+                lsm.add(String.format("chave-%04d", i), "valor-" + i);
+            for (int i = 0; i < 300; i += 3)
+                lsm.delete(String.format("chave-%04d", i));
+            // força a troca da Memtable, para que tudo chegue ao disco; os tombstones não podem ficar de fora
+            lsm.add("zzz", "x".repeat(600));
+            Thread.sleep(500);
+            for (int i = 0; i < 300; i += 3)
+                assertNull(lsm.get(String.format("chave-%04d", i)));
+        } finally {
+            // sem log de escrita, só o encerramento ordenado garante que as Memtables cheguem ao disco
+            lsm.close();
+        }
+
+        // restos de um descarregamento interrompido, que o manifesto não cita
+        Path orphan = dir.resolve("sst_999999" + SSTable.DATA_FILE_EXTENSION);
+        Files.write(orphan, new byte[100]);
+
+        lsm = new LSMTree<>(dir.toString(), options, 10, 50);
+        try {
+            assertFalse(Files.exists(orphan));
+            for (int i = 0; i < 300; i++) {
+                String key = String.format("chave-%04d", i);
+                if (i % 3 == 0)
+                    assertNull(lsm.get(key));
+                else
+                    assertArrayEquals(("valor-" + i).getBytes(), lsm.get(key));
+            }
+
+            // as tabelas novas não sobrescrevem as reabertas
+            for (int i = 0; i < 300; i++)
+                lsm.add(String.format("outra-%04d", i), "valor-" + i);
+            lsm.add("zzz", "y".repeat(600));
+            Thread.sleep(500);
+        } finally {
+            lsm.close();
+        }
+
+        lsm = new LSMTree<>(dir.toString(), options, 10, 50);
+        try {
+            for (int i = 1; i < 300; i += 3) {
+                assertArrayEquals(("valor-" + i).getBytes(), lsm.get(String.format("chave-%04d", i)));
+                assertArrayEquals(("valor-" + i).getBytes(), lsm.get(String.format("outra-%04d", i)));
+            }
+            assertTrue(lsm.verifyAll().isEmpty());
+        } finally {
+            lsm.stop();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.io.EntryBuffer;
+import br.com.project.structs.lsm.io.ExtendedInputStream;
+import br.com.project.structs.lsm.io.ExtendedOutputStream;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtendedStreamTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static String newFile(String name) throws IOException {
+        Files.createDirectories(dataDir);
+        return dataDir.resolve(name).toString();
+    }
+
+    @Test
+    void testVByteAndLongRoundTripAcrossBufferBoundaries() throws IOException {
+        String filename = newFile("vbytes");
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE - 1, 1L << 40, Long.MAX_VALUE - 1};
+
+        ExtendedOutputStream os = new ExtendedOutputStream(filename);
+        for (int i = 0; i < 100; i++) {
+            for (long v : values)
+                os.writeVByteLong(v);
+            os.writeLong(-i);
+        }
+        os.close();
+
+        // buffer pequeno para que os valores fiquem divididos entre duas leituras do arquivo
+        ExtendedInputStream is = new ExtendedInputStream(filename, 7);
+        for (int i = 0; i < 100; i++) {
+            for (long v : values)
+                assertEquals(v, is.readVByteLong());
+            assertEquals(-i, is.readLong());
+        }
+        assertEquals(-1, is.readByteInt());
+        is.close();
+    }
+
+    @Test
+    void testCompareAndReadEntryIntoReusableBuffers() throws IOException {
+        String filename = newFile("entries");
+        ExtendedOutputStream os = new ExtendedOutputStream(filename);
+        for (int i = 0; i < 50; i++)
+            os.writeByteArrayPair(new ByteArrayPair(("chave-" + i).getBytes(), new byte[i * 20]));
+        os.close();
+
+        ExtendedInputStream is = new ExtendedInputStream(filename, 16);
+        EntryBuffer entry = new EntryBuffer();
+        byte[] key = null;
+        for (int i = 0; i < 50; i++) {
+            assertTrue(is.readEntry(entry));
+            assertEquals(0, entry.compareKey(("chave-" + i).getBytes()));
+            assertEquals(i * 20, entry.getValueLength());
+            // o array da chave nunca precisa crescer e é reutilizado
+            if (i > 0)
+                assertSame(key, entry.getKey());
+            key = entry.getKey();
+        }
+        assertFalse(is.readEntry(entry));
+        assertNull(is.readBytePair());
+
+        is.seek(0);
+        assertEquals("chave-0".length(), is.readVByteInt());
+        int valueLength = is.readVByteInt();
+        assertEquals(0, is.compareNext("chave-0".getBytes()));
+        is.skip(valueLength);
+        is.readVByteInt();
+        is.readVByteInt();
+        assertTrue(is.compareNext("chave-0".getBytes()) < 0);
+
+        // volta para uma posição que não está mais no buffer
+        is.seek(0);
+        ByteArrayPair first = is.readBytePair();
+        assertArrayEquals("chave-0".getBytes(), first.key());
+        byte[] copy = new byte[4];
+        is.seek(2);
+        is.readFully(copy, 0, 4);
+        assertArrayEquals(Arrays.copyOfRange("chave-0".getBytes(), 0, 4), copy);
+        is.close();
+    }
+
+    @Test
+    void testConcurrentWritersKeepTheirOwnVByteState() throws Exception {
+        int writers = 4;
+        int n = 20_000;
+        String[] filenames = new String[writers];
+        Thread[] threads = new Thread[writers];
+        for (int t = 0; t < writers; t++) {
+            filenames[t] = newFile("concurrent-" + t);
+            int writer = t;
+            threads[t] = new Thread(() -> {
+                // buffer pequeno: itens maiores que o buffer vão direto para o arquivo
+                ExtendedOutputStream os = new ExtendedOutputStream(filenames[writer], 32);
+                for (int i = 0; i < n; i++) {
+                    os.writeVByteLong((long) writer << 40 | i);
+                    os.writeByteArrayPair(new ByteArrayPair(("k" + i).getBytes(), new byte[i % 50]));
+                }
+                os.close();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        for (int t = 0; t < writers; t++) {
+            ExtendedInputStream is = new ExtendedInputStream(filenames[t]);
+            for (int i = 0; i < n; i++) {
+                assertEquals((long) t << 40 | i, is.readVByteLong());
+                ByteArrayPair pair = is.readBytePair();
+                assertArrayEquals(("k" + i).getBytes(), pair.key());
+                assertEquals(i % 50, pair.value().length);
+            }
+            assertNull(is.readBytePair());
+            is.close();
+        }
+    }
+
+    @Test
+    void testDirectIoWriterKeepsExactContentAndSize() throws IOException {
+        String filename = newFile("direto");
+        byte[] large = new byte[3 * 1024 * 1024 + 123];
+        for (int i = 0; i < large.length; i++)
+            large[i] = (byte) (i * 31);
+
+        // com ou sem suporte a O_DIRECT no sistema de arquivos, o conteúdo e o tamanho devem ser exatos
+        ExtendedOutputStream os = new ExtendedOutputStream(filename, true);
+        for (int i = 0; i < 1000; i++)
+            os.writeVByteInt(i);
+        os.write(large);
+        os.writeLong(42L);
+        os.close();
+
+        ExtendedInputStream is = new ExtendedInputStream(filename);
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i, is.readVByteInt());
+        assertArrayEquals(large, is.readNBytes(large.length));
+        assertEquals(42L, is.readLong());
+        assertEquals(-1, is.readByteInt());
+        is.close();
+    }
+
+    @Test
+    void testDirectIoPerLevel() throws IOException, InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> new ColumnFamilyOptions().directIoFromLevel(-2));
+        Files.createDirectories(dataDir);
+
+        SSTable table = new SSTable(dataDir.toString(), List.of(new ByteArrayPair("a".getBytes(), "1".getBytes()),
+                new ByteArrayPair("b".getBytes(), "2".getBytes())).iterator(), Long.MAX_VALUE,
+                new SSTableOptions().directIo(true));
+        assertArrayEquals("2".getBytes(), table.get("b".getBytes()));
+        table.close();
+
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("direto-niveis").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .directIoFromLevel(1), 10, 50);
+        try {
+            for (int i = 0; i < 300; i++)
+                lsm.add(String.format("chave-%04d", i), "valor-" + i);
+
+            // esperando descarregamentos e compactações para níveis escritos sem o cache de páginas
+            Thread.sleep(300);
+
+            for (int i = 0; i < 300; i++)
+                assertArrayEquals(("valor-" + i).getBytes(), lsm.get(String.format("chave-%04d", i)));
+        } finally {
+            lsm.stop();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.utils.ExternalSorter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExternalSorterTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static List<ByteArrayPair> shuffledItems(int n, String prefix) {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            items.add(new ByteArrayPair(String.format("%05d", i).getBytes(), (prefix + i).getBytes()));
+        Collections.shuffle(items, new Random(7));
+        return items;
+    }
+
+    private static List<String> drain(Iterator<ByteArrayPair> it) {
+        List<String> res = new ArrayList<>();
+        while (it.hasNext()) {
+            ByteArrayPair item = it.next();
+            res.add(new String(item.key()) + "=" + new String(item.value()));
+        }
+        return res;
+    }
+
+    private static long fileCount(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testSortsAcrossSpilledRunsAndKeepsOrderOfEqualKeys() throws IOException {
+        Path dir = dataDir.resolve("ordenacao");
+        Files.createDirectories(dir);
+
+        List<ByteArrayPair> items = shuffledItems(5000, "a");
+        items.addAll(shuffledItems(5000, "b"));
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            expected.add(String.format("%05d", i) + "=a" + i);
+            expected.add(String.format("%05d", i) + "=b" + i);
+        }
+
+        try (ExternalSorter sorter = new ExternalSorter(dir.toString(), 8 * 1024, false)) {
+            sorter.addAll(items.iterator());
+            assertTrue(sorter.runCount() > 5);
+            assertEquals(sorter.runCount(), fileCount(dir));
+
+            // itens com a mesma chave saem na ordem em que foram adicionados, mesmo em execuções diferentes
+            assertEquals(expected, drain(sorter.iterator()));
+            assertThrows(IllegalStateException.class, sorter::iterator);
+        }
+        assertEquals(0, fileCount(dir));
+    }
+
+    @Test
+    void testDistinctKeepsLastItemOfEachKey() throws IOException {
+        Path dir = dataDir.resolve("distintos");
+        Files.createDirectories(dir);
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; i++)
+            expected.add(String.format("%05d", i) + "=" + (i % 5 == 0 ? "c" : "b") + i);
+
+        for (long budget : new long[]{Long.MAX_VALUE, 8 * 1024}) {
+            try (ExternalSorter sorter = new ExternalSorter(dir.toString(), budget, true)) {
+                sorter.addAll(shuffledItems(3000, "a").iterator());
+                sorter.addAll(shuffledItems(3000, "b").iterator());
+                for (int i = 0; i < 3000; i += 5)
+                    sorter.add(new ByteArrayPair(String.format("%05d", i).getBytes(), ("c" + i).getBytes()));
+
+                if (budget == Long.MAX_VALUE)
+                    assertEquals(0, sorter.runCount());
+                else
+                    assertTrue(sorter.runCount() > 1);
+                assertEquals(expected, drain(sorter.iterator()));
+            }
+        }
+        assertEquals(0, fileCount(dir));
+    }
+}
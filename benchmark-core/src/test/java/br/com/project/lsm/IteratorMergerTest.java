@@ -0,0 +1,66 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.utils.IteratorMerger;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IteratorMergerTest {
+
+    @Test
+    void testEmpty() {
+        IteratorMerger<Integer> merger = new IteratorMerger<>();
+        assertFalse(merger.hasNext());
+        assertNull(merger.next());
+
+        merger = new IteratorMerger<>(List.<Integer>of().iterator(), List.<Integer>of().iterator());
+        assertFalse(merger.hasNext());
+        assertNull(merger.next());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMergesInOrderAndBreaksTiesBySource() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            int sourceCount = random.nextInt(10);
+            List<List<ByteArrayPair>> sources = new ArrayList<>();
+            List<String> expected = new ArrayList<>();
+            for (int s = 0; s < sourceCount; s++) {
+                List<ByteArrayPair> source = new ArrayList<>();
+                int key = 0;
+                for (int i = random.nextInt(30); i > 0; i--) {
+                    key += random.nextInt(3);
+                    source.add(new ByteArrayPair(String.format("%03d", key).getBytes(), (s + "-" + i).getBytes()));
+                }
+                sources.add(source);
+            }
+
+            // referência: chaves em ordem e, para chaves iguais, a fonte de menor índice primeiro
+            for (int key = 0; key < 1000; key++) {
+                for (List<ByteArrayPair> source : sources) {
+                    for (ByteArrayPair item : source) {
+                        if (new String(item.key()).equals(String.format("%03d", key)))
+                            expected.add(new String(item.key()) + "=" + new String(item.value()));
+                    }
+                }
+            }
+
+            Iterator<ByteArrayPair>[] iterators = sources.stream().map(List::iterator).toArray(Iterator[]::new);
+            IteratorMerger<ByteArrayPair> merger = new IteratorMerger<>(ByteArrayPair.KEY_ORDER, iterators);
+            List<String> actual = new ArrayList<>();
+            while (merger.hasNext()) {
+                ByteArrayPair item = merger.next();
+                actual.add(new String(item.key()) + "=" + new String(item.value()));
+            }
+            assertEquals(expected, actual);
+            assertNull(merger.next());
+        }
+    }
+}
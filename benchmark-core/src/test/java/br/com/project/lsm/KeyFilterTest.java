@@ -0,0 +1,100 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.KeyFilter;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyFilterTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testXorFilterHasNoFalseNegativesAndExpectedFalsePositiveRate() {
+        int n = 20_000;
+        KeyFilter.Builder builder = KeyFilter.builder(KeyFilter.Type.XOR, 0.001);
+        for (int i = 0; i < n; i++)
+            builder.add(("chave-" + i).getBytes());
+        // chaves repetidas não impedem a construção
+        builder.add("chave-0".getBytes());
+        KeyFilter filter = builder.build();
+
+        for (int i = 0; i < n; i++)
+            assertTrue(filter.mightContain(("chave-" + i).getBytes()));
+
+        int falsePositives = 0;
+        for (int i = 0; i < n * 5; i++) {
+            if (filter.mightContain(("ausente-" + i).getBytes()))
+                falsePositives++;
+        }
+        // 10 bits por impressão digital: 2^-10 ≈ 0,098%
+        assertTrue(falsePositives / (n * 5.0) < 0.002);
+
+        // ~1,23 · 10 bits por chave, abaixo dos ~14,4 do filtro de Bloom com a mesma taxa
+        assertTrue(filter.bitSize() / (double) n < 13);
+    }
+
+    @Test
+    void testFilterTypeIsReadBackFromFile() throws IOException {
+        Files.createDirectories(dataDir);
+        for (KeyFilter.Type type : KeyFilter.Type.values()) {
+            KeyFilter.Builder builder = KeyFilter.builder(type, 0.01);
+            for (int i = 0; i < 1000; i++)
+                builder.add(("chave-" + i).getBytes());
+            KeyFilter filter = builder.build();
+
+            String filename = dataDir.resolve("filtro-" + type).toString();
+            filter.writeToFile(filename);
+            KeyFilter read = KeyFilter.readFromFile(filename);
+
+            assertEquals(filter.getClass(), read.getClass());
+            assertEquals(filter.bitSize(), read.bitSize());
+            for (int i = 0; i < 1000; i++)
+                assertTrue(read.mightContain(("chave-" + i).getBytes()));
+        }
+    }
+
+    @Test
+    void testSSTableWithXorFilter() throws IOException {
+        Files.createDirectories(dataDir);
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            items.add(new ByteArrayPair(String.format("%04d", i).getBytes(), ("valor-" + i).getBytes()));
+
+        SSTableOptions options = new SSTableOptions().filterType(KeyFilter.Type.XOR);
+        SSTable table = new SSTable(dataDir.toString(), items.iterator(), Long.MAX_VALUE, options);
+
+        for (int i = 0; i < 500; i++)
+            assertArrayEquals(("valor-" + i).getBytes(), table.get(String.format("%04d", i).getBytes()));
+        assertNull(table.get("9999".getBytes()));
+        table.close();
+    }
+}
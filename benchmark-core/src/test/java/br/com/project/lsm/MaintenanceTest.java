@@ -0,0 +1,134 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.TableProbe;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.ReadTrace;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MaintenanceTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    // intervalos longos: só as chamadas manuais descarregam e compactam
+    private static final long NEVER = 60 * 60 * 1000;
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static ReadTrace trace(LSMTree<String, String> lsm, String key) throws IOException {
+        ReadTrace trace = new ReadTrace();
+        lsm.get(key, trace);
+        return trace;
+    }
+
+    /**
+     * Número de tabelas em que a busca consultou o filtro ou os dados.
+     */
+    private static long tablesRead(ReadTrace trace) {
+        return trace.getSteps().stream()
+                .filter(step -> step.table() != null && step.table().getOutcome() != TableProbe.Outcome.OUT_OF_RANGE)
+                .count();
+    }
+
+    @Test
+    void testFlushWritesMutableMemtable() throws IOException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("flush").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            for (int i = 0; i < 50; i++)
+                lsm.add(String.format("chave-%03d", i), "valor-" + i);
+            assertEquals(0, trace(lsm, "chave-010").getTablesProbed());
+
+            lsm.flush(true);
+            ReadTrace trace = trace(lsm, "chave-010");
+            assertTrue(trace.isFound());
+            assertEquals(ReadTrace.Source.SSTABLE, trace.getSteps().get(trace.getSteps().size() - 1).source());
+
+            // sem itens novos, não há o que descarregar
+            lsm.flush(true);
+            assertEquals(1, trace(lsm, "chave-010").getTablesProbed());
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testCompactRange() throws IOException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("intervalo").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(1024 * 1024), NEVER, NEVER);
+        try {
+            // cada rodada vira uma tabela do nível 0, todas sobrepostas; só a primeira grava chave-051,
+            // e as buscas por ela passam por todas as tabelas
+            for (int round = 0; round < 4; round++) {
+                for (int i = 0; i < 100; i++)
+                    if (round == 0 || i != 51)
+                        lsm.add(String.format("chave-%03d", i), "valor-" + round + "-" + i);
+                lsm.flush(true);
+            }
+            for (int i = 0; i < 100; i += 2)
+                lsm.delete(String.format("chave-%03d", i));
+            lsm.flush(true);
+            assertEquals(5, tablesRead(trace(lsm, "chave-051")));
+
+            lsm.compactRange("chave-040", "chave-059");
+            assertEquals(1, tablesRead(trace(lsm, "chave-051")));
+            // as tabelas do nível 0 cobrem todas as chaves, então o intervalo cresce até elas
+            assertEquals(1, tablesRead(trace(lsm, "chave-091")));
+            assertEquals("valor-0-51", new String(lsm.get("chave-051")));
+
+            lsm.compactRange(null, null);
+            for (int i = 0; i < 100; i++) {
+                String key = String.format("chave-%03d", i);
+                if (i % 2 == 0)
+                    assertNull(lsm.get(key));
+                else
+                    assertArrayEquals(((i == 51 ? "valor-0-" : "valor-3-") + i).getBytes(), lsm.get(key));
+            }
+            assertThrows(IllegalArgumentException.class, () -> lsm.compactRange("chave-059", "chave-040"));
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testCloseKeepsItemsForRestart() throws IOException {
+        Path dir = dataDir.resolve("encerramento");
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .memtableMaxByteSize(2000)
+                .recover(true);
+
+        LSMTree<String, String> lsm = new LSMTree<>(dir.toString(), options, NEVER, NEVER);
+        // parte dos itens fica em Memtables imutáveis e o restante na mutável
+        for (int i = 0; i < 300; i++)
+            lsm.add(String.format("chave-%03d", i), "valor-" + i);
+        lsm.close();
+
+        try (LSMTree<String, String> reopened = new LSMTree<>(dir.toString(), options, NEVER, NEVER)) {
+            for (int i = 0; i < 300; i++)
+                assertArrayEquals(("valor-" + i).getBytes(), reopened.get(String.format("chave-%03d", i)));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.MergeOperator;
+import br.com.project.structs.lsm.tree.SecondaryIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MergeOperatorTest {
+    private static LSMTree<String, Integer> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeEach
+    void setup() {
+        lsm = new LSMTree<>(dataDir.toString(), 300, 2, 1.75, 10, 50);
+        lsm.setMergeOperator(MergeOperator.of(Integer.class, Integer::sum));
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private int getInt(String key) throws IOException {
+        return ObjectSerializer.convertBytesToObject(lsm.get(key), Integer.class);
+    }
+
+    @Test
+    void testMergeWithoutBaseValue() throws IOException {
+        lsm.merge("contador", 5);
+        lsm.merge("contador", 3);
+
+        assertEquals(8, getInt("contador"));
+    }
+
+    @Test
+    void testMergeAcrossFlushesAndCompactions() throws IOException, InterruptedException {
+        lsm.add("contador", 100);
+        for (int i = 0; i < 200; i++) {
+            lsm.merge("contador", 1);
+            // outras chaves para encher as Memtables e forçar descarregamentos
+            lsm.add("chave-" + i, i);
+            if (i % 50 == 0)
+                Thread.sleep(30);
+        }
+
+        assertEquals(300, getInt("contador"));
+
+        // esperando a compactação combinar os operandos nas SSTables
+        Thread.sleep(300);
+
+        assertEquals(300, getInt("contador"));
+        assertEquals(199, getInt("chave-199"));
+    }
+
+    @Test
+    void testMergeAfterDeleteAndTtl() throws IOException, InterruptedException {
+        lsm.add("removido", 10);
+        lsm.delete("removido");
+        lsm.merge("removido", 2);
+        assertEquals(2, getInt("removido"));
+
+        lsm.add("temporario", 10, Duration.ofMillis(100));
+        lsm.merge("temporario", 1);
+        assertEquals(11, getInt("temporario"));
+
+        Thread.sleep(200);
+
+        // o valor combinado mantém a expiração do valor base
+        assertNull(lsm.get("temporario"));
+        lsm.merge("temporario", 1);
+        assertEquals(1, getInt("temporario"));
+    }
+
+    @Test
+    void testMergeRequiresOperatorAndNoIndexes() {
+        LSMTree<String, Integer> other = new LSMTree<>(dataDir.resolve("sem-operador").toString(), 300, 2, 1.75, 10, 50);
+        try {
+            assertThrows(IllegalStateException.class, () -> other.merge("contador", 1));
+        } finally {
+            other.stop();
+        }
+
+        lsm.addIndex(new SecondaryIndex<>("valor", v -> v));
+        assertThrows(IllegalStateException.class, () -> lsm.merge("contador", 1));
+    }
+}
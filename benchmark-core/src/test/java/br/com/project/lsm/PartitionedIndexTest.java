@@ -0,0 +1,186 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.IndexCache;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedIndexTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Files.createDirectories(dataDir);
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static List<ByteArrayPair> items(int n) {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < n; i++)
+            items.add(new ByteArrayPair(String.format("%05d", i).getBytes(), ("valor-" + i).getBytes()));
+        return items;
+    }
+
+    @Test
+    void testPackedIndexLookups() {
+        SSTable table = new SSTable(dataDir.toString(), items(1000).iterator(), Long.MAX_VALUE, new SSTableOptions().sampleSize(3));
+
+        for (int i = 0; i < 1000; i++)
+            assertArrayEquals(("valor-" + i).getBytes(), table.get(String.format("%05d", i).getBytes()));
+        assertNull(table.get("00010x".getBytes()));
+        assertEquals(11, table.scan("00100".getBytes(), "00110".getBytes()).size());
+        table.close();
+    }
+
+    @Test
+    void testPartitionedIndexKeepsOnlyTopLevelPinned() {
+        SSTableOptions packed = new SSTableOptions().sampleSize(2);
+        IndexCache cache = new IndexCache(1024);
+        SSTableOptions partitioned = new SSTableOptions().sampleSize(2).indexPartitionSize(16).indexCache(cache);
+
+        SSTable full = new SSTable(dataDir.toString(), items(2000).iterator(), Long.MAX_VALUE, packed);
+        SSTable table = new SSTable(dataDir.toString(), items(2000).iterator(), Long.MAX_VALUE, partitioned);
+
+        // 1000 entradas em 63 partições: só as 63 primeiras chaves ficam fixas
+        assertTrue(table.indexByteSize() * 10 < full.indexByteSize());
+
+        for (int i = 0; i < 2000; i++)
+            assertArrayEquals(("valor-" + i).getBytes(), table.get(String.format("%05d", i).getBytes()));
+        assertNull(table.get("99999".getBytes()));
+
+        List<ByteArrayPair> range = table.scan("00030".getBytes(), "01500".getBytes());
+        assertEquals(1471, range.size());
+        assertArrayEquals("00030".getBytes(), range.get(0).key());
+
+        // o cache não passa da capacidade (exceto por uma única partição maior que ela)
+        assertTrue(cache.getByteSize() > 0);
+        assertTrue(cache.getByteSize() <= 1024);
+
+        table.close();
+        assertEquals(0, cache.getByteSize());
+        full.close();
+    }
+
+    @Test
+    void testPartitionedIndexWithoutCache() {
+        SSTableOptions options = new SSTableOptions().sampleSize(5).indexPartitionSize(4);
+        SSTable table = new SSTable(dataDir.toString(), items(500).iterator(), Long.MAX_VALUE, options);
+
+        for (int i = 0; i < 500; i += 7)
+            assertArrayEquals(("valor-" + i).getBytes(), table.get(String.format("%05d", i).getBytes()));
+        table.close();
+    }
+
+    private static List<ByteArrayPair> items(int n, int valueSize) {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            byte[] value = new byte[valueSize];
+            Arrays.fill(value, (byte) i);
+            items.add(new ByteArrayPair(String.format("%05d", i).getBytes(), value));
+        }
+        return items;
+    }
+
+    @Test
+    void testIndexIsSampledByByteDistance() {
+        // 1000 itens de ~1 KB: por bytes, uma entrada a cada 4 itens; por número de itens, uma única entrada
+        SSTable large = new SSTable(dataDir.toString(), items(1000, 1024).iterator(), Long.MAX_VALUE, new SSTableOptions());
+        SSTable largeByCount = new SSTable(dataDir.toString(), items(1000, 1024).iterator(), Long.MAX_VALUE,
+                new SSTableOptions().sampleSize(1000));
+        assertEquals(4096, large.getSampleBytes());
+        assertEquals(0, large.getSampleSize());
+        assertEquals(1000, largeByCount.getSampleSize());
+        assertTrue(large.indexByteSize() > 100 * largeByCount.indexByteSize() / 2);
+
+        for (int i = 0; i < 1000; i += 13)
+            assertEquals((byte) i, large.get(String.format("%05d", i).getBytes())[0]);
+
+        // 5000 itens de 4 bytes: ~60 KB de dados, cerca de 15 entradas
+        SSTable small = new SSTable(dataDir.toString(), items(5000, 4).iterator(), Long.MAX_VALUE, new SSTableOptions());
+        SSTable smallByCount = new SSTable(dataDir.toString(), items(5000, 4).iterator(), Long.MAX_VALUE,
+                new SSTableOptions().sampleSize(100));
+        assertTrue(small.indexByteSize() < smallByCount.indexByteSize());
+
+        for (int i = 0; i < 5000; i += 17)
+            assertEquals((byte) i, small.get(String.format("%05d", i).getBytes())[0]);
+
+        large.close();
+        largeByCount.close();
+        small.close();
+        smallByCount.close();
+    }
+
+    @Test
+    void testPerLevelSampling() throws IOException, InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> new ColumnFamilyOptions().levelSampleBytes(64, 0));
+
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("niveis").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .levelSampleBytes(64, 1024), 10, 50);
+        try {
+            for (int i = 0; i < 300; i++)
+                lsm.add(String.format("chave-%04d", i), "valor-" + i);
+
+            // esperando descarregamentos e compactações entre níveis com amostragens diferentes
+            Thread.sleep(300);
+
+            for (int i = 0; i < 300; i++)
+                assertNotNull(lsm.get(String.format("chave-%04d", i)));
+        } finally {
+            lsm.stop();
+        }
+    }
+
+    @Test
+    void testHashIndexLookups() {
+        // intervalos de 500 itens, com e sem partições; itens além de 64 KB do início do intervalo caem na varredura
+        List<SSTableOptions> variants = List.of(
+                new SSTableOptions().sampleSize(500).hashIndex(true),
+                new SSTableOptions().sampleSize(20).indexPartitionSize(8).hashIndex(true),
+                new SSTableOptions().sampleSize(1000).hashIndex(true));
+        int[] valueSizes = {8, 8, 200};
+
+        for (int v = 0; v < variants.size(); v++) {
+            SSTable table = new SSTable(dataDir.toString(), items(3000, valueSizes[v]).iterator(), Long.MAX_VALUE, variants.get(v));
+
+            for (int i = 0; i < 3000; i++)
+                assertEquals((byte) i, table.get(String.format("%05d", i).getBytes())[0]);
+            // chaves ausentes dentro do intervalo de chaves da tabela
+            for (int i = 0; i < 300; i++)
+                assertNull(table.get(String.format("0%03da", i).getBytes()));
+            table.close();
+        }
+    }
+}
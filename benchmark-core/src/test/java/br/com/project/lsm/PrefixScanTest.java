@@ -0,0 +1,101 @@
+package br.com.project.lsm;
+
+import br.com.project.entities.Pessoa;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.PrefixExtractor;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixScanTest {
+    private static LSMTree<String, Pessoa> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeEach
+    void setup() {
+        lsm = new LSMTree<>(dataDir.toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(1000)
+                .tableOptions(new SSTableOptions().sampleSize(4).prefixExtractor(PrefixExtractor.fixedLength(3))), 10, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testScanPrefixAcrossMemtableAndTables() throws IOException, InterruptedException {
+        for (int i = 0; i < 60; i++) {
+            String cpf = String.format("%03d.%03d.%03d-00", i % 6 * 100, i, i);
+            lsm.add(cpf, new Pessoa("Pessoa " + i, cpf, 20, "", ""));
+        }
+
+        // esperando os descarregamentos
+        Thread.sleep(300);
+
+        lsm.add("300.999.999-99", new Pessoa("Nova", "300.999.999-99", 20, "", ""));
+        lsm.delete("300.003.003-00");
+
+        List<ByteArrayPair> found = lsm.scanPrefix("300");
+        assertEquals(10, found.size());
+        for (ByteArrayPair item : found) {
+            String cpf = ObjectSerializer.convertBytesToObject(item.key(), String.class);
+            assertTrue(cpf.startsWith("300"));
+            assertEquals(cpf, ObjectSerializer.convertBytesToObject(item.value(), Pessoa.class).getCpf());
+        }
+
+        assertTrue(lsm.scanPrefix("999").isEmpty());
+        assertEquals(60, lsm.scanPrefix("").size());
+    }
+
+    @Test
+    void testTableSkipsAbsentPrefixes() {
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (String key : List.of("aa", "ab1", "ab2", "abc12", "ba1"))
+            items.add(new ByteArrayPair(key.getBytes(), key.getBytes()));
+        items.sort(null);
+
+        SSTableOptions options = new SSTableOptions().sampleSize(2).prefixExtractor(PrefixExtractor.fixedLength(2));
+        SSTable table = new SSTable(dataDir.toString(), items.iterator(), Long.MAX_VALUE, options);
+
+        assertEquals(3, table.scanPrefix("ab".getBytes()).size());
+        assertEquals(1, table.scanPrefix("abc".getBytes()).size());
+        assertEquals(1, table.scanPrefix("b".getBytes()).size());
+        assertTrue(table.mightContainPrefix("ab".getBytes()));
+        assertFalse(table.mightContainPrefix("zz".getBytes()));
+        assertTrue(table.scanPrefix("zz9".getBytes()).isEmpty());
+    }
+}
@@ -0,0 +1,143 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.utils.RateLimiter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    // intervalos longos: só as chamadas manuais descarregam e compactam
+    private static final long NEVER = 60 * 60 * 1000;
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testRequestsWaitForTokens() {
+        RateLimiter limiter = new RateLimiter(100_000);
+
+        long start = System.nanoTime();
+        // o balde começa cheio com um segundo de vazão; os 30 KB excedentes levam ~300 ms
+        for (int i = 0; i < 130; i++)
+            limiter.request(1000);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis >= 250, "tempo decorrido: " + elapsedMillis);
+    }
+
+    @Test
+    void testAutoTuneBacksOffAndRecovers() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(1_000_000).autoTune(Duration.ofMillis(1), 100_000);
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(110);
+            limiter.recordForegroundLatency(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        long reduced = limiter.getBytesPerSecond();
+        assertTrue(reduced < 1_000_000);
+        assertTrue(reduced >= 100_000);
+
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < 100; j++)
+                limiter.recordForegroundLatency(1000);
+            Thread.sleep(110);
+        }
+        limiter.recordForegroundLatency(1000);
+        assertTrue(limiter.getBytesPerSecond() > reduced);
+        assertTrue(limiter.getBytesPerSecond() <= 1_000_000);
+    }
+
+    @Test
+    void testLimitedTableWrite() throws IOException {
+        Files.createDirectories(dataDir);
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            items.add(new ByteArrayPair(String.format("%03d", i).getBytes(), new byte[500]));
+
+        SSTableOptions options = new SSTableOptions().rateLimiter(new RateLimiter(20_000));
+
+        long start = System.nanoTime();
+        SSTable table = new SSTable(dataDir.toString(), items.iterator(), Long.MAX_VALUE, options);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(100, table.size);
+        // ~50 KB escritos a 20 KB/s, com 20 KB já disponíveis no balde
+        assertTrue(elapsedMillis >= 1000, "tempo decorrido: " + elapsedMillis);
+    }
+
+    @Test
+    void testGetDuringLimitedCompaction() throws Exception {
+        ColumnFamilyOptions options = new ColumnFamilyOptions()
+                .memtableMaxByteSize(1024 * 1024)
+                .tableOptions(new SSTableOptions().rateLimiter(new RateLimiter(50_000)));
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("limitada").toString(), options, NEVER, NEVER);
+        try {
+            // duas tabelas sobrepostas de ~30 KB: a compactação lê e escreve ~120 KB a 50 KB/s, uns 2 s
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 300; i++)
+                    lsm.add(String.format("chave-%03d", i), round + "-" + "x".repeat(90));
+                lsm.flush(true);
+            }
+
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread compaction = new Thread(() -> {
+                try {
+                    lsm.compactRange(null, null);
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            compaction.start();
+            Thread.sleep(300);
+            assertTrue(compaction.isAlive());
+
+            // a busca não espera a compactação limitada terminar
+            long start = System.nanoTime();
+            byte[] value = lsm.get("chave-150");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertArrayEquals(("1-" + "x".repeat(90)).getBytes(), value);
+            assertTrue(elapsedMillis < 500, "tempo decorrido: " + elapsedMillis);
+            assertTrue(compaction.isAlive());
+
+            compaction.join();
+            assertNull(failure.get());
+            assertArrayEquals(("1-" + "x".repeat(90)).getBytes(), lsm.get("chave-150"));
+        } finally {
+            lsm.stop();
+        }
+    }
+}
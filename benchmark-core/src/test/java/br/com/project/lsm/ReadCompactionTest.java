@@ -0,0 +1,95 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.TableProbe;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.ReadTrace;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadCompactionTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    /**
+     * Número de tabelas em que a busca consultou o filtro ou os dados.
+     */
+    private static long tablesRead(ReadTrace trace) {
+        return trace.getSteps().stream()
+                .filter(step -> step.table() != null && step.table().getOutcome() != TableProbe.Outcome.OUT_OF_RANGE)
+                .count();
+    }
+
+    @Test
+    void testHotRangeConvergesToOneTablePerLookup() throws IOException, InterruptedException {
+        // o nível 0 nunca atinge o limite de tabelas: só as leituras disparam compactações
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("compactacao-leitura").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(300)
+                .maxLevelZeroSstNumber(1000)
+                .readCompactionThreshold(2)
+                .readSamplePeriod(1), 10, 50);
+        try {
+            // cada rodada regrava as mesmas chaves, e as tabelas do nível 0 se sobrepõem;
+            // só a primeira grava chave-001, e as buscas por ela passam por todas as rodadas
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 40; i++)
+                    if (round == 0 || i != 1)
+                        lsm.add(String.format("chave-%03d", i), "valor-" + round + "-" + i);
+                Thread.sleep(100);
+            }
+            for (int i = 0; i < 40; i += 2)
+                lsm.delete(String.format("chave-%03d", i));
+            lsm.add("forca-troca-da-memtable", "x".repeat(400));
+            Thread.sleep(200);
+
+            ReadTrace before = new ReadTrace();
+            assertArrayEquals(lsm.get("chave-001"), lsm.get("chave-001", before));
+            assertTrue(tablesRead(before) > 2);
+
+            // buscas amostradas agendam a compactação do intervalo
+            for (int i = 0; i < 5; i++)
+                lsm.get("chave-001");
+            Thread.sleep(300);
+
+            ReadTrace after = new ReadTrace();
+            assertNotNull(lsm.get("chave-001", after));
+            assertEquals(1, tablesRead(after));
+            assertTrue(lsm.getStatistics().getReadCompactions() > 0);
+
+            // as versões mais recentes e as remoções continuam valendo depois da compactação
+            for (int i = 0; i < 40; i++) {
+                String key = String.format("chave-%03d", i);
+                if (i % 2 == 0)
+                    assertNull(lsm.get(key));
+                else
+                    assertNotNull(lsm.get(key));
+            }
+        } finally {
+            lsm.stop();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.sstable.TableProbe;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.ReadTrace;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadTraceTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testTableProbeOutcomes() throws IOException {
+        Path dir = dataDir.resolve("rastro-tabela");
+        Files.createDirectories(dir);
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            items.add(new ByteArrayPair(String.format("%05d", 2 * i).getBytes(), ("valor-" + i).getBytes()));
+        SSTable table = new SSTable(dir.toString(), items.iterator(), Long.MAX_VALUE, new SSTableOptions().sampleSize(50));
+
+        TableProbe probe = new TableProbe();
+        assertArrayEquals("valor-500".getBytes(), table.get("01000".getBytes(), probe));
+        assertEquals(TableProbe.Outcome.FOUND, probe.getOutcome());
+        assertEquals(1, probe.getBlocksRead());
+        assertTrue(probe.getEntriesDecoded() >= 1 && probe.getEntriesDecoded() <= 50);
+        assertTrue(probe.getDataBytesRead() > 0);
+
+        probe = new TableProbe();
+        assertNull(table.get("99999".getBytes(), probe));
+        assertEquals(TableProbe.Outcome.OUT_OF_RANGE, probe.getOutcome());
+        assertEquals(0, probe.getBlocksRead());
+
+        // chaves ímpares ausentes: descartadas pelo filtro, ou falsos positivos que percorrem um bloco
+        for (int i = 0; i < 100; i++) {
+            probe = new TableProbe();
+            assertNull(table.get(String.format("%05d", 2 * i + 1).getBytes(), probe));
+            if (probe.getOutcome() == TableProbe.Outcome.FILTERED)
+                assertEquals(0, probe.getEntriesDecoded());
+            else
+                assertEquals(TableProbe.Outcome.NOT_FOUND, probe.getOutcome());
+        }
+        table.close();
+    }
+
+    @Test
+    void testTraceFollowsReadPath() throws IOException, InterruptedException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("rastro-arvore").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .maxLevelZeroSstNumber(1000), 10, 60_000);
+        try {
+            for (int i = 0; i < 100; i++)
+                lsm.add(String.format("chave-%04d", i), "valor-" + i);
+            // esperando os descarregamentos
+            Thread.sleep(300);
+            lsm.add("recente", "valor");
+
+            ReadTrace trace = new ReadTrace();
+            assertArrayEquals(lsm.get("recente"), lsm.get("recente", trace));
+            assertTrue(trace.isFound());
+            assertEquals(1, trace.getSteps().size());
+            assertEquals(ReadTrace.Source.MUTABLE_MEMTABLE, trace.getSteps().get(0).source());
+
+            // a chave mais antiga está na última tabela do nível 0, depois de todas as mais recentes
+            trace = new ReadTrace();
+            assertNotNull(lsm.get("chave-0000", trace));
+            List<ReadTrace.Step> steps = trace.getSteps();
+            ReadTrace.Step last = steps.get(steps.size() - 1);
+            assertEquals(ReadTrace.Source.SSTABLE, last.source());
+            assertEquals(TableProbe.Outcome.FOUND, last.table().getOutcome());
+            assertTrue(trace.getTablesProbed() > 1);
+            for (int i = 0; i < steps.size() - 1; i++)
+                assertFalse(steps.get(i).found());
+            assertTrue(trace.getTotalNanos() > 0);
+            assertTrue(trace.toString().contains(last.filename()));
+
+            trace = new ReadTrace();
+            assertNull(lsm.get("chave-9999", trace));
+            assertFalse(trace.isFound());
+            assertEquals(0, trace.getRetries());
+        } finally {
+            lsm.stop();
+        }
+    }
+}
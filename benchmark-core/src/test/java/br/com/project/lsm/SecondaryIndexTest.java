@@ -0,0 +1,191 @@
+package br.com.project.lsm;
+
+import br.com.project.entities.Pessoa;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.SecondaryIndex;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecondaryIndexTest {
+    private static LSMTree<String, Pessoa> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    private final Pessoa[] pessoas = new Pessoa[] {
+            new Pessoa("Maria Souza", "123.456.789-00", 30, "+55 83 9 9999-9999", "10/10/1994"),
+            new Pessoa("João Silva", "111.111.111-11", 25, "+55 83 9 8888-8888", "15/05/1999"),
+            new Pessoa("Ana Lima", "222.222.222-22", 40, "+55 83 9 7777-7777", "22/12/1984"),
+            new Pessoa("Carlos Pinto", "333.333.333-33", 30, "+55 83 9 6666-6666", "03/03/1995"),
+            new Pessoa("Fernanda Rocha", "444.444.444-44", 35, "+55 83 9 5555-5555", "28/07/1989")
+    };
+
+    @BeforeEach
+    void setup() throws IOException {
+        lsm = new LSMTree<>(dataDir.toString(), 300, 2, 1.75, 10, 50);
+        lsm.addIndex(new SecondaryIndex<>("telefone", Pessoa::getTelefone));
+        lsm.addIndex(new SecondaryIndex<>("nome", Pessoa::getNome, 8));
+        lsm.addIndex(new SecondaryIndex<>("idade", Pessoa::getIdade));
+
+        for (Pessoa p : pessoas) {
+            lsm.add(p.getCpf(), p);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private List<String> cpfs(List<byte[]> values) throws IOException {
+        List<String> res = new ArrayList<>();
+        for (byte[] v : values) {
+            res.add(ObjectSerializer.convertBytesToObject(v, Pessoa.class).getCpf());
+        }
+        return res;
+    }
+
+    @Test
+    void testEquality() throws IOException {
+        assertEquals(List.of("222.222.222-22"), cpfs(lsm.getByIndex("telefone", "+55 83 9 7777-7777")));
+        assertTrue(lsm.getByIndex("telefone", "+55 83 9 0000-0000").isEmpty());
+
+        List<String> trinta = cpfs(lsm.getByIndex("idade", 30));
+        assertEquals(2, trinta.size());
+        assertTrue(trinta.contains("123.456.789-00"));
+        assertTrue(trinta.contains("333.333.333-33"));
+    }
+
+    @Test
+    void testTruncatedField() throws IOException {
+        // "Fernanda Rocha" é maior que a largura 8 do índice
+        lsm.add("555.555.555-55", new Pessoa("Fernanda Pereira", "555.555.555-55", 26, "+55 83 9 9999-0000", "16/11/1998"));
+
+        assertEquals(List.of("444.444.444-44"), cpfs(lsm.getByIndex("nome", "Fernanda Rocha")));
+        assertEquals(List.of("555.555.555-55"), cpfs(lsm.getByIndex("nome", "Fernanda Pereira")));
+    }
+
+    @Test
+    void testRange() throws IOException {
+        List<String> res = cpfs(lsm.getByIndexRange("idade", 26, 35));
+        assertEquals(3, res.size());
+        assertEquals("444.444.444-44", res.get(2));
+
+        assertEquals(5, lsm.getByIndexRange("idade", -1, 1000).size());
+    }
+
+    @Test
+    void testFloatingPointRange() throws IOException {
+        // o índice só vale para as escritas feitas depois do registro, então os itens são regravados
+        lsm.addIndex(new SecondaryIndex<>("saldo", (Pessoa p) -> (p.getIdade() - 30) * 1.5));
+        for (Pessoa p : pessoas)
+            lsm.add(p.getCpf(), p);
+
+        assertEquals(List.of("111.111.111-11"), cpfs(lsm.getByIndexRange("saldo", -10.0, -1.0)));
+        List<String> res = cpfs(lsm.getByIndexRange("saldo", -8.0, 8.0));
+        assertEquals(4, res.size());
+        assertEquals("111.111.111-11", res.get(0));
+        assertEquals("444.444.444-44", res.get(3));
+        assertEquals(List.of("222.222.222-22"), cpfs(lsm.getByIndex("saldo", 15.0)));
+    }
+
+    @Test
+    void testTextRangeUsesCodePointOrder() throws IOException {
+        lsm.add("666.666.666-66", new Pessoa("Ágata Reis", "666.666.666-66", 22, "+55 83 9 4444-4444", "01/01/2003"));
+
+        // "Á" vem depois de todas as letras sem acento
+        assertEquals(List.of("123.456.789-00", "666.666.666-66"), cpfs(lsm.getByIndexRange("nome", "M", "\u00ff")));
+    }
+
+    @Test
+    void testPrimaryKeysOfDifferentLengths() throws IOException {
+        lsm.add("1", new Pessoa("Lucas Andrade", "1", 27, "+55 83 9 4444-4444", "01/01/2003"));
+        lsm.add("12", new Pessoa("Pedro Melo", "12", 30, "+55 83 9 2222-2222", "11/11/1992"));
+
+        // as entradas de tamanhos diferentes continuam na ordem do campo
+        List<String> res = cpfs(lsm.getByIndexRange("idade", 26, 35));
+        assertEquals(5, res.size());
+        assertEquals("1", res.get(0));
+        assertEquals("444.444.444-44", res.get(4));
+        assertEquals(3, lsm.getByIndex("idade", 30).size());
+    }
+
+    @Test
+    void testUpdateAndDelete() throws IOException, InterruptedException {
+        lsm.add("111.111.111-11", new Pessoa("João Silva", "111.111.111-11", 26, "+55 83 9 1234-5678", "15/05/1999"));
+        lsm.delete("222.222.222-22");
+
+        // aguarda o flush e a compactação para consultar também as SSTables
+        Thread.sleep(200);
+
+        assertTrue(lsm.getByIndex("telefone", "+55 83 9 8888-8888").isEmpty());
+        assertEquals(List.of("111.111.111-11"), cpfs(lsm.getByIndex("telefone", "+55 83 9 1234-5678")));
+        assertEquals(List.of("111.111.111-11"), cpfs(lsm.getByIndex("idade", 26)));
+        assertTrue(lsm.getByIndex("telefone", "+55 83 9 7777-7777").isEmpty());
+        assertTrue(lsm.getByIndex("idade", 40).isEmpty());
+    }
+
+    @Test
+    void testQueriesDuringConcurrentUpdates() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++)
+                    lsm.add("111.111.111-11", new Pessoa("João Silva", "111.111.111-11", i % 2 == 0 ? 50 : 60,
+                            "+55 83 9 8888-8888", "15/05/1999"));
+            } catch (Exception e) {
+                failure.set(e);
+            } finally {
+                done.set(true);
+            }
+        });
+        writer.start();
+
+        // um registro alterado entre a varredura do índice e a leitura do valor não pode ser retornado
+        while (!done.get()) {
+            for (byte[] value : lsm.getByIndex("idade", 50))
+                assertEquals(50, ObjectSerializer.convertBytesToObject(value, Pessoa.class).getIdade());
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(1, lsm.getByIndex("idade", 60).size());
+        assertTrue(lsm.getByIndex("idade", 50).isEmpty());
+    }
+
+    @Test
+    void testUnknownIndex() {
+        assertThrows(IllegalArgumentException.class, () -> lsm.getByIndex("email", "x"));
+        assertThrows(IllegalArgumentException.class, () -> lsm.addIndex(new SecondaryIndex<>("nome", Pessoa::getNome)));
+    }
+}
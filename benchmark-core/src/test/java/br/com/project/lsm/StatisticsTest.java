@@ -0,0 +1,102 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.Statistics;
+import br.com.project.structs.lsm.utils.LatencyHistogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatisticsTest {
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testHistogramPercentilesFromConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (long v = 1; v <= 100_000; v++)
+                    histogram.record(v * 1000);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(100_000_000, histogram.getMax());
+        assertEquals(50_000_500, histogram.getMean(), 1);
+        // erro relativo das faixas de no máximo 1/32
+        assertEquals(50_000_000, histogram.getValueAtPercentile(50), 50_000_000 / 32.0);
+        assertEquals(99_000_000, histogram.getValueAtPercentile(99), 99_000_000 / 32.0);
+        assertEquals(100_000_000, histogram.getValueAtPercentile(100));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    void testTreeStatistics() throws IOException, InterruptedException {
+        LSMTree<String, String> lsm = new LSMTree<>(dataDir.resolve("estatisticas").toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(500)
+                .maxLevelZeroSstNumber(2), 10, 50);
+        try {
+            for (int i = 0; i < 300; i++)
+                lsm.add(String.format("chave-%04d", 2 * i), "valor-" + i);
+
+            // esperando descarregamentos e compactações
+            Thread.sleep(500);
+
+            for (int i = 0; i < 300; i++)
+                assertNotNull(lsm.get(String.format("chave-%04d", 2 * i)));
+            // chaves ausentes dentro dos intervalos das tabelas, descartadas pelos filtros
+            for (int i = 0; i < 100; i++)
+                assertNull(lsm.get(String.format("chave-%04d", 2 * i + 1)));
+
+            Statistics stats = lsm.getStatistics();
+            assertEquals(300, stats.getWriteLatency().getCount());
+            assertEquals(400, stats.getGetLatency().getCount());
+            assertEquals(300, stats.getMutableMemtableHits() + stats.getImmutableMemtableHits() + stats.getTableHits());
+            assertEquals(100, stats.getNotFound());
+            assertTrue(stats.getFlushDuration().getCount() > 0);
+            assertTrue(stats.getCompactionDuration().getCount() > 0);
+            assertTrue(stats.getBackgroundBytesWritten() > stats.getBackgroundBytesRead());
+            assertTrue(stats.getTableStatistics().getFilterUseful() > 0);
+
+            Map<String, Number> exported = lsm.exportStatistics();
+            assertEquals(300L, exported.get("default.write.count"));
+            assertTrue(exported.containsKey("default.get.p99"));
+            long levelBytes = 0;
+            for (int i = 0; exported.containsKey("default.level." + i + ".bytes"); i++)
+                levelBytes += exported.get("default.level." + i + ".bytes").longValue();
+            assertTrue(levelBytes > 0);
+        } finally {
+            lsm.stop();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package br.com.project.lsm;
+
+import br.com.project.entities.Pessoa;
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.sstable.SSTable;
+import br.com.project.structs.lsm.sstable.SSTableOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.SecondaryIndex;
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.types.StoredValue;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TtlTest {
+    private static LSMTree<String, Pessoa> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeEach
+    void setup() {
+        lsm = new LSMTree<>(dataDir.toString(), 300, 2, 1.75, 10, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    @Test
+    void testExpiredItemIsNotReturned() throws IOException, InterruptedException {
+        Pessoa temporaria = new Pessoa("Ana Lima", "111.111.111-11", 22, "+55 83 9 1111-1111", "01/01/2002");
+        Pessoa permanente = new Pessoa("Bruno Costa", "222.222.222-22", 35, "+55 83 9 2222-2222", "02/02/1989");
+
+        lsm.add(temporaria.getCpf(), temporaria, Duration.ofMillis(100));
+        lsm.add(permanente.getCpf(), permanente);
+
+        assertEquals(temporaria.toString(), ObjectSerializer.convertBytesToObject(lsm.get(temporaria.getCpf()), Pessoa.class).toString());
+
+        Thread.sleep(200);
+
+        assertNull(lsm.get(temporaria.getCpf()));
+        assertEquals(permanente.toString(), ObjectSerializer.convertBytesToObject(lsm.get(permanente.getCpf()), Pessoa.class).toString());
+        assertThrows(IllegalArgumentException.class, () -> lsm.add("x", permanente, Duration.ZERO));
+    }
+
+    @Test
+    void testExpiredItemsSurviveFlushAsMissing() throws IOException, InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            Pessoa pessoa = new Pessoa("Pessoa " + i, "cpf-" + i, 20 + i, "+55 83 9 0000-0000", "01/01/2000");
+            if (i % 2 == 0)
+                lsm.add(pessoa.getCpf(), pessoa, Duration.ofMillis(150));
+            else
+                lsm.add(pessoa.getCpf(), pessoa);
+        }
+
+        // esperando a expiração e algumas execuções de flush e compactação
+        Thread.sleep(400);
+
+        for (int i = 0; i < 50; i++) {
+            if (i % 2 == 0)
+                assertNull(lsm.get("cpf-" + i));
+            else
+                assertNotNull(lsm.get("cpf-" + i));
+        }
+    }
+
+    @Test
+    void testIndexEntriesExpireWithItem() throws IOException, InterruptedException {
+        lsm.addIndex(new SecondaryIndex<>("idade", Pessoa::getIdade));
+
+        lsm.add("a", new Pessoa("Ana", "a", 30, "", ""), Duration.ofMillis(100));
+        lsm.add("b", new Pessoa("Bia", "b", 30, "", ""));
+        assertEquals(2, lsm.getByIndex("idade", 30).size());
+
+        Thread.sleep(200);
+
+        assertEquals(1, lsm.getByIndex("idade", 30).size());
+    }
+
+    @Test
+    void testExpiredFractionAndCompactionFilter() {
+        long now = System.currentTimeMillis();
+        List<ByteArrayPair> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] key = String.format("%03d", i).getBytes();
+            long expiresAt = i < 75 ? now - 1 : StoredValue.NO_EXPIRY;
+            items.add(new ByteArrayPair(key, StoredValue.encode(new byte[]{(byte) i}, expiresAt)));
+        }
+
+        SSTableOptions options = new SSTableOptions().expiryExtractor(StoredValue::expiresAt);
+        SSTable table = new SSTable(dataDir.toString(), items.iterator(), Long.MAX_VALUE, options);
+        assertEquals(0.75, table.expiredFraction(now), 0.1);
+        assertEquals(0, table.expiredFraction(now - 10));
+
+        var rewritten = SSTable.sortedRun(dataDir.toString(), Long.MAX_VALUE, options,
+                item -> StoredValue.isDead(item.value(), now) ? null : item, table);
+        assertEquals(1, rewritten.size());
+        assertEquals(25, rewritten.get(0).size);
+        assertEquals(0, rewritten.get(0).expiredFraction(now));
+        assertNull(rewritten.get(0).get("000".getBytes()));
+        assertNotNull(rewritten.get(0).get("099".getBytes()));
+    }
+}
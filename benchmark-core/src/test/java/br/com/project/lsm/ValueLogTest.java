@@ -0,0 +1,144 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.serialization.ObjectSerializer;
+import br.com.project.structs.lsm.tree.ColumnFamilyOptions;
+import br.com.project.structs.lsm.tree.LSMTree;
+import br.com.project.structs.lsm.tree.MergeOperator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValueLogTest {
+    private static LSMTree<String, String> lsm;
+    private static final Path dataDir = Paths.get(System.getProperty("user.dir"), "src", "test", "java", "br", "com", "project", "lsm", "data");
+
+    @BeforeEach
+    void setup() {
+        lsm = new LSMTree<>(dataDir.toString(), new ColumnFamilyOptions()
+                .memtableMaxByteSize(2000)
+                .valueSeparationThreshold(64)
+                .valueLogSegmentSize(4000), 10, 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        lsm.stop();
+    }
+
+    @AfterAll
+    static void cleanup() throws IOException {
+        if (Files.exists(dataDir)) {
+            Files.walkFileTree(dataDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path arquivo, BasicFileAttributes atributos) throws IOException {
+                    Files.delete(arquivo);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path diretorio, IOException erro) throws IOException {
+                    Files.delete(diretorio);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private static String largeValue(int i, int version) {
+        return ("valor " + i + " versão " + version + " ").repeat(8);
+    }
+
+    private static long countSegments() throws IOException {
+        try (Stream<Path> stream = Files.list(dataDir)) {
+            return stream.filter(p -> p.toString().endsWith(".vlog")).count();
+        }
+    }
+
+    @Test
+    void testLargeValuesAreReadThroughTheLog() throws IOException, InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            lsm.add("chave-" + i, largeValue(i, 0));
+            lsm.add("pequena-" + i, "v" + i);
+        }
+
+        // esperando os descarregamentos e compactações
+        Thread.sleep(400);
+
+        assertTrue(countSegments() > 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(largeValue(i, 0), ObjectSerializer.convertBytesToObject(lsm.get("chave-" + i), String.class));
+            assertEquals("v" + i, ObjectSerializer.convertBytesToObject(lsm.get("pequena-" + i), String.class));
+        }
+    }
+
+    @Test
+    void testGarbageCollectionKeepsLiveValues() throws IOException, InterruptedException {
+        for (int version = 0; version < 3; version++) {
+            for (int i = 0; i < 50; i++)
+                lsm.add("chave-" + i, largeValue(i, version));
+            Thread.sleep(100);
+        }
+        lsm.delete("chave-0");
+
+        Thread.sleep(300);
+
+        assertTrue(lsm.collectValueLogGarbage() > 0);
+
+        // os valores regravados voltam ao log no próximo descarregamento
+        Thread.sleep(300);
+
+        assertNull(lsm.get("chave-0"));
+        for (int i = 1; i < 50; i++)
+            assertEquals(largeValue(i, 2), ObjectSerializer.convertBytesToObject(lsm.get("chave-" + i), String.class));
+    }
+
+    @Test
+    void testGarbageCollectionKeepsConcurrentWrites() throws Exception {
+        for (int i = 0; i < 50; i++)
+            lsm.add("chave-" + i, largeValue(i, 0));
+        Thread.sleep(300);
+
+        // as versões novas chegam durante a coleta, que não pode regravar a antiga por cima delas
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 50; i++)
+                    lsm.add("chave-" + i, largeValue(i, 1));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        lsm.collectValueLogGarbage();
+        writer.join();
+
+        Thread.sleep(300);
+
+        for (int i = 0; i < 50; i++)
+            assertEquals(largeValue(i, 1), ObjectSerializer.convertBytesToObject(lsm.get("chave-" + i), String.class));
+    }
+
+    @Test
+    void testMergeOverSeparatedValue() throws IOException, InterruptedException {
+        lsm.setMergeOperator(MergeOperator.of(String.class, String::concat));
+        lsm.add("lista", largeValue(0, 0));
+        for (int i = 0; i < 100; i++)
+            lsm.add("outra-" + i, largeValue(i, 0));
+
+        Thread.sleep(200);
+
+        lsm.merge("lista", "+fim");
+        lsm.collectValueLogGarbage();
+
+        Thread.sleep(300);
+
+        assertEquals(largeValue(0, 0) + "+fim", ObjectSerializer.convertBytesToObject(lsm.get("lista"), String.class));
+    }
+}
@@ -0,0 +1,139 @@
+package br.com.project.lsm;
+
+import br.com.project.structs.lsm.types.ByteArrayPair;
+import br.com.project.structs.lsm.utils.VersionMerger;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionMergerTest {
+
+    private static List<ByteArrayPair> source(String... items) {
+        List<ByteArrayPair> res = new ArrayList<>();
+        for (String item : items) {
+            String[] parts = item.split("=", -1);
+            res.add(new ByteArrayPair(parts[0].getBytes(), parts[1].getBytes()));
+        }
+        return res;
+    }
+
+    private static List<String> drain(Iterator<ByteArrayPair> it) {
+        List<String> res = new ArrayList<>();
+        while (it.hasNext()) {
+            ByteArrayPair item = it.next();
+            res.add(new String(item.key()) + "=" + new String(item.value()));
+        }
+        return res;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPriorityDecidesVersionRegardlessOfSourceOrder() {
+        List<ByteArrayPair> oldest = source("a=1", "b=1", "c=1", "e=1");
+        List<ByteArrayPair> middle = source("b=2", "c=2", "d=2");
+        List<ByteArrayPair> newest = source("c=3", "d=3", "f=3");
+        List<String> expected = List.of("a=1", "b=2", "c=3", "d=3", "e=1", "f=3");
+
+        assertEquals(expected, drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{3, 2, 1}, null, null,
+                newest.iterator(), middle.iterator(), oldest.iterator())));
+        assertEquals(expected, drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{1, 2, 3}, null, null,
+                oldest.iterator(), middle.iterator(), newest.iterator())));
+        assertEquals(expected, drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{2, 3, 1}, null, null,
+                middle.iterator(), newest.iterator(), oldest.iterator())));
+    }
+
+    @Test
+    void testRequiresPriorities() {
+        assertThrows(IllegalArgumentException.class, () -> new VersionMerger<>(ByteArrayPair.KEY_ORDER, null, null,
+                null, source("a=1").iterator()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSkipsRemovedKeysOnDemand() {
+        List<ByteArrayPair> newest = source("a=", "c=3");
+        List<ByteArrayPair> oldest = source("a=1", "b=1", "c=");
+
+        assertEquals(List.of("a=", "b=1", "c=3"), drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{2, 1},
+                null, null, newest.iterator(), oldest.iterator())));
+        assertEquals(List.of("b=1", "c=3"), drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{1, 2}, null,
+                item -> item.value().length == 0, oldest.iterator(), newest.iterator())));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCombinesPartialVersions() {
+        // versões que começam com "+" são acrescentadas à versão anterior
+        VersionMerger.Combiner<ByteArrayPair> append = new VersionMerger.Combiner<>() {
+            @Override
+            public boolean isPartial(ByteArrayPair item) {
+                return item.value().length > 0 && item.value()[0] == '+';
+            }
+
+            @Override
+            public ByteArrayPair combine(ByteArrayPair newer, ByteArrayPair older) {
+                return new ByteArrayPair(newer.key(), (new String(older.value()) + new String(newer.value())).getBytes());
+            }
+        };
+
+        List<ByteArrayPair> newest = source("a=+z", "b=+y");
+        List<ByteArrayPair> middle = source("a=+x", "b=w");
+        List<ByteArrayPair> oldest = source("a=v", "b=u");
+
+        assertEquals(List.of("a=v+x+z", "b=w+y"), drain(new VersionMerger<>(ByteArrayPair.KEY_ORDER, new int[]{1, 3, 2},
+                append, null, oldest.iterator(), newest.iterator(), middle.iterator())));
+    }
+
+    /**
+     * Item mutável, reaproveitado pela fonte como os buffers da leitura de SSTables na compactação.
+     */
+    private static final class Slot implements Comparable<Slot> {
+        String key;
+        String value;
+
+        @Override
+        public int compareTo(Slot other) {
+            return key.compareTo(other.key);
+        }
+    }
+
+    private static Iterator<Slot> reusing(String... items) {
+        Slot[] slots = {new Slot(), new Slot()};
+        return new Iterator<>() {
+            private int read;
+
+            @Override
+            public boolean hasNext() {
+                return read < items.length;
+            }
+
+            @Override
+            public Slot next() {
+                Slot slot = slots[read % 2];
+                String[] parts = items[read++].split("=", -1);
+                slot.key = parts[0];
+                slot.value = parts[1];
+                return slot;
+            }
+        };
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSourcesMayReuseTwoItems() {
+        VersionMerger<Slot> merger = new VersionMerger<>(Comparator.naturalOrder(), new int[]{2, 1}, null, null,
+                reusing("a=2", "b=2", "c=2", "e=2"), reusing("a=1", "c=1", "d=1", "e=1", "f=1"));
+
+        List<String> res = new ArrayList<>();
+        while (merger.hasNext()) {
+            Slot slot = merger.next();
+            res.add(slot.key + "=" + slot.value);
+        }
+        assertEquals(List.of("a=2", "b=2", "c=2", "d=1", "e=2", "f=1"), res);
+    }
+}